@@ -234,7 +234,7 @@ def prettyjson(data):
         df.set_index('key', inplace=True)
         
         # Format timestamps for better readability
-        # Handle the Spring Boot format: "2025-07-27T09:48:50.883175427Z[Etc/UTC]"
+        # Handle the Spring Boot formats: "2025-07-27T09:48:50.883Z" and the older "2025-07-27T09:48:50.883175427Z[Etc/UTC]"
         formatted_dates = []
         
         for timestamp in df['lastchange']:
@@ -254,6 +254,9 @@ def prettyjson(data):
                     # Python datetime only supports up to 6 digits for microseconds
                     microseconds = microseconds[:6].ljust(6, '0')
                     dt_part = f"{base_dt}.{microseconds}"
+                else:
+                    # Whole seconds are written without a fraction
+                    dt_part = f"{dt_part}.000000"
                 
                 # Parse the ISO 8601 datetime string
                 parsed_dt = datetime.datetime.strptime(dt_part, "%Y-%m-%dT%H:%M:%S.%f")
@@ -0,0 +1,105 @@
+package com.springsnake.backend;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.springsnake.backend.storage.InMemoryStorageEngine;
+import com.springsnake.backend.utils.ChangeFeed;
+import com.springsnake.backend.utils.KeyFilter;
+import com.springsnake.backend.utils.SpringSnakeProperties;
+import com.springsnake.backend.utils.ValueBulkWriter;
+import com.springsnake.backend.utils.ValueCache;
+import com.springsnake.backend.utils.ValueDTO;
+import com.springsnake.backend.utils.ValueSnapshot;
+import com.springsnake.backend.utils.WriteBehindBuffer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * ValueService operations on top of the in-memory storage engine, so that
+ * only the service, cache and mapping code is measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ValueServiceBenchmark {
+
+	@Param({ "true", "false" })
+	private boolean cacheEnabled;
+
+	private final int keys = 10_000;
+
+	private ValueService service;
+
+	private ValueBulkWriter bulkWriter;
+
+	private WriteBehindBuffer writeBehind;
+
+	@Setup
+	public void setUp() {
+		SpringSnakeProperties properties = new SpringSnakeProperties();
+		properties.getCache().setEnabled(cacheEnabled);
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		InMemoryStorageEngine engine = new InMemoryStorageEngine(properties);
+		ValueCache cache = new ValueCache(properties, registry);
+		bulkWriter = new ValueBulkWriter(engine, properties);
+		writeBehind = new WriteBehindBuffer(engine, cache, properties, registry);
+		KeyFilter keyFilter = new KeyFilter(engine, properties, registry);
+		service = new ValueService(engine, cache, bulkWriter, writeBehind, properties,
+				new ChangeFeed(properties, registry),
+				new ValueSnapshot(bulkWriter, keyFilter, properties, new Jackson2ObjectMapperBuilder(), registry), keyFilter);
+		for (int i = 0; i < keys; i++) {
+			service.put("key" + i, i, null);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		writeBehind.close();
+		bulkWriter.shutdown();
+	}
+
+	private String randomKey() {
+		return "key" + ThreadLocalRandom.current().nextInt(keys);
+	}
+
+	@Benchmark
+	public Object get() {
+		return service.get(randomKey());
+	}
+
+	@Benchmark
+	public ValueDTO getFull() {
+		return service.getFull(randomKey());
+	}
+
+	@Benchmark
+	public Object getMissing() {
+		return service.get("missing" + ThreadLocalRandom.current().nextInt(keys));
+	}
+
+	@Benchmark
+	public String update() {
+		return service.update(randomKey(), ThreadLocalRandom.current().nextInt(), null);
+	}
+
+}
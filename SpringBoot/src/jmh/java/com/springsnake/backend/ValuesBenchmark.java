@@ -0,0 +1,46 @@
+package com.springsnake.backend;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of creating a values entity, and how much of it is the timestamp.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValuesBenchmark {
+
+	private final Object value = "some value";
+
+	@Benchmark
+	public values construct() {
+		return new values("key", value);
+	}
+
+	@Benchmark
+	public String zonedTimestamp() {
+		return ZonedDateTime.now().format(DateTimeFormatter.ISO_ZONED_DATE_TIME);
+	}
+
+	@Benchmark
+	public Instant instantTimestamp() {
+		return Instant.now();
+	}
+
+}
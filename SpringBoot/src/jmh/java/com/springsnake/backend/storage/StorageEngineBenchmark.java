@@ -0,0 +1,93 @@
+package com.springsnake.backend.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springsnake.backend.values;
+import com.springsnake.backend.utils.SpringSnakeProperties;
+
+/**
+ * Single key reads and updates of the embedded storage engines.
+ * The MongoDB engine is compared end to end with the load generator instead.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class StorageEngineBenchmark {
+
+	@Param({ "memory", "local", "local-nosync" })
+	private String engineType;
+
+	private final int keys = 10_000;
+
+	private StorageEngine engine;
+
+	private Path directory;
+
+	@Setup
+	public void setUp() throws IOException {
+		SpringSnakeProperties properties = new SpringSnakeProperties();
+		if (engineType.startsWith("local")) {
+			directory = Files.createTempDirectory("springsnake-jmh");
+			properties.getLocal().setDirectory(directory.toString());
+			properties.getLocal().setSyncWrites(!engineType.endsWith("nosync"));
+			engine = new LogStructuredStorageEngine(properties, new ObjectMapper());
+		} else {
+			engine = new InMemoryStorageEngine(properties);
+		}
+		for (int i = 0; i < keys; i++) {
+			engine.insert(new values("key" + i, i));
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		if (engine instanceof LogStructuredStorageEngine local) {
+			local.close();
+			try (Stream<Path> files = Files.walk(directory)) {
+				files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+			}
+		} else if (engine instanceof InMemoryStorageEngine memory) {
+			memory.close();
+		}
+	}
+
+	private String randomKey() {
+		return "key" + ThreadLocalRandom.current().nextInt(keys);
+	}
+
+	@Benchmark
+	public values findByKey() {
+		return engine.findByKey(randomKey());
+	}
+
+	@Benchmark
+	public boolean update() {
+		return engine.update(randomKey(), ThreadLocalRandom.current().nextInt(), values.now(), null);
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.springsnake.backend.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Entity to DTO mapping of ValueDAO.getAll, as done by /api/getall.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ValueDAOBenchmark {
+
+	@Param({ "1000", "100000", "1000000" })
+	private int size;
+
+	private ValueDAO dao;
+
+	@Setup
+	public void setUp() {
+		List<ValueDTO> input = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			input.add(new ValueDTO("key" + i, i, null));
+		}
+		dao = new ValueDAO(null);
+		dao.saveAll(input);
+	}
+
+	@Benchmark
+	public List<ValueDTO> getAll() {
+		return dao.getAll();
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.springsnake.backend.utils;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Serialization throughput of a /api/getall page of ValueDTO in JSON, CBOR and Smile.
+ *
+ * The payload size of each format is printed once per fork, e.g.
+ * "cbor: 1000 values in 98123 bytes".
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValueDTOFormatBenchmark {
+
+	private static final TypeReference<List<ValueDTO>> PAGE = new TypeReference<>() {
+	};
+
+	@Param({ "json", "cbor", "smile" })
+	private String format;
+
+	private ObjectMapper mapper;
+
+	private List<ValueDTO> page;
+
+	private byte[] encoded;
+
+	@Setup
+	public void setUp() throws IOException {
+		mapper = switch (format) {
+			case "cbor" -> Jackson2ObjectMapperBuilder.cbor().build();
+			case "smile" -> Jackson2ObjectMapperBuilder.smile().build();
+			default -> Jackson2ObjectMapperBuilder.json().build();
+		};
+		page = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			Map<String, Object> nested = new LinkedHashMap<>();
+			nested.put("name", "sensor-" + i);
+			nested.put("active", i % 2 == 0);
+			nested.put("readings", List.of(1.5 * i, 2.25, 3.125, 4.0625));
+			nested.put("location", Map.of("lat", 45.07, "lon", 7.69));
+			page.add(new ValueDTO("sensor:" + i, nested, Instant.parse("2024-01-01T00:00:00Z")));
+		}
+		encoded = mapper.writeValueAsBytes(page);
+		System.out.printf("%s: %d values in %d bytes%n", format, page.size(), encoded.length);
+	}
+
+	@Benchmark
+	public byte[] serializePage() throws IOException {
+		return mapper.writeValueAsBytes(page);
+	}
+
+	@Benchmark
+	public List<ValueDTO> deserializePage() throws IOException {
+		return mapper.readValue(encoded, PAGE);
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.springsnake.backend.utils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Jackson serialization of ValueDTO with a nested Object value, single and as a page.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValueDTOSerializationBenchmark {
+
+	private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+
+	private ValueDTO single;
+
+	private List<ValueDTO> page;
+
+	private byte[] singleJson;
+
+	@Setup
+	public void setUp() throws JsonProcessingException {
+		Map<String, Object> nested = new LinkedHashMap<>();
+		nested.put("name", "sensor-42");
+		nested.put("active", true);
+		nested.put("readings", List.of(1.5, 2.25, 3.125, 4.0625));
+		nested.put("location", Map.of("lat", 45.07, "lon", 7.69));
+		single = new ValueDTO("sensor:42", nested, Instant.parse("2024-01-01T00:00:00Z"));
+		page = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			page.add(new ValueDTO("sensor:" + i, nested, Instant.parse("2024-01-01T00:00:00Z")));
+		}
+		singleJson = mapper.writeValueAsBytes(single);
+	}
+
+	@Benchmark
+	public byte[] serializeOne() throws JsonProcessingException {
+		return mapper.writeValueAsBytes(single);
+	}
+
+	@Benchmark
+	public byte[] serializePage() throws JsonProcessingException {
+		return mapper.writeValueAsBytes(page);
+	}
+
+	@Benchmark
+	public ValueDTO deserializeOne() throws Exception {
+		return mapper.readValue(singleJson, ValueDTO.class);
+	}
+
+}
@@ -0,0 +1,86 @@
+package com.springsnake.backend.loadgen;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses which of the preloaded keys an operation targets.
+ *
+ * - uniform: every key is equally likely
+ * - zipfian: a few keys are very hot, following a Zipf law with the given
+ *   exponent (0.99 is the classic YCSB setting); ranks are mapped to keys
+ *   through a fixed random permutation, so the hot keys don't all sort together
+ */
+interface KeyDistribution {
+
+	/**
+	 * @return The index of the next key, in [0, keys)
+	 */
+	int next();
+
+	static KeyDistribution of(String name, int keys, double theta) {
+		return switch (name) {
+			case "uniform" -> () -> ThreadLocalRandom.current().nextInt(keys);
+			case "zipfian" -> new Zipfian(keys, theta);
+			default -> throw new IllegalArgumentException("Unknown key distribution: " + name);
+		};
+	}
+
+	/**
+	 * Zipfian generator after Gray et al., "Quickly Generating Billion-Record
+	 * Synthetic Databases", as used by YCSB. The zeta constant is computed once.
+	 */
+	final class Zipfian implements KeyDistribution {
+
+		private final int items;
+
+		private final double theta;
+
+		private final double alpha;
+
+		private final double zetan;
+
+		private final double eta;
+
+		private final int[] permutation;
+
+		Zipfian(int items, double theta) {
+			this.items = items;
+			this.theta = theta;
+			this.alpha = 1.0 / (1.0 - theta);
+			this.zetan = zeta(items, theta);
+			this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetan);
+			// Seeded, so that every run puts the hot keys at the same place
+			Random random = new Random(42);
+			this.permutation = new int[items];
+			for (int i = 0; i < items; i++) {
+				int j = random.nextInt(i + 1);
+				permutation[i] = permutation[j];
+				permutation[j] = i;
+			}
+		}
+
+		private static double zeta(int n, double theta) {
+			double sum = 0;
+			for (int i = 1; i <= n; i++) {
+				sum += 1 / Math.pow(i, theta);
+			}
+			return sum;
+		}
+
+		@Override
+		public int next() {
+			double u = ThreadLocalRandom.current().nextDouble();
+			double uz = u * zetan;
+			long rank;
+			if (uz < 1.0) {
+				rank = 0;
+			} else if (uz < 1.0 + Math.pow(0.5, theta)) {
+				rank = 1;
+			} else {
+				rank = (long) (items * Math.pow(eta * u - eta + 1, alpha));
+			}
+			return permutation[(int) Math.min(rank, items - 1)];
+		}
+	}
+}
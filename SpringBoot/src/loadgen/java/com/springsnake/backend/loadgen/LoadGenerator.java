@@ -0,0 +1,340 @@
+package com.springsnake.backend.loadgen;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.springsnake.backend.BackendApplication;
+
+/**
+ * End-to-end load generator for the /api endpoints.
+ *
+ * By default it boots the backend in-process on a random port with the "memory"
+ * storage engine, so two commits can be compared on one machine without MongoDB.
+ * Use --profile=local for the embedded disk engine, --profile=default for
+ * MongoDB, or --target=http://host:port to drive an already running instance.
+ *
+ * Options (all --name=value):
+ *
+ *   --mix=read-heavy|write-heavy|putall|scan   operation mix (default read-heavy)
+ *   --mode=closed|open                         closed: fixed concurrency; open: fixed arrival rate (default closed)
+ *   --concurrency=16                           workers in closed mode
+ *   --rate=1000                                requests per second in open mode
+ *   --distribution=uniform|zipfian             key popularity (default uniform)
+ *   --zipf-theta=0.99                          skew of the zipfian distribution
+ *   --keys=10000                               keys preloaded and targeted by reads and updates
+ *   --value-size=100                           bytes per value
+ *   --batch-size=100                           values per /api/putall
+ *   --duration=30s  --warmup=5s                measured time and discarded warm-up time
+ *   --output=target/loadgen                    directory for the .hgrm and JSON reports
+ *
+ * In open mode latency is measured from the intended start of each request,
+ * so a stalled server shows up in the percentiles instead of silently lowering
+ * the offered load (no coordinated omission).
+ */
+public final class LoadGenerator {
+
+	/**
+	 * Highest latency the histograms can record, in microseconds
+	 */
+	private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+	private final Map<String, String> options;
+
+	private final HttpClient client = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_1_1)
+			.connectTimeout(Duration.ofSeconds(5))
+			.build();
+
+	private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+	private final Histogram total = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+
+	private final AtomicLong errors = new AtomicLong();
+
+	private final AtomicLong batches = new AtomicLong();
+
+	private final String mix;
+
+	private final int keys;
+
+	private final int batchSize;
+
+	private final String payload;
+
+	private final KeyDistribution distribution;
+
+	private String baseUrl;
+
+	private long measureFrom;
+
+	private LoadGenerator(Map<String, String> options) {
+		this.options = options;
+		this.mix = option("mix", "read-heavy");
+		this.keys = Integer.parseInt(option("keys", "10000"));
+		this.batchSize = Integer.parseInt(option("batch-size", "100"));
+		this.payload = "x".repeat(Integer.parseInt(option("value-size", "100")));
+		this.distribution = KeyDistribution.of(option("distribution", "uniform"), keys,
+				Double.parseDouble(option("zipf-theta", "0.99")));
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			if (!arg.startsWith("--") || !arg.contains("=")) {
+				throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+			}
+			options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+		}
+		new LoadGenerator(options).run();
+	}
+
+	private String option(String name, String defaultValue) {
+		return options.getOrDefault(name, defaultValue);
+	}
+
+	private Duration duration(String name, String defaultValue) {
+		return DurationStyle.detectAndParse(option(name, defaultValue));
+	}
+
+	private void run() throws Exception {
+		ConfigurableApplicationContext app = null;
+		baseUrl = options.get("target");
+		if (baseUrl == null) {
+			app = boot(option("profile", "memory"));
+			baseUrl = "http://localhost:" + ((WebServerApplicationContext) app).getWebServer().getPort();
+		}
+		try {
+			preload();
+			Duration warmup = duration("warmup", "5s");
+			Duration measured = duration("duration", "30s");
+			long start = System.nanoTime();
+			measureFrom = start + warmup.toNanos();
+			long end = measureFrom + measured.toNanos();
+			if (option("mode", "closed").equals("open")) {
+				runOpen(start, end, Integer.parseInt(option("rate", "1000")));
+			} else {
+				runClosed(end, Integer.parseInt(option("concurrency", "16")));
+			}
+			report(measured);
+		} finally {
+			if (app != null) {
+				app.close();
+			}
+		}
+	}
+
+	/**
+	 * Start the backend in-process on a random port.
+	 */
+	private ConfigurableApplicationContext boot(String profile) throws IOException {
+		// Passed as command line arguments so they take precedence over application.properties
+		List<String> args = new ArrayList<>();
+		args.add("--server.port=0");
+		// Per-request INFO logging would otherwise dominate the measurement
+		args.add("--logging.level.com.springsnake=" + option("app-log-level", "WARN"));
+		if (profile.equals("local")) {
+			args.add("--springsnake.local.directory=" + Files.createTempDirectory("springsnake-loadgen"));
+		}
+		SpringApplicationBuilder builder = new SpringApplicationBuilder(BackendApplication.class);
+		if (!profile.equals("default")) {
+			builder.profiles(profile);
+		}
+		return builder.run(args.toArray(String[]::new));
+	}
+
+	/**
+	 * Clear the store and insert the keys targeted by reads and updates.
+	 */
+	private void preload() throws IOException, InterruptedException {
+		send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/deleteall")).DELETE().build());
+		for (int from = 0; from < keys; from += 1000) {
+			StringBuilder body = new StringBuilder("[");
+			for (int i = from; i < Math.min(from + 1000, keys); i++) {
+				body.append(i == from ? "" : ",").append(value("key-" + i));
+			}
+			send(put("/api/putall", body.append(']').toString()));
+		}
+	}
+
+	private String value(String key) {
+		return "{\"key\":\"" + key + "\",\"value\":\"" + payload + "\"}";
+	}
+
+	private HttpRequest put(String path, String body) {
+		return HttpRequest.newBuilder(URI.create(baseUrl + path))
+				.header("Content-Type", "application/json")
+				.PUT(HttpRequest.BodyPublishers.ofString(body))
+				.build();
+	}
+
+	private int send(HttpRequest request) throws IOException, InterruptedException {
+		return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+
+	/**
+	 * Pick the next operation of the configured mix.
+	 *
+	 * @return The operation name and its request
+	 */
+	private Map.Entry<String, HttpRequest> next() {
+		int roll = ThreadLocalRandom.current().nextInt(100);
+		String key = "key-" + distribution.next();
+		String operation = switch (mix) {
+			case "read-heavy" -> roll < 95 ? "get" : "update";
+			case "write-heavy" -> roll < 10 ? "get" : "update";
+			case "putall" -> "putall";
+			case "scan" -> "getall";
+			default -> throw new IllegalArgumentException("Unknown mix: " + mix);
+		};
+		HttpRequest request = switch (operation) {
+			case "get" -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/get?key=" + key)).GET().build();
+			case "update" -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/update"))
+					.header("Content-Type", "application/json")
+					.POST(HttpRequest.BodyPublishers.ofString(value(key)))
+					.build();
+			case "putall" -> {
+				// Fresh keys every batch, so each request really inserts
+				long batch = batches.incrementAndGet();
+				StringBuilder body = new StringBuilder("[");
+				for (int i = 0; i < batchSize; i++) {
+					body.append(i == 0 ? "" : ",").append(value("batch-" + batch + "-" + i));
+				}
+				yield put("/api/putall", body.append(']').toString());
+			}
+			default -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/getall")).GET().build();
+		};
+		return Map.entry(operation, request);
+	}
+
+	private void record(String operation, long intendedStart, int status) {
+		if (status >= 500 || status == 0) {
+			errors.incrementAndGet();
+		}
+		if (intendedStart < measureFrom) {
+			return;
+		}
+		long micros = Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart), MAX_LATENCY_MICROS);
+		histograms.computeIfAbsent(operation, name -> new ConcurrentHistogram(MAX_LATENCY_MICROS, 3)).recordValue(micros);
+		total.recordValue(micros);
+	}
+
+	/**
+	 * Closed loop: a fixed number of workers, each sending its next request as
+	 * soon as the previous one completes.
+	 */
+	private void runClosed(long end, int concurrency) throws InterruptedException {
+		List<Thread> workers = new ArrayList<>();
+		for (int i = 0; i < concurrency; i++) {
+			Thread worker = new Thread(() -> {
+				while (System.nanoTime() < end) {
+					Map.Entry<String, HttpRequest> next = next();
+					long start = System.nanoTime();
+					int status;
+					try {
+						status = send(next.getValue());
+					} catch (IOException e) {
+						status = 0;
+					} catch (InterruptedException e) {
+						return;
+					}
+					record(next.getKey(), start, status);
+				}
+			}, "loadgen-" + i);
+			worker.start();
+			workers.add(worker);
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+	}
+
+	/**
+	 * Open loop: requests are started on a fixed schedule regardless of how
+	 * fast the server answers.
+	 */
+	private void runOpen(long start, long end, int rate) throws InterruptedException {
+		long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+		Semaphore inFlight = new Semaphore(10_000);
+		for (long intended = start; intended < end; intended += interval) {
+			long wait = intended - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			Map.Entry<String, HttpRequest> next = next();
+			long scheduled = intended;
+			inFlight.acquire();
+			client.sendAsync(next.getValue(), HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+				record(next.getKey(), scheduled, error == null ? response.statusCode() : 0);
+				inFlight.release();
+			});
+		}
+		inFlight.acquire(10_000);
+	}
+
+	/**
+	 * Print the summary and write the full percentile distribution (.hgrm) and a JSON summary.
+	 */
+	private void report(Duration measured) throws IOException {
+		double seconds = measured.toNanos() / 1e9;
+		PrintStream out = System.out;
+		out.printf("%nSpringSnake load test: %s%n", options);
+		out.printf("%-8s %10s %12s %9s %9s %9s %9s %9s%n", "op", "count", "ops/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("options", options);
+		Map<String, Histogram> all = new LinkedHashMap<>(histograms);
+		all.put("all", total);
+		for (Map.Entry<String, Histogram> entry : all.entrySet()) {
+			Histogram histogram = entry.getValue();
+			Map<String, Object> stats = new LinkedHashMap<>();
+			stats.put("count", histogram.getTotalCount());
+			stats.put("throughput", histogram.getTotalCount() / seconds);
+			stats.put("p50", histogram.getValueAtPercentile(50) / 1000.0);
+			stats.put("p99", histogram.getValueAtPercentile(99) / 1000.0);
+			stats.put("p999", histogram.getValueAtPercentile(99.9) / 1000.0);
+			stats.put("max", histogram.getMaxValue() / 1000.0);
+			summary.put(entry.getKey(), stats);
+			out.printf("%-8s %10d %12.1f %9.3f %9.3f %9.3f %9.3f %9s%n", entry.getKey(), stats.get("count"),
+					stats.get("throughput"), stats.get("p50"), stats.get("p99"), stats.get("p999"), stats.get("max"),
+					entry.getKey().equals("all") ? errors.get() : "");
+		}
+		summary.put("errors", errors.get());
+
+		Path output = Paths.get(option("output", "target/loadgen"));
+		Files.createDirectories(output);
+		try (PrintStream hgrm = new PrintStream(Files.newOutputStream(output.resolve(mix + ".hgrm")))) {
+			total.outputPercentileDistribution(hgrm, 1000.0);
+		}
+		new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+				.writeValue(output.resolve(mix + "-summary.json").toFile(), summary);
+		out.printf("%nLatency distribution (ms) written to %s, summary to %s%n",
+				output.resolve(mix + ".hgrm"), output.resolve(mix + "-summary.json"));
+	}
+}
@@ -1,7 +1,29 @@
 package com.springsnake.backend;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import com.springsnake.backend.utils.LegacyTimestampConverter;
+import com.springsnake.backend.utils.SpringSnakeProperties;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
  * Spring Snake Backend Application - Main Entry Point
@@ -14,6 +36,10 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * - Comprehensive error handling and validation
  * - Health check endpoints via Spring Boot Actuator
  * - Logging and monitoring capabilities
+ * - Typed application settings bound from the "springsnake" properties
+ * - Micrometer timers for methods annotated with @Timed
+ * - MongoDB conversion of change timestamps written as text by older versions
+ * - Binary CBOR and Smile request and response bodies next to JSON
  * 
  * The application provides a robust backend service for storing and retrieving
  * key-value pairs with full REST API support, designed for containerized deployment.
@@ -23,7 +49,13 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * @since 1.0
  */
 @SpringBootApplication
+@EnableConfigurationProperties(SpringSnakeProperties.class)
 public class BackendApplication {
+
+	/**
+	 * Media type of Smile bodies, as registered by Spring
+	 */
+	private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
 	
 	/**
 	 * Main method to start the Spring Boot application
@@ -37,4 +69,94 @@ public class BackendApplication {
 		SpringApplication.run(BackendApplication.class, args);
 	}
 
+	/**
+	 * Aspect that records a Micrometer timer for every @Timed bean method
+	 * 
+	 * @param registry The Micrometer registry
+	 * @return The timing aspect
+	 */
+	@Bean
+	public TimedAspect timedAspect(MeterRegistry registry) {
+		return new TimedAspect(registry);
+	}
+
+	/**
+	 * Converter for CBOR (application/cbor) bodies
+	 * 
+	 * The mapper is built with the same settings as the JSON one, so CBOR
+	 * carries the same ValueDTO model, only in a more compact binary form.
+	 * 
+	 * @param builder The Jackson builder configured by Spring Boot
+	 * @return The CBOR message converter
+	 */
+	@Bean
+	public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+		return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+	}
+
+	/**
+	 * Converter for Smile (application/x-jackson-smile) bodies
+	 * 
+	 * @param builder The Jackson builder configured by Spring Boot
+	 * @return The Smile message converter
+	 */
+	@Bean
+	public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+		return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+	}
+
+	/**
+	 * Converter for plain String bodies, which leaves CBOR and Smile to Jackson
+	 * 
+	 * Handlers answer messages such as "Saved" or "The value has not been found"
+	 * as strings. The default String converter accepts every media type, so for
+	 * a client asking for CBOR or Smile it would write the raw text labelled as
+	 * that type. This one refuses both, and the CBOR or Smile converter encodes
+	 * the string as a proper text item instead.
+	 * 
+	 * @return The String message converter, replacing the default one
+	 */
+	@Bean
+	public StringHttpMessageConverter stringHttpMessageConverter() {
+		StringHttpMessageConverter converter = new StringHttpMessageConverter(StandardCharsets.UTF_8) {
+			@Override
+			protected boolean canWrite(MediaType mediaType) {
+				return super.canWrite(mediaType) && (mediaType == null
+						|| !MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(mediaType)
+								&& !SMILE.equalsTypeAndSubtype(mediaType));
+			}
+		};
+		converter.setWriteAcceptCharset(false);
+		return converter;
+	}
+
+	/**
+	 * MVC configuration that puts the text-only String converter in place of
+	 * the default one, which Spring MVC registers again next to it
+	 * 
+	 * @param stringHttpMessageConverter The text-only String converter
+	 * @return The MVC configurer
+	 */
+	@Bean
+	public WebMvcConfigurer textOnlyStringConverters(StringHttpMessageConverter stringHttpMessageConverter) {
+		return new WebMvcConfigurer() {
+			@Override
+			public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+				converters.replaceAll(converter -> converter instanceof StringHttpMessageConverter
+						? stringHttpMessageConverter
+						: converter);
+			}
+		};
+	}
+
+	/**
+	 * MongoDB conversions that read legacy text timestamps as dates
+	 * 
+	 * @return The custom conversions used by the MongoDB mapping layer
+	 */
+	@Bean
+	public MongoCustomConversions mongoCustomConversions() {
+		return new MongoCustomConversions(List.of(new LegacyTimestampConverter()));
+	}
+
 }
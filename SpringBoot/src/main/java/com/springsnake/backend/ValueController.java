@@ -1,18 +1,49 @@
 package com.springsnake.backend;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.springsnake.backend.storage.FieldProjection;
+import com.springsnake.backend.storage.ValueChange;
+import com.springsnake.backend.utils.ChangeFeed;
+import com.springsnake.backend.utils.FieldChangeDTO;
+import com.springsnake.backend.utils.LegacyTimestampConverter;
+import com.springsnake.backend.utils.MultiGetDTO;
+import com.springsnake.backend.utils.PutAllResultDTO;
+import com.springsnake.backend.utils.RequestLog;
+import com.springsnake.backend.utils.SnapshotImportDTO;
 import com.springsnake.backend.utils.ValueDTO;
+import com.springsnake.backend.utils.ValueMetrics;
+import com.springsnake.backend.utils.ValuePageDTO;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 
 /**
  * REST Controller for Spring Snake Key-Value Store API
@@ -23,10 +54,22 @@ import lombok.extern.slf4j.Slf4j;
  * 
  * Features:
  * - Single and batch save operations
- * - Flexible retrieval (value only or full object)
+ * - Flexible retrieval (value only or full object, optionally only selected fields)
+ * - Conditional reads (ETag / If-None-Match) and compare-and-set updates (If-Match)
+ * - Atomic partial updates: increment, array append and JSON merge patch
+ * - Multi-key reads in a single request
+ * - Constant-memory NDJSON or CBOR sequence streaming of the whole collection
+ * - Delta sync: NDJSON or CBOR sequence stream of the values changed since a timestamp
+ * - Live change feed as server-sent events, resumable and filtered by key prefix
+ * - Keyset-paginated and prefix-filtered listing
+ * - Compressed snapshot export and resumable, parallel snapshot import
  * - Individual and bulk delete operations
  * - Comprehensive error handling and validation
- * - Detailed logging for monitoring and debugging
+ * - Detailed, optionally sampled and asynchronous request logging
+ * 
+ * Bodies are JSON by default. Clients can negotiate CBOR (application/cbor)
+ * or Smile (application/x-jackson-smile) with the Accept and Content-Type
+ * headers instead, which carry the same model in less bytes and CPU time.
  * 
  * All endpoints return appropriate HTTP status codes and error messages
  * for proper client-side error handling.
@@ -39,7 +82,6 @@ import lombok.extern.slf4j.Slf4j;
 @RestController
 @AllArgsConstructor
 @Validated
-@Slf4j
 @CrossOrigin(origins = "*") // TODO: Configure specific origins in production
 public class ValueController {
 
@@ -48,28 +90,93 @@ public class ValueController {
      */
     private final String notfound = "The value has not been found";
 
+    /**
+     * Largest page size accepted by the /list endpoint
+     */
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Largest number of keys accepted by the /getmany endpoint
+     */
+    private static final int MAX_GETMANY_KEYS = 10000;
+
+    /**
+     * Media type of a CBOR sequence (RFC 8742), the binary alternative to NDJSON
+     */
+    private static final String APPLICATION_CBOR_SEQ_VALUE = "application/cbor-seq";
+
+    /**
+     * Media type of a CBOR sequence
+     */
+    private static final MediaType APPLICATION_CBOR_SEQ = MediaType.parseMediaType(APPLICATION_CBOR_SEQ_VALUE);
+
+    /**
+     * Media type of Smile documents, as registered by Spring
+     */
+    private static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
     /**
      * Service layer dependency that handles all business logic for value operations
      */
     private final ValueService service;
 
+    /**
+     * Jackson mapper used to write streamed responses one document at a time
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * CBOR converter, whose mapper writes streamed responses as CBOR sequences
+     */
+    private final MappingJackson2CborHttpMessageConverter cborConverter;
+
+    /**
+     * Broadcaster of the change events served by /feed
+     */
+    private final ChangeFeed feed;
+
+    /**
+     * Payload size metrics of write requests
+     */
+    private final ValueMetrics metrics;
+
+    /**
+     * Request logger, sampled and asynchronous when configured
+     */
+    private final RequestLog log;
+
     /**
      * Retrieve a specific value by its key (value only, not metadata).
      * 
      * This endpoint returns only the value content without additional metadata
      * like timestamps. Use /getfull for complete object information.
      * 
+     * The version of the value is returned as ETag. A request whose
+     * If-None-Match header lists that ETag is answered with 304 and no body.
+     * 
+     * Readers that need only some members of a large object value list their
+     * dot-separated paths in "fields". Only those members are read from the
+     * database, and the response keeps their nesting and omits missing ones.
+     * 
      * @param key The key to search for (must not be blank)
+     * @param fields Comma-separated paths of the members to return, or null for the whole value
+     * @param ifNoneMatch The ETags the client already has, or null
      * @return ResponseEntity containing:
      *         - 200 OK: The value as a string
+     *         - 304 NOT_MODIFIED: If the value still has a version listed in If-None-Match
      *         - 404 NOT_FOUND: If the key doesn't exist
-     *         - 400 BAD_REQUEST: If key is blank or invalid
+     *         - 400 BAD_REQUEST: If key is blank or invalid, or a field path is invalid
      * 
      * @example GET /api/get?key=username
-     *          Response: "john_doe"
+     *          Response: "john_doe" (ETag: "3")
+     * 
+     * @example GET /api/get?key=article:42&fields=title,stats.views
+     *          Response: {"title":"Hello","stats":{"views":1337}} (ETag: "7")
      */
     @GetMapping("/get")
-    public ResponseEntity<Object> get(@RequestParam("key") @NotBlank String key) {
+    public ResponseEntity<Object> get(@RequestParam("key") @NotBlank String key,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         log.info("API Request - Get value for key: '{}'", key);
         
         try {
@@ -79,18 +186,33 @@ public class ValueController {
                 return new ResponseEntity<>("Key cannot be empty", HttpStatus.BAD_REQUEST);
             }
             
-            // Attempt to retrieve the value
-            Object result = service.get(key.trim());
+            FieldProjection projection;
+            try {
+                projection = FieldProjection.parse(fields);
+            } catch (IllegalArgumentException e) {
+                log.warn("Get request failed - {} for key: '{}'", e.getMessage(), key);
+                return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+            }
+            
+            // Attempt to retrieve the value with its version
+            ValueDTO result = service.getFull(key.trim(), projection);
             
             // Check if the value was found
-            if (result.toString().equals(notfound)) {
+            if (result == null) {
                 log.warn("Get request - Value not found for key: '{}'", key);
                 return new ResponseEntity<>(notfound, HttpStatus.NOT_FOUND);
             }
             
+            // Skip the body if the client has this version already
+            HttpHeaders headers = etagHeaders(result.getVersion());
+            if (isNotModified(ifNoneMatch, headers.getETag())) {
+                log.info("Get request successful - Value not modified for key: '{}'", key);
+                return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+            }
+            
             // Success case
             log.info("Get request successful - Retrieved value for key: '{}'", key);
-            return new ResponseEntity<>(result, HttpStatus.OK);
+            return new ResponseEntity<>(result.getValue(), headers, HttpStatus.OK);
             
         } catch (Exception e) {
             log.error("Get request failed - Unexpected error for key '{}': {}", key, e.getMessage(), e);
@@ -104,18 +226,27 @@ public class ValueController {
      * This endpoint returns the full ValueDTO object including key, value,
      * and metadata such as last modification timestamp.
      * 
+     * Like /get, the version is returned as ETag and a matching If-None-Match
+     * header is answered with 304, so clients can poll cheaply, and "fields"
+     * limits the value to the listed members.
+     * 
      * @param key The key to search for
+     * @param fields Comma-separated paths of the members to return, or null for the whole value
+     * @param ifNoneMatch The ETags the client already has, or null
      * @return ResponseEntity containing:
      *         - 200 OK: Complete ValueDTO object with metadata
+     *         - 304 NOT_MODIFIED: If the value still has a version listed in If-None-Match
      *         - 404 NOT_FOUND: If the key doesn't exist
-     *         - 400 BAD_REQUEST: If key is blank or invalid
+     *         - 400 BAD_REQUEST: If key is blank or invalid, or a field path is invalid
      *         - 500 INTERNAL_SERVER_ERROR: For unexpected errors
      * 
      * @example GET /api/getfull?key=username
-     *          Response: {"key":"username","value":"john_doe","lastchange":"2025-07-27T10:15:30.123Z[UTC]"}
+     *          Response: {"key":"username","value":"john_doe","lastchange":"2025-07-27T10:15:30.123Z","version":3}
      */
     @GetMapping("/getfull")
-    public ResponseEntity<Object> getfull(@RequestParam("key") @NotBlank String key) {
+    public ResponseEntity<Object> getfull(@RequestParam("key") @NotBlank String key,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         log.info("API Request - Get full object for key: '{}'", key);
         
         try {
@@ -125,8 +256,16 @@ public class ValueController {
                 return new ResponseEntity<>("Key cannot be empty", HttpStatus.BAD_REQUEST);
             }
             
+            FieldProjection projection;
+            try {
+                projection = FieldProjection.parse(fields);
+            } catch (IllegalArgumentException e) {
+                log.warn("GetFull request failed - {} for key: '{}'", e.getMessage(), key);
+                return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+            }
+            
             // Retrieve the full object with metadata
-            ValueDTO fullResult = service.getFull(key.trim());
+            ValueDTO fullResult = service.getFull(key.trim(), projection);
             
             // Check if the value was found
             if (fullResult == null) {
@@ -134,8 +273,15 @@ public class ValueController {
                 return new ResponseEntity<>(notfound, HttpStatus.NOT_FOUND);
             }
             
+            // Skip the body if the client has this version already
+            HttpHeaders headers = etagHeaders(fullResult.getVersion());
+            if (isNotModified(ifNoneMatch, headers.getETag())) {
+                log.info("GetFull request successful - Value not modified for key: '{}'", key);
+                return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+            }
+            
             log.info("GetFull request successful - Retrieved full object for key: '{}'", key);
-            return new ResponseEntity<>(fullResult, HttpStatus.OK);
+            return new ResponseEntity<>(fullResult, headers, HttpStatus.OK);
             
         } catch (Exception e) {
             log.error("GetFull request failed - Unexpected error for key '{}': {}", key, e.getMessage(), e);
@@ -143,6 +289,57 @@ public class ValueController {
         }
     }
     
+    /**
+     * Retrieve the values of several keys in one request.
+     * 
+     * This endpoint replaces a series of /get calls. The keys are resolved
+     * through the same cache as single reads, and all uncached keys are read
+     * from the database together.
+     * 
+     * @param keys List of keys to retrieve (1 to 10000, duplicates ignored)
+     * @return ResponseEntity containing:
+     *         - 200 OK: MultiGetDTO with a key to value map and the list of missing keys
+     *         - 400 BAD_REQUEST: If the list is empty, too long or contains a blank key
+     *         - 500 INTERNAL_SERVER_ERROR: For unexpected errors
+     * 
+     * @example POST /api/getmany
+     *          Body: ["user1","user2","unknown"]
+     *          Response: {"values":{"user1":"john","user2":"jane"},"missing":["unknown"]}
+     */
+    @PostMapping("/getmany")
+    public ResponseEntity<Object> getMany(@RequestBody List<String> keys) {
+        log.info("API Request - Get many values (count: {})", keys != null ? keys.size() : 0);
+        
+        try {
+            // Validate input list
+            if (keys == null || keys.isEmpty()) {
+                log.warn("GetMany request failed - empty or null key list provided");
+                return new ResponseEntity<>("Key list cannot be empty", HttpStatus.BAD_REQUEST);
+            }
+            if (keys.size() > MAX_GETMANY_KEYS) {
+                log.warn("GetMany request failed - too many keys: {}", keys.size());
+                return new ResponseEntity<>("Key list cannot contain more than " + MAX_GETMANY_KEYS + " keys", HttpStatus.BAD_REQUEST);
+            }
+            
+            // Validate each key in the list
+            for (int i = 0; i < keys.size(); i++) {
+                if (keys.get(i) == null || keys.get(i).trim().isEmpty()) {
+                    log.warn("GetMany request failed - empty key at index {}", i);
+                    return new ResponseEntity<>("Key at index " + i + " cannot be empty", HttpStatus.BAD_REQUEST);
+                }
+            }
+            
+            MultiGetDTO result = service.getMany(keys.stream().map(String::trim).toList());
+            log.info("GetMany request successful - Found {} values, {} missing",
+                    result.getValues().size(), result.getMissing().size());
+            return new ResponseEntity<>(result, HttpStatus.OK);
+            
+        } catch (Exception e) {
+            log.error("GetMany request failed - Unexpected error: {}", e.getMessage(), e);
+            return new ResponseEntity<>("Internal server error", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     /**
      * Retrieve all key-value pairs from the database.
      * 
@@ -155,7 +352,7 @@ public class ValueController {
      *         - 500 INTERNAL_SERVER_ERROR: For unexpected errors
      * 
      * @example GET /api/getall
-     *          Response: [{"key":"user1","value":"john","lastchange":"2025-07-27T10:15:30.123Z[UTC]"}]
+     *          Response: [{"key":"user1","value":"john","lastchange":"2025-07-27T10:15:30.123Z"}]
      * 
      * @apiNote Consider implementing pagination for production use with large datasets
      */
@@ -174,14 +371,331 @@ public class ValueController {
         }
     }
 
+    /**
+     * List key-value pairs page by page in ascending key order.
+     * 
+     * This endpoint is the paginated alternative to /getall. Each response
+     * carries an opaque "next" cursor; passing it back as "after" returns the
+     * following page. Pages are read with a range scan on the key index, so
+     * page 10,000 costs the same as page 1.
+     * 
+     * @param limit The maximum number of values per page (1 to 1000, default 100)
+     * @param after Cursor returned as "next" by the previous page (optional)
+     * @param prefix Only list keys starting with this prefix (optional)
+     * @return ResponseEntity containing:
+     *         - 200 OK: ValuePageDTO with the values and the next cursor (null on the last page)
+     *         - 400 BAD_REQUEST: If the limit is out of range or the cursor is malformed
+     *         - 500 INTERNAL_SERVER_ERROR: For unexpected errors
+     * 
+     * @example GET /api/list?limit=2&prefix=user
+     *          Response: {"values":[{"key":"user1",...},{"key":"user2",...}],"next":"dXNlcjI"}
+     */
+    @GetMapping("/list")
+    public ResponseEntity<Object> list(@RequestParam(value = "limit", defaultValue = "100") int limit,
+                                       @RequestParam(value = "after", required = false) String after,
+                                       @RequestParam(value = "prefix", required = false) String prefix) {
+        log.info("API Request - List values (limit: {}, prefix: '{}')", limit, prefix);
+        
+        try {
+            // Validate input
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                log.warn("List request failed - invalid limit: {}", limit);
+                return new ResponseEntity<>("Limit must be between 1 and " + MAX_PAGE_SIZE, HttpStatus.BAD_REQUEST);
+            }
+            
+            ValuePageDTO page = service.list(after, prefix, limit);
+            log.info("List request successful - Retrieved {} values", page.getValues().size());
+            return new ResponseEntity<>(page, HttpStatus.OK);
+            
+        } catch (IllegalArgumentException e) {
+            log.warn("List request failed - malformed cursor: '{}'", after);
+            return new ResponseEntity<>("Invalid cursor", HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            log.error("List request failed - Unexpected error: {}", e.getMessage(), e);
+            return new ResponseEntity<>("Internal server error", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Stream all key-value pairs as newline-delimited JSON (NDJSON).
+     * 
+     * This endpoint is the constant-memory alternative to /getall for large
+     * collections. It walks a database cursor and writes each ValueDTO as one
+     * JSON line as soon as it is read, so the first bytes arrive immediately
+     * and memory use does not grow with the collection size.
+     * 
+     * Clients that accept application/cbor-seq receive a CBOR sequence
+     * instead: the same ValueDTO objects as consecutive CBOR items.
+     * 
+     * @param accept The Accept header, or null
+     * @return ResponseEntity containing:
+     *         - 200 OK: One ValueDTO JSON object per line, or one CBOR item per ValueDTO (may be empty)
+     * 
+     * @example GET /api/getall/stream
+     *          Response: {"key":"user1","value":"john","lastchange":"2025-07-27T10:15:30.123Z"}
+     *                    {"key":"user2","value":"jane","lastchange":"2025-07-27T10:16:02.456Z"}
+     * 
+     * @apiNote Errors after the first line can only be signalled by aborting the response
+     */
+    @GetMapping(value = "/getall/stream", produces = { MediaType.APPLICATION_NDJSON_VALUE, APPLICATION_CBOR_SEQ_VALUE })
+    public ResponseEntity<StreamingResponseBody> getAllStream(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        log.info("API Request - Stream all values");
+        
+        MediaType format = sequenceFormat(accept);
+        StreamingResponseBody body = out -> {
+            try (Stream<ValueDTO> values = service.streamAll()) {
+                long count = writeSequence(values, format, out);
+                log.info("GetAll stream successful - Streamed {} values", count);
+            } catch (IOException | RuntimeException e) {
+                log.error("GetAll stream failed - Unexpected error: {}", e.getMessage(), e);
+                throw e;
+            }
+        };
+        return ResponseEntity.ok().contentType(format).body(body);
+    }
+
+    /**
+     * Stream the key-value pairs changed since a point in time as NDJSON.
+     * 
+     * This endpoint lets replicas sync incrementally instead of downloading
+     * the whole collection. Values are written in change order, one JSON line
+     * each, over a cursor on the lastchange index. The "since" bound is
+     * inclusive, so a client can pass the lastchange of the last value it
+     * received and drop the values it already has. Deleted keys are not
+     * reported. Like /getall/stream, it writes a CBOR sequence instead for
+     * clients that accept application/cbor-seq.
+     * 
+     * @param since ISO-8601 timestamp, e.g. 2025-07-27T10:15:30.123Z
+     * @param accept The Accept header, or null
+     * @return ResponseEntity containing:
+     *         - 200 OK: One ValueDTO JSON object per line or CBOR item, oldest change first (may be empty)
+     *         - 400 BAD_REQUEST: If the timestamp cannot be parsed
+     * 
+     * @example GET /api/changes?since=2025-07-27T10:15:30.123Z
+     *          Response: {"key":"user1","value":"john","lastchange":"2025-07-27T10:15:30.123Z"}
+     *                    {"key":"user2","value":"jane","lastchange":"2025-07-27T10:16:02.456Z"}
+     * 
+     * @apiNote Errors after the first line can only be signalled by aborting the response
+     */
+    @GetMapping(value = "/changes", produces = { MediaType.APPLICATION_NDJSON_VALUE, APPLICATION_CBOR_SEQ_VALUE })
+    public ResponseEntity<StreamingResponseBody> changes(@RequestParam("since") @NotBlank String since,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        log.info("API Request - Stream changes since: '{}'", since);
+        
+        Instant from;
+        try {
+            from = LegacyTimestampConverter.parse(since.trim());
+        } catch (DateTimeParseException e) {
+            log.warn("Changes request failed - invalid timestamp: '{}'", since);
+            // The body must stay a StreamingResponseBody for Spring MVC to pick the streaming handler
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(out -> out.write(
+                    "Invalid timestamp, expected ISO-8601 such as 2025-07-27T10:15:30.123Z".getBytes(StandardCharsets.UTF_8)));
+        }
+        
+        MediaType format = sequenceFormat(accept);
+        StreamingResponseBody body = out -> {
+            try (Stream<ValueDTO> values = service.streamChangedSince(from)) {
+                long count = writeSequence(values, format, out);
+                log.info("Changes stream successful - Streamed {} values changed since {}", count, from);
+            } catch (IOException | RuntimeException e) {
+                log.error("Changes stream failed - Unexpected error: {}", e.getMessage(), e);
+                throw e;
+            }
+        };
+        return ResponseEntity.ok().contentType(format).body(body);
+    }
+
+    /**
+     * Subscribe to the live change feed as server-sent events.
+     * 
+     * Every put, update (including increments, appends and patches), delete
+     * and deleteall is pushed as one event named after its type, whose data
+     * is a ChangeEventDTO with the key and, where known, the new version.
+     * Values are not included; clients fetch the keys they need with /getmany.
+     * The connection stays open, with a comment line at the heartbeat interval
+     * while nothing happens.
+     * 
+     * Browsers' EventSource reconnects by itself and sends the id of the last
+     * event as the Last-Event-ID header; the events missed in between are then
+     * sent first, as long as they are still in the history. Otherwise a "reset"
+     * event tells the client to resynchronize. A client that reads too slowly
+     * gets an "overflow" event and is disconnected, so it can resume the same way.
+     * 
+     * @param prefix Only send events of keys starting with this prefix (optional)
+     * @param lastEventIdParam Id of the last event received, for clients that cannot set headers (optional)
+     * @param lastEventId The Last-Event-ID header, which takes precedence (optional)
+     * @return ResponseEntity containing:
+     *         - 200 OK: The text/event-stream of change events
+     *         - 400 BAD_REQUEST: If the last event id is malformed (no body)
+     *         - 503 SERVICE_UNAVAILABLE: If the maximum number of subscribers is connected (no body)
+     * 
+     * @example GET /api/feed?prefix=user
+     *          Response: id:lr3k2p1c-42
+     *                    event:put
+     *                    data:{"id":"lr3k2p1c-42","type":"put","key":"user1","version":1,"lastchange":"2025-07-27T10:15:30.123Z"}
+     */
+    @GetMapping(value = "/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> feed(@RequestParam(value = "prefix", required = false) String prefix,
+            @RequestParam(value = "lastEventId", required = false) String lastEventIdParam,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        log.info("API Request - Subscribe to change feed with prefix: '{}'", prefix);
+        
+        String resumeFrom = lastEventId != null ? lastEventId : lastEventIdParam;
+        try {
+            SseEmitter emitter = feed.subscribe(prefix, resumeFrom);
+            log.info("Feed request successful - Subscribed after event: '{}'", resumeFrom);
+            return new ResponseEntity<>(emitter, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            log.warn("Feed request failed - {}", e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (TransientDataAccessResourceException e) {
+            log.warn("Feed request failed - {}", e.getMessage());
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (Exception e) {
+            log.error("Feed request failed - Unexpected error: {}", e.getMessage(), e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Choose the format of a streamed response from the Accept header.
+     * 
+     * The first listed type that names one of the two formats wins, so
+     * NDJSON stays the default for clients that accept anything.
+     * 
+     * @param accept The Accept header, or null
+     * @return APPLICATION_CBOR_SEQ or APPLICATION_NDJSON
+     */
+    private static MediaType sequenceFormat(String accept) {
+        if (accept != null) {
+            for (MediaType type : MediaType.parseMediaTypes(accept)) {
+                if (type.equalsTypeAndSubtype(APPLICATION_CBOR_SEQ)) {
+                    return APPLICATION_CBOR_SEQ;
+                }
+                if (type.isCompatibleWith(MediaType.APPLICATION_NDJSON)) {
+                    break;
+                }
+            }
+        }
+        return MediaType.APPLICATION_NDJSON;
+    }
+
+    /**
+     * Write a stream of objects to an output stream as NDJSON or as a CBOR sequence.
+     * 
+     * Output is flushed periodically so that clients receive data while the
+     * database cursor is still being consumed.
+     * 
+     * @param items The objects to serialize, one per line or CBOR item
+     * @param format APPLICATION_NDJSON or APPLICATION_CBOR_SEQ
+     * @param out The response output stream
+     * @return The number of objects written
+     * @throws IOException If writing to the client fails
+     */
+    private long writeSequence(Stream<?> items, MediaType format, OutputStream out) throws IOException {
+        boolean ndjson = MediaType.APPLICATION_NDJSON.equals(format);
+        ObjectMapper mapper = ndjson ? objectMapper : cborConverter.getObjectMapper();
+        long count = 0;
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            if (ndjson) {
+                generator.setRootValueSeparator(null);
+            }
+            Iterator<?> iterator = items.iterator();
+            while (iterator.hasNext()) {
+                generator.writeObject(iterator.next());
+                if (ndjson) {
+                    generator.writeRaw('\n');
+                }
+                if (++count % 1000 == 0) {
+                    generator.flush();
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Check the optional TTL of a write request.
+     * 
+     * @param ttl The TTL in seconds, or null
+     * @return true if the TTL is absent or within the accepted range
+     */
+    private static boolean isValidTtl(Long ttl) {
+        return ttl == null || (ttl > 0 && ttl <= ValueDTO.MAX_TTL);
+    }
+
+    /**
+     * Build the response headers carrying the ETag of a value version.
+     * 
+     * @param version The version of the value, or null if it is not known yet
+     * @return Headers with a strong ETag such as "3", or without ETag
+     */
+    private static HttpHeaders etagHeaders(Long version) {
+        HttpHeaders headers = new HttpHeaders();
+        if (version != null) {
+            headers.setETag("\"" + version + "\"");
+        }
+        return headers;
+    }
+
+    /**
+     * Check an If-None-Match header against the current ETag.
+     * 
+     * The comparison is the weak one required for If-None-Match, so a W/
+     * prefix is ignored, and "*" matches any existing value.
+     * 
+     * @param ifNoneMatch The header value, or null
+     * @param etag The current ETag, or null if the value has none
+     * @return true if the client has the current version already
+     */
+    private static boolean isNotModified(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read the version a conditional update expects from its If-Match header.
+     * 
+     * @param ifMatch The header value, or null
+     * @return The expected version, or null if the update is unconditional ("*" or no header)
+     * @throws IllegalArgumentException If the header is not one strong ETag of a version
+     */
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new IllegalArgumentException("Not a strong ETag: " + ifMatch);
+        }
+        return Long.parseLong(tag.substring(1, tag.length() - 1));
+    }
+
     /**
      * Add or create a new key-value pair in the database.
      * 
      * This endpoint creates a new key-value pair if the key doesn't exist.
      * If the key already exists, it returns a conflict status to maintain
      * data integrity. Use the /update endpoint to modify existing values.
+     * The conflict is detected by the unique key index during the insert,
+     * so concurrent puts of the same key cannot both succeed.
+     * An optional "ttl" in seconds makes the value expire; a key whose value
+     * has expired can be put again.
      * 
-     * @param value The ValueDTO object containing key and value (key and value required)
+     * @param value The ValueDTO object containing key, value and optional ttl (key and value required)
+     * @param request The HTTP request, whose body size is recorded as a metric
      * @return ResponseEntity containing:
      *         - 201 CREATED: If the value was successfully created
      *         - 409 CONFLICT: If the key already exists
@@ -189,12 +703,13 @@ public class ValueController {
      *         - 500 INTERNAL_SERVER_ERROR: For unexpected errors
      * 
      * @example PUT /api/put
-     *          Body: {"key":"username","value":"john_doe"}
+     *          Body: {"key":"username","value":"john_doe","ttl":3600}
      *          Response: "Value has been inserted successfully"
      */
     @PutMapping("/put")
-    public ResponseEntity<String> put(@Valid @RequestBody ValueDTO value) {
+    public ResponseEntity<String> put(@Valid @RequestBody ValueDTO value, HttpServletRequest request) {
         log.info("API Request - Put value for key: '{}'", value.getKey());
+        metrics.recordValueSize(request.getContentLengthLong());
         
         try {
             // Validate input - key validation is handled by @Valid annotation
@@ -216,18 +731,14 @@ public class ValueController {
                 return new ResponseEntity<>("Value cannot be empty", HttpStatus.BAD_REQUEST);
             }
             
-            // Check if the value already exists
-            Object existingValue = service.get(value.getKey().trim());
-            if (!existingValue.toString().equals(notfound)) {
-                log.warn("Put request failed - Value already exists for key: '{}'", value.getKey());
-                return new ResponseEntity<>("This value exists already", HttpStatus.CONFLICT);
-            }
-            
             // Create the new value
-            String result = service.put(value.getKey().trim(), value.getValue());
+            String result = service.put(value.getKey().trim(), value.getValue(), value.getTtl());
             log.info("Put request successful - Created value for key: '{}'", value.getKey());
             return new ResponseEntity<>(result, HttpStatus.CREATED);
             
+        } catch (DuplicateKeyException e) {
+            log.warn("Put request failed - Value already exists for key: '{}'", value.getKey());
+            return new ResponseEntity<>("This value exists already", HttpStatus.CONFLICT);
         } catch (Exception e) {
             log.error("Put request failed - Unexpected error for key '{}': {}", value.getKey(), e.getMessage(), e);
             return new ResponseEntity<>("Internal server error", HttpStatus.INTERNAL_SERVER_ERROR);
@@ -237,24 +748,26 @@ public class ValueController {
     /**
      * Add or create multiple new key-value pairs in the database.
      * 
-     * This endpoint creates multiple key-value pairs in a single transaction.
-     * If any key already exists, the entire operation is rejected to maintain
-     * data consistency. All keys must be unique within the request and not
-     * exist in the database.
+     * This endpoint creates every key-value pair whose key doesn't exist yet and
+     * reports the result per key. Keys that already exist, or that appear more
+     * than once in the request, are reported as conflicted instead of failing
+     * the whole batch. Existence is checked with one query per chunk of keys.
+     * Each entry may carry its own "ttl" in seconds.
      * 
      * @param inputValues List of ValueDTO objects containing keys and values
      * @return ResponseEntity containing:
      *         - 200 OK: If all values were successfully created
-     *         - 409 CONFLICT: If any key already exists
+     *         - 207 MULTI_STATUS: If some values were created and others conflicted
+     *         - 409 CONFLICT: If every key already exists
      *         - 400 BAD_REQUEST: If input validation fails
      *         - 500 INTERNAL_SERVER_ERROR: For unexpected errors
      * 
      * @example PUT /api/putall
      *          Body: [{"key":"user1","value":"john"},{"key":"user2","value":"jane"}]
-     *          Response: "All values have been inserted successfully"
+     *          Response: {"created":["user1","user2"],"conflicted":[]}
      */
     @PutMapping("/putall")
-    public ResponseEntity<String> putAll(@RequestBody List<ValueDTO> inputValues) {
+    public ResponseEntity<Object> putAll(@RequestBody List<ValueDTO> inputValues) {
         log.info("API Request - Put all values (count: {})", inputValues != null ? inputValues.size() : 0);
         
         try {
@@ -285,20 +798,33 @@ public class ValueController {
                     log.warn("PutAll request failed - null value at index {} for key '{}'", i, value.getKey());
                     return new ResponseEntity<>("Value at index " + i + " cannot be null", HttpStatus.BAD_REQUEST);
                 }
-            }
-            
-            // Check if any of the values already exist
-            for (ValueDTO value : inputValues) {
-                Object existingValue = service.get(value.getKey().trim());
-                if (!existingValue.toString().equals(notfound)) {
-                    log.warn("PutAll request failed - Value already exists for key: '{}'", value.getKey());
-                    return new ResponseEntity<>("One of the values exists already", HttpStatus.CONFLICT);
+                
+                // Validate the optional TTL
+                if (!isValidTtl(value.getTtl())) {
+                    log.warn("PutAll request failed - invalid TTL at index {} for key '{}'", i, value.getKey());
+                    return new ResponseEntity<>("TTL at index " + i + " must be between 1 and " + ValueDTO.MAX_TTL + " seconds",
+                            HttpStatus.BAD_REQUEST);
                 }
             }
             
             // All validations passed, create all values
-            String result = service.putAll(inputValues);
-            log.info("PutAll request successful - Created {} values", inputValues.size());
+            metrics.recordBatchSize(inputValues.size());
+            List<ValueDTO> trimmed = inputValues.stream()
+                    .map(value -> new ValueDTO(value.getKey().trim(), value.getValue(), null, value.getTtl(), null, null))
+                    .toList();
+            PutAllResultDTO result = service.putAll(trimmed);
+            
+            // Check if any of the values already existed
+            if (result.getCreated().isEmpty()) {
+                log.warn("PutAll request failed - All {} values exist already", result.getConflicted().size());
+                return new ResponseEntity<>(result, HttpStatus.CONFLICT);
+            }
+            if (!result.getConflicted().isEmpty()) {
+                log.warn("PutAll request partially successful - Created {} values, {} exist already",
+                        result.getCreated().size(), result.getConflicted().size());
+                return new ResponseEntity<>(result, HttpStatus.MULTI_STATUS);
+            }
+            log.info("PutAll request successful - Created {} values", result.getCreated().size());
             return new ResponseEntity<>(result, HttpStatus.OK);
             
         } catch (Exception e) {
@@ -307,27 +833,135 @@ public class ValueController {
         }
     }
 
+    /**
+     * Download a compressed snapshot of all key-value pairs.
+     * 
+     * The snapshot is written while a cursor walks the collection, so neither
+     * the server nor the client holds the dataset in memory. It is a gzip
+     * stream of length-prefixed CBOR records (see ValueSnapshot) that keeps
+     * the lastchange, expiry and version of every value, and it is meant to
+     * be loaded again with POST /api/snapshot.
+     * 
+     * @return ResponseEntity containing:
+     *         - 200 OK: The snapshot as application/octet-stream
+     * 
+     * @example GET /api/snapshot
+     *          curl -o values.snap.gz "http://localhost:8080/api/snapshot"
+     * 
+     * @apiNote Errors after the first bytes can only be signalled by aborting the response
+     */
+    @GetMapping(value = "/snapshot", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportSnapshot() {
+        log.info("API Request - Export snapshot");
+        
+        StreamingResponseBody body = out -> {
+            try {
+                long count = service.exportSnapshot(out);
+                log.info("Snapshot export successful - Exported {} values", count);
+            } catch (IOException | RuntimeException e) {
+                log.error("Snapshot export failed - Unexpected error: {}", e.getMessage(), e);
+                throw e;
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"springsnake.snap.gz\"")
+                .body(body);
+    }
+
+    /**
+     * Load a snapshot created by GET /api/snapshot.
+     * 
+     * The request body is read in chunks that are inserted with parallel,
+     * unordered bulk inserts while the rest is still arriving. Keys that exist
+     * already are left unchanged, so importing twice is harmless. Progress is
+     * logged at regular intervals. If the upload breaks off or an insert fails,
+     * the import can be resumed by sending the same snapshot with the offset
+     * from the response or the log; the records before it are skipped.
+     * 
+     * @param in The snapshot (request body)
+     * @param offset The number of leading records to skip (default 0)
+     * @return ResponseEntity containing:
+     *         - 200 OK: SnapshotImportDTO if the whole snapshot was loaded
+     *         - 400 BAD_REQUEST: SnapshotImportDTO with the offset to resume from if the snapshot
+     *           ended early, or an error message if it is not a valid snapshot
+     *         - 503 SERVICE_UNAVAILABLE: If the database is temporarily unavailable
+     *         - 500 INTERNAL_SERVER_ERROR: If an unexpected error occurs
+     * 
+     * @example POST /api/snapshot?offset=0
+     *          curl -X POST -H "Content-Type: application/octet-stream" --data-binary @values.snap.gz "http://localhost:8080/api/snapshot"
+     *          Response: {"offset":1000000,"created":999000,"conflicted":1000,"expired":0,"complete":true}
+     */
+    @PostMapping(value = "/snapshot", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Object> importSnapshot(InputStream in,
+            @RequestParam(value = "offset", defaultValue = "0") long offset) {
+        log.info("API Request - Import snapshot from offset: {}", offset);
+        
+        try {
+            if (offset < 0) {
+                log.warn("Snapshot import failed - negative offset: {}", offset);
+                return new ResponseEntity<>("Offset cannot be negative", HttpStatus.BAD_REQUEST);
+            }
+            SnapshotImportDTO result = service.importSnapshot(in, offset);
+            if (!result.isComplete()) {
+                log.warn("Snapshot import incomplete - Created {} values, resume with offset {}",
+                        result.getCreated(), result.getOffset());
+                return new ResponseEntity<>(result, HttpStatus.BAD_REQUEST);
+            }
+            log.info("Snapshot import successful - Created {} values, {} exist already, {} expired",
+                    result.getCreated(), result.getConflicted(), result.getExpired());
+            return new ResponseEntity<>(result, HttpStatus.OK);
+            
+        } catch (IllegalArgumentException e) {
+            log.warn("Snapshot import failed - {}", e.getMessage());
+            return new ResponseEntity<>("Invalid snapshot: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (TransientDataAccessResourceException e) {
+            log.warn("Snapshot import failed - Database unavailable: {}", e.getMessage());
+            return new ResponseEntity<>("Service temporarily unavailable", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (Exception e) {
+            log.error("Snapshot import failed - Unexpected error: {}", e.getMessage(), e);
+            return new ResponseEntity<>("Internal server error", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     /**
      * Update an existing key-value pair in the database.
      * 
      * This endpoint updates the value for an existing key. The key must
      * already exist in the database. Use the /put endpoint to create new
-     * key-value pairs.
+     * key-value pairs. An optional "ttl" in seconds replaces the expiry of the
+     * value; without it the current expiry is kept.
+     * 
+     * With an If-Match header holding the ETag of a previous read, the update
+     * is a compare-and-set: it is applied only if the value still has that
+     * version, as one atomic write, and the response carries the new ETag.
+     * Otherwise it fails with 412 and the client re-reads and retries.
      * 
      * @param value The ValueDTO object containing key and new value
+     * @param ifMatch The ETag the value must still have, or null for an unconditional update
+     * @param request The HTTP request, whose body size is recorded as a metric
      * @return ResponseEntity containing:
      *         - 200 OK: If the value was successfully updated
      *         - 404 NOT_FOUND: If the key doesn't exist
+     *         - 412 PRECONDITION_FAILED: If the value no longer has the version given in If-Match
      *         - 400 BAD_REQUEST: If input validation fails
+     *         - 503 SERVICE_UNAVAILABLE: If the write-behind buffer stays full
      *         - 500 INTERNAL_SERVER_ERROR: For unexpected errors
      * 
      * @example POST /api/update
      *          Body: {"key":"username","value":"jane_doe"}
      *          Response: "Value has been updated successfully"
+     * 
+     * @example POST /api/update (If-Match: "3")
+     *          Body: {"key":"username","value":"jane_doe"}
+     *          Response: "Updated" (ETag: "4")
      */
     @PostMapping("/update")
-    public ResponseEntity<String> update(@RequestBody ValueDTO value) {
+    public ResponseEntity<String> update(@RequestBody ValueDTO value,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            HttpServletRequest request) {
         log.info("API Request - Update value for key: '{}'", value.getKey());
+        metrics.recordValueSize(request.getContentLengthLong());
         
         try {
             // Validate input
@@ -341,24 +975,248 @@ public class ValueController {
                 return new ResponseEntity<>("Value cannot be null", HttpStatus.BAD_REQUEST);
             }
             
-            // Check if the value exists
-            Object existingValue = service.get(value.getKey().trim());
-            if (existingValue.toString().equals(notfound)) {
+            if (!isValidTtl(value.getTtl())) {
+                log.warn("Update request failed - invalid TTL provided for key: '{}'", value.getKey());
+                return new ResponseEntity<>("TTL must be between 1 and " + ValueDTO.MAX_TTL + " seconds", HttpStatus.BAD_REQUEST);
+            }
+            
+            Long expectedVersion;
+            try {
+                expectedVersion = expectedVersion(ifMatch);
+            } catch (IllegalArgumentException e) {
+                log.warn("Update request failed - invalid If-Match header for key: '{}'", value.getKey());
+                return new ResponseEntity<>("If-Match must be one ETag returned by /get or /getfull", HttpStatus.BAD_REQUEST);
+            }
+            
+            // Update the value only if it still has the expected version
+            if (expectedVersion != null) {
+                Long version = service.updateIfVersion(value.getKey().trim(), expectedVersion, value.getValue(),
+                        value.getTtl());
+                if (version == null) {
+                    log.warn("Update request failed - Value not found for key: '{}'", value.getKey());
+                    return new ResponseEntity<>(notfound, HttpStatus.NOT_FOUND);
+                }
+                log.info("Update request successful - Updated version {} of key: '{}'", expectedVersion, value.getKey());
+                return new ResponseEntity<>("Updated", etagHeaders(version), HttpStatus.OK);
+            }
+            
+            // Update the value
+            String result = service.update(value.getKey().trim(), value.getValue(), value.getTtl());
+            
+            // Check if the value was found
+            if (result == null) {
                 log.warn("Update request failed - Value not found for key: '{}'", value.getKey());
                 return new ResponseEntity<>(notfound, HttpStatus.NOT_FOUND);
             }
             
-            // Update the value
-            String result = service.update(value.getKey().trim(), value.getValue());
             log.info("Update request successful - Updated value for key: '{}'", value.getKey());
             return new ResponseEntity<>(result, HttpStatus.OK);
             
+        } catch (OptimisticLockingFailureException e) {
+            log.warn("Update request failed - Version mismatch for key: '{}'", value.getKey());
+            return new ResponseEntity<>("The value has been changed since it was read", HttpStatus.PRECONDITION_FAILED);
+        } catch (TransientDataAccessResourceException e) {
+            log.warn("Update request rejected - Write-behind buffer full for key: '{}'", value.getKey());
+            return new ResponseEntity<>("Too many pending updates, retry later", HttpStatus.SERVICE_UNAVAILABLE);
         } catch (Exception e) {
             log.error("Update request failed - Unexpected error for key '{}': {}", value.getKey(), e.getMessage(), e);
             return new ResponseEntity<>("Internal server error", HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    /**
+     * Add a number to a number inside a value, atomically.
+     * 
+     * The number is addressed by a dot-separated "path" of object members; without
+     * a path the value itself is incremented. A missing number is created with
+     * the delta, which defaults to 1. Concurrent increments are never lost,
+     * because the addition happens in the database instead of the client.
+     * 
+     * @param change The FieldChangeDTO with key, optional path and optional delta
+     * @return ResponseEntity containing:
+     *         - 200 OK: The new number
+     *         - 404 NOT_FOUND: If the key doesn't exist
+     *         - 409 CONFLICT: If the path doesn't lead to a number
+     *         - 400 BAD_REQUEST: If input validation fails
+     *         - 503 SERVICE_UNAVAILABLE: If the write-behind buffer stays full
+     *         - 500 INTERNAL_SERVER_ERROR: For unexpected errors
+     * 
+     * @example POST /api/increment
+     *          Body: {"key":"article:42","path":"stats.views","delta":1}
+     *          Response: 1337
+     */
+    @PostMapping("/increment")
+    public ResponseEntity<Object> increment(@RequestBody FieldChangeDTO change) {
+        log.info("API Request - Increment '{}' of key: '{}'", change.getPath(), change.getKey());
+        
+        try {
+            // Validate input
+            if (change.getKey() == null || change.getKey().trim().isEmpty()) {
+                log.warn("Increment request failed - empty key provided");
+                return new ResponseEntity<>("Key cannot be empty", HttpStatus.BAD_REQUEST);
+            }
+            
+            Number delta = change.getDelta() == null ? 1 : change.getDelta();
+            Number result = service.increment(change.getKey().trim(), ValueChange.parsePath(change.getPath()), delta);
+            
+            // Check if the value was found
+            if (result == null) {
+                log.warn("Increment request failed - Value not found for key: '{}'", change.getKey());
+                return new ResponseEntity<>(notfound, HttpStatus.NOT_FOUND);
+            }
+            
+            log.info("Increment request successful - Incremented '{}' of key: '{}'", change.getPath(), change.getKey());
+            return new ResponseEntity<>(result, HttpStatus.OK);
+            
+        } catch (IllegalArgumentException e) {
+            log.warn("Increment request failed - {} for key: '{}'", e.getMessage(), change.getKey());
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Increment request failed - {} for key: '{}'", e.getMessage(), change.getKey());
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+        } catch (TransientDataAccessResourceException e) {
+            log.warn("Increment request rejected - Write-behind buffer full for key: '{}'", change.getKey());
+            return new ResponseEntity<>("Too many pending updates, retry later", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (Exception e) {
+            log.error("Increment request failed - Unexpected error for key '{}': {}", change.getKey(), e.getMessage(), e);
+            return new ResponseEntity<>("Internal server error", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Append an element to an array inside a value, atomically.
+     * 
+     * The array is addressed like the number of /increment and created if it
+     * is missing. Only the new element is sent to the database, so appending
+     * to a large array costs the same as appending to an empty one.
+     * 
+     * @param change The FieldChangeDTO with key, optional path and the element as value
+     * @param request The HTTP request, whose body size is recorded as a metric
+     * @return ResponseEntity containing:
+     *         - 200 OK: If the element was appended
+     *         - 404 NOT_FOUND: If the key doesn't exist
+     *         - 409 CONFLICT: If the path doesn't lead to an array
+     *         - 400 BAD_REQUEST: If input validation fails
+     *         - 503 SERVICE_UNAVAILABLE: If the write-behind buffer stays full
+     *         - 500 INTERNAL_SERVER_ERROR: For unexpected errors
+     * 
+     * @example POST /api/append
+     *          Body: {"key":"chat:7","path":"messages","value":{"from":"ana","text":"hi"}}
+     *          Response: "Appended"
+     */
+    @PostMapping("/append")
+    public ResponseEntity<String> append(@RequestBody FieldChangeDTO change, HttpServletRequest request) {
+        log.info("API Request - Append to '{}' of key: '{}'", change.getPath(), change.getKey());
+        metrics.recordValueSize(request.getContentLengthLong());
+        
+        try {
+            // Validate input
+            if (change.getKey() == null || change.getKey().trim().isEmpty()) {
+                log.warn("Append request failed - empty key provided");
+                return new ResponseEntity<>("Key cannot be empty", HttpStatus.BAD_REQUEST);
+            }
+            
+            if (change.getValue() == null) {
+                log.warn("Append request failed - null value provided for key: '{}'", change.getKey());
+                return new ResponseEntity<>("Value cannot be null", HttpStatus.BAD_REQUEST);
+            }
+            
+            String result = service.append(change.getKey().trim(), ValueChange.parsePath(change.getPath()), change.getValue());
+            
+            // Check if the value was found
+            if (result == null) {
+                log.warn("Append request failed - Value not found for key: '{}'", change.getKey());
+                return new ResponseEntity<>(notfound, HttpStatus.NOT_FOUND);
+            }
+            
+            log.info("Append request successful - Appended to '{}' of key: '{}'", change.getPath(), change.getKey());
+            return new ResponseEntity<>(result, HttpStatus.OK);
+            
+        } catch (IllegalArgumentException e) {
+            log.warn("Append request failed - {} for key: '{}'", e.getMessage(), change.getKey());
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Append request failed - {} for key: '{}'", e.getMessage(), change.getKey());
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+        } catch (TransientDataAccessResourceException e) {
+            log.warn("Append request rejected - Write-behind buffer full for key: '{}'", change.getKey());
+            return new ResponseEntity<>("Too many pending updates, retry later", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (Exception e) {
+            log.error("Append request failed - Unexpected error for key '{}': {}", change.getKey(), e.getMessage(), e);
+            return new ResponseEntity<>("Internal server error", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Merge a JSON merge patch (RFC 7396) into a value, atomically.
+     * 
+     * Members of an object patch replace the members of the value with the
+     * same name, nested objects are merged recursively and null members are
+     * removed; everything else in the value is left untouched and is not
+     * transferred. A patch that is not an object replaces the whole value.
+     * Unlike RFC 7396, merging an object into a member that is not an object
+     * is a conflict instead of replacing the member.
+     * 
+     * @param key The key of the value to patch (must not be blank)
+     * @param patch The merge patch
+     * @param request The HTTP request, whose body size is recorded as a metric
+     * @return ResponseEntity containing:
+     *         - 200 OK: If the patch was merged
+     *         - 404 NOT_FOUND: If the key doesn't exist
+     *         - 409 CONFLICT: If an object is merged into a member that is not an object
+     *         - 400 BAD_REQUEST: If input validation fails
+     *         - 503 SERVICE_UNAVAILABLE: If the write-behind buffer stays full
+     *         - 500 INTERNAL_SERVER_ERROR: For unexpected errors
+     * 
+     * @example PATCH /api/patch?key=user:1 (Content-Type: application/merge-patch+json)
+     *          Body: {"settings":{"theme":"dark"},"nickname":null}
+     *          Response: "Patched"
+     */
+    @PatchMapping(value = "/patch", consumes = { "application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE })
+    public ResponseEntity<String> patch(@RequestParam("key") @NotBlank String key,
+            @RequestBody(required = false) Object patch, HttpServletRequest request) {
+        log.info("API Request - Patch value for key: '{}'", key);
+        metrics.recordValueSize(request.getContentLengthLong());
+        
+        try {
+            // Validate input
+            if (key.trim().isEmpty()) {
+                log.warn("Patch request failed - empty key provided");
+                return new ResponseEntity<>("Key cannot be empty", HttpStatus.BAD_REQUEST);
+            }
+            
+            if (patch == null) {
+                log.warn("Patch request failed - null patch provided for key: '{}'", key);
+                return new ResponseEntity<>("Patch cannot be null", HttpStatus.BAD_REQUEST);
+            }
+            
+            String result = service.patch(key.trim(), patch);
+            
+            // Check if the value was found
+            if (result == null) {
+                log.warn("Patch request failed - Value not found for key: '{}'", key);
+                return new ResponseEntity<>(notfound, HttpStatus.NOT_FOUND);
+            }
+            
+            log.info("Patch request successful - Patched value for key: '{}'", key);
+            return new ResponseEntity<>(result, HttpStatus.OK);
+            
+        } catch (IllegalArgumentException e) {
+            log.warn("Patch request failed - {} for key: '{}'", e.getMessage(), key);
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Patch request failed - {} for key: '{}'", e.getMessage(), key);
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+        } catch (TransientDataAccessResourceException e) {
+            log.warn("Patch request rejected - Write-behind buffer full for key: '{}'", key);
+            return new ResponseEntity<>("Too many pending updates, retry later", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (Exception e) {
+            log.error("Patch request failed - Unexpected error for key '{}': {}", key, e.getMessage(), e);
+            return new ResponseEntity<>("Internal server error", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     /**
      * Delete a specific key-value pair from the database.
      * 
@@ -386,15 +1244,15 @@ public class ValueController {
                 return new ResponseEntity<>("Key cannot be empty", HttpStatus.BAD_REQUEST);
             }
             
-            // Check if the value exists
-            Object existingValue = service.get(key.trim());
-            if (existingValue.toString().equals(notfound)) {
+            // Delete the value
+            String result = service.delete(key.trim());
+            
+            // Check if the value was found
+            if (result == null) {
                 log.warn("Delete request failed - Value not found for key: '{}'", key);
                 return new ResponseEntity<>(notfound, HttpStatus.NOT_FOUND);
             }
             
-            // Delete the value
-            String result = service.delete(key.trim());
             log.info("Delete request successful - Deleted value for key: '{}'", key);
             return new ResponseEntity<>(result, HttpStatus.OK);
             
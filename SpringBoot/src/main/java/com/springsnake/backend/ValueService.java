@@ -1,16 +1,46 @@
 package com.springsnake.backend;
 
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.domain.Range.Bound;
 import org.springframework.stereotype.Service;
 
+import com.springsnake.backend.storage.FieldProjection;
+import com.springsnake.backend.storage.StorageEngine;
+import com.springsnake.backend.storage.ValueChange;
+import com.springsnake.backend.utils.ChangeFeed;
+import com.springsnake.backend.utils.KeyFilter;
+import com.springsnake.backend.utils.MultiGetDTO;
+import com.springsnake.backend.utils.PutAllResultDTO;
+import com.springsnake.backend.utils.SnapshotImportDTO;
+import com.springsnake.backend.utils.SpringSnakeProperties;
+import com.springsnake.backend.utils.ValueBulkWriter;
+import com.springsnake.backend.utils.ValueCache;
 import com.springsnake.backend.utils.ValueDAO;
 import com.springsnake.backend.utils.ValueDTO;
-import com.springsnake.backend.utils.ValueRepository;
+import com.springsnake.backend.utils.ValuePageDTO;
+import com.springsnake.backend.utils.ValueSnapshot;
+import com.springsnake.backend.utils.WriteBehindBuffer;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
 
 /**
@@ -21,8 +51,22 @@ import lombok.AllArgsConstructor;
  * ValueController and the data access layer, providing methods for all CRUD 
  * operations with proper error handling and data transformation.
  * 
- * The service utilizes ValueDAO for batch operations and direct repository
- * access for individual operations, ensuring optimal performance and consistency.
+ * The service utilizes ValueDAO for full reads, ValueBulkWriter for batch inserts
+ * and the active StorageEngine for individual operations, ensuring optimal
+ * performance and consistency. It doesn't depend on a specific database: the
+ * engine (MongoDB or in-memory) is selected by Spring profile.
+ * Single key reads are served through ValueCache, which every write invalidates
+ * and which lets concurrent misses of the same key share one fetch.
+ * Updates can optionally be buffered and flushed in batches by WriteBehindBuffer,
+ * or made conditional on the version of the stored value. Increments, appends
+ * and merge patches change part of a value in place, as one atomic operation.
+ * Writes may give a TTL in seconds, which is stored as an expiry date; expired
+ * values are treated as absent by every engine.
+ * Every successful write is published to ChangeFeed, which pushes it to the
+ * subscribers of /api/feed.
+ * Reads, updates and deletes of keys that KeyFilter knows not to exist are
+ * answered without asking the storage engine.
+ * Every public method is timed as springsnake.service, tagged by method name.
  * 
  * @author M04ph3u2
  * @version 2.0
@@ -30,13 +74,49 @@ import lombok.AllArgsConstructor;
  */
 @AllArgsConstructor
 @Service
+@Timed(value = "springsnake.service", description = "Time spent in ValueService methods", histogram = true)
 public class ValueService {
 
     /**
-     * Repository interface for direct database operations on values
+     * Storage engine for all database operations on values
      */
     @Autowired
-    private final ValueRepository valueRepo;
+    private final StorageEngine engine;
+
+    /**
+     * In-process cache for single key reads
+     */
+    private final ValueCache cache;
+
+    /**
+     * Chunked, parallel inserter used for batch writes
+     */
+    private final ValueBulkWriter bulkWriter;
+
+    /**
+     * Buffer for asynchronous, coalesced updates (if enabled)
+     */
+    private final WriteBehindBuffer writeBehind;
+
+    /**
+     * Application configuration (cache, streaming and batch settings)
+     */
+    private final SpringSnakeProperties properties;
+
+    /**
+     * Broadcaster of the change events of successful writes
+     */
+    private final ChangeFeed feed;
+
+    /**
+     * Writer and loader of compressed snapshots
+     */
+    private final ValueSnapshot snapshot;
+
+    /**
+     * Bloom filter of the existing keys, which every insert must update
+     */
+    private final KeyFilter keyFilter;
 
     /**
      * Retrieve a value by its key (value content only).
@@ -48,8 +128,8 @@ public class ValueService {
      * @return The value associated with the key, or error message if not found
      */
     public Object get(String key) {
-        // Retrieve the value from the repository
-        values value = valueRepo.findByKey(key);
+        // Retrieve the value through the cache
+        ValueDTO value = getFull(key);
         // Check if the value is not found
         if (value == null) {
             return "The value has not been found";
@@ -63,21 +143,141 @@ public class ValueService {
      * Retrieve complete value object by key including metadata.
      * 
      * This method returns the full ValueDTO object containing the key, value,
-     * and timestamp information. Use get() for value content only.
+     * timestamp and version information. Use get() for value content only.
      * 
      * @param key The key to search for in the database
      * @return ValueDTO object with complete data, or null if not found
      */
     public ValueDTO getFull(String key) {
-        // Retrieve the value from the repository
-        values value = valueRepo.findByKey(key);
+        // Skip every lookup for a key that certainly doesn't exist
+        if (!keyFilter.mightContain(key)) {
+            return null;
+        }
+        // Prefer an update that hasn't been flushed yet
+        values pending = writeBehind.pending(key);
+        if (pending != null) {
+            if (pending.isExpiredAt(Instant.now())) {
+                return null;
+            }
+            // The version of a buffered update is only known once it is written
+            ValueDTO value = ValueDTO.of(pending);
+            value.setVersion(null);
+            return value;
+        }
+        // Retrieve the value through the cache, falling back to the storage engine
+        ValueDTO value = cache.get(key, this::load);
+        if (value == null) {
+            keyFilter.falsePositive();
+        }
+        return value;
+    }
+
+    /**
+     * Retrieve selected parts of a value by key including metadata.
+     * 
+     * A value that is cached or waiting in the write-behind buffer is complete
+     * in memory and projected here. Otherwise only the selected parts are read
+     * from the storage engine; they are not cached, because the cache holds
+     * whole values.
+     * 
+     * @param key The key to search for in the database
+     * @param projection The parts of the value to return, or null for the whole value
+     * @return ValueDTO object with the projected value, or null if not found
+     */
+    public ValueDTO getFull(String key, FieldProjection projection) {
+        if (projection == null) {
+            return getFull(key);
+        }
+        if (!keyFilter.mightContain(key)) {
+            return null;
+        }
+        if (writeBehind.pending(key) != null) {
+            ValueDTO pending = getFull(key);
+            return pending == null ? null : project(pending, projection);
+        }
+        ValueDTO cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return project(cached, projection);
+        }
+        values value = engine.findByKey(key, projection);
+        if (value == null) {
+            keyFilter.falsePositive();
+            return null;
+        }
+        return ValueDTO.of(value);
+    }
+
+    /**
+     * Copy a ValueDTO with only the projected parts of its value.
+     * 
+     * @param value The ValueDTO holding the whole value
+     * @param projection The parts of the value to keep
+     * @return A new ValueDTO with the same metadata
+     */
+    private static ValueDTO project(ValueDTO value, FieldProjection projection) {
+        return new ValueDTO(value.getKey(), projection.applyTo(value.getValue()), value.getLastchange(),
+                value.getTtl(), value.getExpiresAt(), value.getVersion());
+    }
+
+    /**
+     * Load a value directly from the storage engine, bypassing the cache.
+     * 
+     * @param key The key to search for in the database
+     * @return ValueDTO object with complete data, or null if not found
+     */
+    private ValueDTO load(String key) {
+        // Retrieve the value from the storage engine
+        values value = engine.findByKey(key);
         // Check if the value is not found
         if (value == null) {
             return null;
         } else {
             // Return the value
-            return new ValueDTO(value.getKey(), value.getValue(), value.getLastchange());
+            return ValueDTO.of(value);
+        }
+    }
+
+    /**
+     * Retrieve the values of several keys at once.
+     * 
+     * Cached keys are answered from ValueCache; all others are read together
+     * with one $in query per chunk of keys, fetching only the key, value and
+     * lastchange fields, and are then cached like single reads.
+     * 
+     * @param keys The keys to look up (duplicates are ignored)
+     * @return MultiGetDTO with the found values and the missing keys
+     */
+    public MultiGetDTO getMany(List<String> keys) {
+        Set<String> unique = new LinkedHashSet<>(keys);
+        // Retrieve the values through the cache, falling back to the storage engine
+        Map<String, ValueDTO> found = cache.getAll(unique, this::loadMany);
+        Map<String, Object> result = new LinkedHashMap<>();
+        found.forEach((key, value) -> {
+            // Prefer an update that hasn't been flushed yet
+            values pending = writeBehind.pending(key);
+            result.put(key, pending != null ? pending.getValue() : value.getValue());
+        });
+        List<String> missing = unique.stream().filter(key -> !found.containsKey(key)).toList();
+        return new MultiGetDTO(result, missing);
+    }
+
+    /**
+     * Load several values directly from the storage engine, bypassing the cache.
+     * 
+     * @param keys The keys to search for in the database
+     * @return Map of the keys that exist to their ValueDTO
+     */
+    private Map<String, ValueDTO> loadMany(Set<String> keys) {
+        List<String> pending = new ArrayList<>(keys);
+        int chunkSize = properties.getBulk().getChunkSize();
+        Map<String, ValueDTO> found = new HashMap<>();
+        for (int from = 0; from < pending.size(); from += chunkSize) {
+            List<String> chunk = pending.subList(from, Math.min(from + chunkSize, pending.size()));
+            for (values value : engine.findAllByKey(chunk).values()) {
+                found.put(value.getKey(), ValueDTO.of(value));
+            }
         }
+        return found;
     }
 
     /**
@@ -90,26 +290,164 @@ public class ValueService {
      */
     public List<ValueDTO> getAll() {
         // Create a ValueDAO to handle data operations
-        ValueDAO multivalues = new ValueDAO(valueRepo);
-        // Retrieve all values from the repository
+        ValueDAO multivalues = new ValueDAO(engine);
+        // Retrieve all values from the storage engine
         multivalues.pull();
         // Return all values
         return multivalues.getAll();
     }
 
+    /**
+     * Stream all key-value pairs from the database over a cursor.
+     * 
+     * Unlike getAll(), this method never holds the whole collection in memory:
+     * documents are fetched in batches of the configured stream batch size and
+     * mapped to ValueDTO objects one at a time as the caller consumes them.
+     * The returned stream may hold an open database cursor and must be closed,
+     * preferably with try-with-resources.
+     * 
+     * @return Lazily evaluated stream of ValueDTO objects for all stored values
+     */
+    public Stream<ValueDTO> streamAll() {
+        return engine.streamAll(properties.getStream().getBatchSize())
+                .map(ValueDTO::of);
+    }
+
+    /**
+     * Stream the key-value pairs changed at or after a point in time.
+     * 
+     * Values are ordered by change time (then key), so a replica can resume
+     * from the lastchange of the last value it received. The bound is
+     * inclusive: values changed exactly at that time are sent again, and
+     * nothing written in the same millisecond is skipped. Deleted keys are not
+     * reported. With MongoDB the stream is a range scan on the lastchange
+     * index over a cursor; like streamAll() it must be closed by the caller.
+     * 
+     * @param since The earliest change time to include
+     * @return Lazily evaluated stream of ValueDTO objects in change order
+     */
+    public Stream<ValueDTO> streamChangedSince(Instant since) {
+        return engine.streamChangedSince(since, properties.getStream().getBatchSize()).map(ValueDTO::of);
+    }
+
+    /**
+     * Retrieve one page of key-value pairs in ascending key order.
+     * 
+     * This method implements keyset pagination: the page starts right after the
+     * key encoded in the cursor and is read with a range scan on the key index,
+     * so deep pages cost the same as the first one. An optional prefix narrows
+     * the listing to keys starting with it, expressed as a key range as well.
+     * 
+     * @param after Opaque cursor returned with the previous page, or null for the first page
+     * @param prefix Key prefix to filter on, or null to list all keys
+     * @param limit The maximum number of values on the page
+     * @return ValuePageDTO with the values and the cursor of the next page (null on the last page)
+     * @throws IllegalArgumentException If the cursor is malformed
+     */
+    public ValuePageDTO list(String after, String prefix, int limit) {
+        String lastKey = after == null ? null : decodeCursor(after);
+        // Fetch one extra value to know whether another page follows
+        List<values> found = engine.scan(keyRange(lastKey, prefix), limit + 1);
+        List<ValueDTO> page = found.stream()
+                .limit(limit)
+                .map(ValueDTO::of)
+                .toList();
+        String next = found.size() > limit ? encodeCursor(page.get(page.size() - 1).getKey()) : null;
+        return new ValuePageDTO(page, next);
+    }
+
+    /**
+     * Build the key range that follows a given key and matches a prefix.
+     * 
+     * @param lastKey The last key already returned, or null to start at the beginning
+     * @param prefix The required key prefix, or null for none
+     * @return The key range to scan
+     */
+    private static Range<String> keyRange(String lastKey, String prefix) {
+        Bound<String> lower = Bound.inclusive("");
+        if (prefix != null && !prefix.isEmpty()) {
+            lower = Bound.inclusive(prefix);
+        }
+        if (lastKey != null && (prefix == null || lastKey.compareTo(prefix) >= 0)) {
+            lower = Bound.exclusive(lastKey);
+        }
+        Bound<String> upper = Bound.unbounded();
+        String end = prefix == null ? null : prefixEnd(prefix);
+        if (end != null) {
+            upper = Bound.exclusive(end);
+        }
+        return Range.of(lower, upper);
+    }
+
+    /**
+     * Compute the smallest string greater than every string starting with a prefix.
+     * 
+     * @param prefix The key prefix
+     * @return The exclusive upper bound for the prefix, or null if there is none
+     */
+    private static String prefixEnd(String prefix) {
+        int[] codePoints = prefix.codePoints().toArray();
+        for (int i = codePoints.length - 1; i >= 0; i--) {
+            if (codePoints[i] < Character.MAX_CODE_POINT) {
+                codePoints[i]++;
+                return new String(codePoints, 0, i + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Encode a key as an opaque, URL-safe pagination cursor.
+     * 
+     * @param key The last key of a page
+     * @return The cursor for the following page
+     */
+    private static String encodeCursor(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a pagination cursor back into the key it was created from.
+     * 
+     * @param cursor The cursor received from the client
+     * @return The last key of the previous page
+     * @throws IllegalArgumentException If the cursor is not valid Base64
+     */
+    private static String decodeCursor(String cursor) {
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+
     /**
      * Save a new key-value pair to the database.
      * 
      * This method creates a new entry in the database with the provided key and value.
-     * The system automatically generates a timestamp for the entry.
+     * The system automatically generates a timestamp for the entry. The insert is a
+     * single atomic operation of the storage engine: an existing key is detected by
+     * the insert itself (the unique key index with MongoDB) rather than by a prior read.
+     * A key whose value has expired counts as free.
      * 
      * @param key The unique key for the value
      * @param value The value to be stored (can be any object type)
+     * @param ttl Time to live in seconds, or null if the value never expires
      * @return Success message confirming the save operation
+     * @throws DuplicateKeyException If a value with the same key already exists
      */
-    public String put(String key, Object value) {
-        // Insert the value into the repository
-        valueRepo.insert(new values(key, value));
+    public String put(String key, Object value, Long ttl) {
+        try {
+            // Insert the value into the storage engine
+            values entity = new values(key, value);
+            entity.setExpiresAt(ttl == null ? null : Instant.now().plusSeconds(ttl));
+            if (!engine.insert(entity)) {
+                // The key exists, so the filter must know it even if another instance created it
+                keyFilter.add(key);
+                throw new DuplicateKeyException("A value with key '" + key + "' exists already");
+            }
+            keyFilter.add(key);
+            feed.written("put", key, entity.getVersion(), entity.getLastchange());
+        } finally {
+            // Drop a cached "not found" result for this key
+            cache.invalidate(key);
+        }
         // Return a success message
         return "Saved";
     }
@@ -117,62 +455,274 @@ public class ValueService {
     /**
      * Save multiple key-value pairs in a batch operation.
      * 
-     * This method clears the existing database and saves all provided values
-     * in a single transaction. It's designed for bulk operations where
-     * complete data replacement is needed.
+     * This method inserts all provided values whose keys don't exist yet and
+     * reports the others as conflicted instead of rejecting the whole batch.
+     * The work is done by ValueBulkWriter in chunks; with MongoDB each chunk
+     * costs one $in existence lookup and one unordered bulk insert.
      * 
      * @param inputValues List of ValueDTO objects to be saved
-     * @return Success message confirming the batch save operation
+     * @return PutAllResultDTO listing the created and the conflicted keys
      */
-    public String putAll(List<ValueDTO> inputValues) {
-        // Create a ValueDAO to handle data operations
-        ValueDAO multivalues = new ValueDAO(valueRepo);
-        // Clear existing values
-        multivalues.clear();
-        // Save all input values
-        multivalues.saveAll(inputValues);
-        // Close the ValueDAO (save changes to the repository)
-        multivalues.close();
-        // Return a success message
-        return "All values have been saved";
+    public PutAllResultDTO putAll(List<ValueDTO> inputValues) {
+        try {
+            // Insert all values in chunks
+            PutAllResultDTO result = bulkWriter.insertAll(inputValues);
+            for (String key : result.getCreated()) {
+                keyFilter.add(key);
+                feed.written("put", key, null, null);
+            }
+            return result;
+        } finally {
+            // Drop cached entries of the batch keys
+            cache.invalidateAll(inputValues.stream().map(ValueDTO::getKey).toList());
+        }
     }
 
     /**
      * Update an existing key-value pair in the database.
      * 
      * This method modifies the value of an existing key and updates the
-     * lastchange timestamp to the current time. The key must exist in
-     * the database for the operation to succeed.
+     * lastchange timestamp to the current time in one atomic update. Whether
+     * the key exists is taken from the matched count of that update.
+     * 
+     * In write-behind mode the existence check is a (usually cached) read, and
+     * the update is acknowledged once it is in the WriteBehindBuffer; it reaches
+     * the storage engine with the next flush.
      * 
      * @param key The key of the value to update
      * @param value The new value to be stored
-     * @return Success message confirming the update operation
-     */
-    public String update(String key, Object value) {
-        // Retrieve and update the value from the repository
-        values item = valueRepo.findByKey(key);
-        item.setValue(value);
-        // Update the last change of the value
-        DateTimeFormatter formatter = DateTimeFormatter.ISO_ZONED_DATE_TIME;
-        item.setLastchange(ZonedDateTime.now().format(formatter));
-        // Save the value to the repository
-        valueRepo.save(item);
+     * @param ttl New time to live in seconds, or null to keep the current expiry
+     * @return Success message confirming the update operation, or null if the key doesn't exist
+     * @throws org.springframework.dao.TransientDataAccessResourceException If the write-behind buffer stays full
+     */
+    public String update(String key, Object value, Long ttl) {
+        if (!keyFilter.mightContain(key)) {
+            return null;
+        }
+        Instant lastchange = values.now();
+        Instant expiresAt = ttl == null ? null : Instant.now().plusSeconds(ttl);
+        if (writeBehind.isEnabled()) {
+            // Check that the key exists, then buffer the update
+            ValueDTO current = getFull(key);
+            if (current == null) {
+                return null;
+            }
+            values updated = new values(key, value);
+            updated.setLastchange(lastchange);
+            updated.setExpiresAt(expiresAt != null ? expiresAt : current.getExpiresAt());
+            writeBehind.offer(updated);
+            cache.invalidate(key);
+            feed.written("update", key, null, lastchange);
+            return "Updated";
+        }
+        // Update the value and its last change in the storage engine
+        boolean matched = engine.update(key, value, lastchange, expiresAt);
+        // Drop the stale cached value
+        cache.invalidate(key);
+        // Check if the value was found
+        if (!matched) {
+            keyFilter.falsePositive();
+            return null;
+        }
+        feed.written("update", key, null, lastchange);
         // Return a success message
         return "Updated";
     }
 
+    /**
+     * Update an existing key-value pair only if it still has a given version.
+     * 
+     * This is the optimistic alternative to a read-modify-write cycle: the
+     * caller passes the version it has read, and the storage engine compares
+     * it and writes the new value in one atomic operation. The update never
+     * goes through the write-behind buffer. If the key has a buffered update,
+     * the caller cannot have read the current version, so the update fails.
+     * 
+     * @param key The key of the value to update
+     * @param expectedVersion The version the stored value must have
+     * @param value The new value to be stored
+     * @param ttl New time to live in seconds, or null to keep the current expiry
+     * @return The new version of the value, or null if the key doesn't exist
+     * @throws OptimisticLockingFailureException If the value has another version
+     */
+    public Long updateIfVersion(String key, long expectedVersion, Object value, Long ttl) {
+        if (!keyFilter.mightContain(key)) {
+            return null;
+        }
+        if (writeBehind.pending(key) != null) {
+            throw new OptimisticLockingFailureException("The value of key '" + key + "' has a pending update");
+        }
+        Instant expiresAt = ttl == null ? null : Instant.now().plusSeconds(ttl);
+        // Compare the version and update the value in the storage engine
+        Instant lastchange = values.now();
+        Long version = engine.updateIfVersion(key, expectedVersion, value, lastchange, expiresAt);
+        // Drop the stale cached value
+        cache.invalidate(key);
+        if (version == null && engine.findByKey(key) != null) {
+            throw new OptimisticLockingFailureException("The value of key '" + key + "' has changed");
+        }
+        if (version != null) {
+            feed.written("update", key, version, lastchange);
+        }
+        return version;
+    }
+
+    /**
+     * Add a number to a number inside a stored value.
+     * 
+     * The addition happens in the storage engine ($inc with MongoDB), so
+     * concurrent increments are never lost and the value is not transferred.
+     * A missing number is created with the delta as its value.
+     * 
+     * @param key The key of the value
+     * @param path The member names leading to the number, empty for the value itself
+     * @param delta The number to add
+     * @return The new number, or null if the key doesn't exist
+     * @throws DataIntegrityViolationException If the path doesn't lead to a number
+     */
+    public Number increment(String key, List<String> path, Number delta) {
+        values changed = applyChange(key, ValueChange.increment(path, delta));
+        return changed == null ? null : (Number) ValueChange.valueAt(changed.getValue(), path);
+    }
+
+    /**
+     * Append an element to an array inside a stored value.
+     * 
+     * The element is pushed in the storage engine ($push with MongoDB), so
+     * the array is not transferred. A missing array is created.
+     * 
+     * @param key The key of the value
+     * @param path The member names leading to the array, empty for the value itself
+     * @param element The element to append
+     * @return Success message confirming the append, or null if the key doesn't exist
+     * @throws DataIntegrityViolationException If the path doesn't lead to an array
+     */
+    public String append(String key, List<String> path, Object element) {
+        return applyChange(key, ValueChange.append(path, element)) == null ? null : "Appended";
+    }
+
+    /**
+     * Merge a JSON merge patch (RFC 7396) into a stored value.
+     * 
+     * An object patch is translated into $set and $unset operations on the
+     * members it names, so only those members are transferred. Any other patch
+     * replaces the whole value, like an update that keeps the expiry.
+     * 
+     * @param key The key of the value
+     * @param patch The merge patch
+     * @return Success message confirming the patch, or null if the key doesn't exist
+     * @throws DataIntegrityViolationException If an object member is merged into a non-object
+     * @throws IllegalArgumentException If a member name cannot be stored
+     */
+    public String patch(String key, Object patch) {
+        if (!(patch instanceof Map<?, ?> members)) {
+            return update(key, patch, null) == null ? null : "Patched";
+        }
+        return applyChange(key, ValueChange.mergePatch(members)) == null ? null : "Patched";
+    }
+
+    /**
+     * Apply a partial change to a value, wherever its latest state is.
+     * 
+     * In write-behind mode a key may have an update that is not written yet;
+     * the change is then applied to that update in the buffer, because the
+     * flush would overwrite a change made in the storage engine.
+     * 
+     * @param key The key of the value
+     * @param change The change to apply
+     * @return The changed values entity, or null if the key doesn't exist
+     */
+    private values applyChange(String key, ValueChange change) {
+        Instant lastchange = values.now();
+        try {
+            values changed = writeBehind.applyIfPending(key, pending -> {
+                values updated = new values(key, change.applyTo(pending.getValue()));
+                updated.setLastchange(lastchange);
+                updated.setExpiresAt(pending.getExpiresAt());
+                return updated;
+            });
+            if (changed == null) {
+                changed = engine.applyChange(key, change, lastchange);
+                if (changed != null) {
+                    feed.written("update", key, changed.getVersion(), lastchange);
+                }
+            } else {
+                // The version of a buffered update is only known once it is written
+                feed.written("update", key, null, lastchange);
+            }
+            return changed;
+        } finally {
+            // Drop the stale cached value
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Write a compressed snapshot of all stored values.
+     * 
+     * The values are read over a cursor like streamAll(), so the snapshot can
+     * be written directly to the response. Updates still waiting in the
+     * write-behind buffer are not included.
+     * 
+     * @param out The stream receiving the snapshot
+     * @return The number of values written
+     * @throws IOException If the snapshot cannot be written
+     */
+    public long exportSnapshot(OutputStream out) throws IOException {
+        try (Stream<values> values = engine.streamAll(properties.getStream().getBatchSize())) {
+            return snapshot.export(values, out);
+        }
+    }
+
+    /**
+     * Load a snapshot, inserting every key that doesn't exist yet.
+     * 
+     * Keys are inserted in parallel bulk inserts without going through the
+     * cache or the change feed one by one: the whole cache is invalidated
+     * afterwards, and feed subscribers get one "reset" event.
+     * 
+     * @param in The snapshot, as written by exportSnapshot()
+     * @param offset The number of leading records to skip
+     * @return SnapshotImportDTO with the counts and the offset to resume from
+     * @throws IllegalArgumentException If the stream is not a valid snapshot
+     * @throws IOException If the stream cannot be read
+     */
+    public SnapshotImportDTO importSnapshot(InputStream in, long offset) throws IOException {
+        try {
+            return snapshot.load(in, offset);
+        } finally {
+            // Drop cached "not found" results of the imported keys
+            cache.invalidateAll();
+            feed.written("reset", null, null, values.now());
+        }
+    }
+
     /**
      * Delete a specific key-value pair from the database.
      * 
-     * This method removes the entry with the specified key from the database.
-     * The key must exist for the operation to complete successfully.
+     * This method removes the entry with the specified key from the database
+     * in a single operation. Whether the key existed is taken from the
+     * deleted count of that operation.
      * 
      * @param key The key of the value to be deleted
-     * @return Success message confirming the deletion
+     * @return Success message confirming the deletion, or null if the key doesn't exist
      */
     public String delete(String key) {
-        // Delete the value from the repository
-        valueRepo.delete(valueRepo.findByKey(key));
+        if (!keyFilter.mightContain(key)) {
+            return null;
+        }
+        // Drop a buffered update so it can't outlive the delete
+        writeBehind.discard(key);
+        // Delete the value from the storage engine
+        boolean deleted = engine.delete(key);
+        // Drop the stale cached value
+        cache.invalidate(key);
+        // Check if the value was found
+        if (!deleted) {
+            keyFilter.falsePositive();
+            return null;
+        }
+        feed.written("delete", key, null, values.now());
         // Return a success message
         return "Deleted";
     }
@@ -186,7 +736,12 @@ public class ValueService {
      * @return Success message confirming the bulk deletion
      */
     public String deleteAll() {
-        valueRepo.deleteAll();
+        writeBehind.discardAll();
+        engine.deleteAll();
+        cache.invalidateAll();
+        // Start over with an empty filter instead of keeping every deleted key
+        keyFilter.requestRebuild();
+        feed.written("clear", null, null, values.now());
         return "All values have been deleted";
     }
 }
\ No newline at end of file
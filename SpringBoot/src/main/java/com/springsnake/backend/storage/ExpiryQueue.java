@@ -0,0 +1,80 @@
+package com.springsnake.backend.storage;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+
+/**
+ * Expiry dates of the values held by an embedded storage engine
+ *
+ * Engines that keep their data in process (in-memory and log-structured) use
+ * this queue to remove expired values without scanning all keys: every write
+ * with an expiry date schedules its key, and the sweeper only visits the keys
+ * that are due, in expiry order.
+ *
+ * Entries are never removed when a key is overwritten or deleted. A stale
+ * entry simply reaches the front of the queue later and the engine finds that
+ * the key is no longer expired, so callers must re-check the key on expiry.
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+final class ExpiryQueue {
+
+    /**
+     * One scheduled expiry
+     *
+     * @param at The expiry date
+     * @param key The key that expires
+     */
+    private record Expiration(Instant at, String key) {
+    }
+
+    /**
+     * Scheduled expiries, earliest first
+     */
+    private final ConcurrentSkipListSet<Expiration> queue = new ConcurrentSkipListSet<>(
+            Comparator.comparing(Expiration::at).thenComparing(Expiration::key));
+
+    /**
+     * Schedule the expiry of a key.
+     *
+     * @param key The key that expires
+     * @param at The expiry date, or null if the key doesn't expire
+     */
+    void schedule(String key, Instant at) {
+        if (at != null) {
+            queue.add(new Expiration(at, key));
+        }
+    }
+
+    /**
+     * Hand every key that is due to the engine, earliest first.
+     *
+     * @param now The current time
+     * @param expire Callback removing a key if it is still expired, returning whether it did
+     * @return The number of keys that were removed
+     */
+    int expireDue(Instant now, Predicate<String> expire) {
+        int expired = 0;
+        for (Expiration next : queue) {
+            if (next.at().isAfter(now)) {
+                break;
+            }
+            queue.remove(next);
+            if (expire.test(next.key())) {
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Drop every scheduled expiry.
+     */
+    void clear() {
+        queue.clear();
+    }
+}
@@ -0,0 +1,186 @@
+package com.springsnake.backend.storage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.springsnake.backend.values;
+
+/**
+ * Selection of the parts of a stored value that a reader needs
+ *
+ * A projection is a set of paths inside the value, each a sequence of object
+ * member names as in ValueChange. Reading through a projection returns an
+ * object that keeps the nesting of the value but contains only the selected
+ * members, e.g. {"stats":{"views":3}} for the path "stats.views". Members that
+ * don't exist are left out, so the result of a projection is always an object.
+ *
+ * MongoStorageEngine pushes the paths down as a field projection, so only the
+ * selected subtrees are read and transferred. Engines that keep values in
+ * process use applyTo(), which follows the same rules as MongoDB: a path that
+ * runs into an array is applied to each object element of the array, and
+ * elements that are not objects are left out.
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+public final class FieldProjection {
+
+    /**
+     * Largest number of paths accepted in one projection
+     */
+    public static final int MAX_PATHS = 100;
+
+    /**
+     * The selected paths, none of which is a prefix of another
+     */
+    private final List<List<String>> paths;
+
+    private FieldProjection(List<List<String>> paths) {
+        this.paths = List.copyOf(paths);
+    }
+
+    /**
+     * Parse a comma-separated list of dot-separated paths such as "name,stats.views".
+     *
+     * A path below another selected path is redundant and dropped, because
+     * MongoDB rejects projections in which one path contains another.
+     *
+     * @param fields The paths, or null or blank for the whole value
+     * @return The projection, or null if the whole value is selected
+     * @throws IllegalArgumentException If a path is invalid or there are more than MAX_PATHS
+     */
+    public static FieldProjection parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        String[] names = fields.split(",", -1);
+        if (names.length > MAX_PATHS) {
+            throw new IllegalArgumentException("At most " + MAX_PATHS + " fields can be selected");
+        }
+        List<List<String>> paths = new ArrayList<>();
+        for (String name : names) {
+            List<String> path = ValueChange.parsePath(name.trim());
+            if (path.isEmpty()) {
+                throw new IllegalArgumentException("Field paths cannot be empty");
+            }
+            // Keep the shorter of two overlapping paths
+            if (paths.stream().anyMatch(selected -> startsWith(path, selected))) {
+                continue;
+            }
+            paths.removeIf(selected -> startsWith(selected, path));
+            paths.add(path);
+        }
+        return new FieldProjection(paths);
+    }
+
+    /**
+     * Check whether a path lies at or below another one.
+     *
+     * @param path The path to check
+     * @param prefix The possible ancestor
+     * @return true if prefix is a prefix of path
+     */
+    private static boolean startsWith(List<String> path, List<String> prefix) {
+        return path.size() >= prefix.size() && path.subList(0, prefix.size()).equals(prefix);
+    }
+
+    /**
+     * The selected paths.
+     *
+     * @return The paths, none of which is a prefix of another
+     */
+    public List<List<String>> paths() {
+        return paths;
+    }
+
+    /**
+     * Copy a values entity with only the projected parts of its value.
+     *
+     * @param value The values entity holding the whole value
+     * @return A new values entity with the same key, dates and version
+     */
+    public values project(values value) {
+        values projected = new values(value.getKey(), applyTo(value.getValue()));
+        projected.setLastchange(value.getLastchange());
+        projected.setExpiresAt(value.getExpiresAt());
+        projected.setVersion(value.getVersion());
+        return projected;
+    }
+
+    /**
+     * Select the projected parts of a value without modifying it.
+     *
+     * @param value The whole value
+     * @return A new object holding only the selected members
+     */
+    public Object applyTo(Object value) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (List<String> path : paths) {
+            select(value, path, 0, result);
+        }
+        return result;
+    }
+
+    /**
+     * Copy the member at a path from a node of the value into the result.
+     *
+     * @param node The node at the given depth of the path
+     * @param path The selected path
+     * @param depth The number of path members leading to the node
+     * @param result The object collecting the selected members of the node
+     */
+    @SuppressWarnings("unchecked")
+    private static void select(Object node, List<String> path, int depth, Map<String, Object> result) {
+        if (!(node instanceof Map<?, ?> map) || !map.containsKey(path.get(depth))) {
+            return;
+        }
+        String name = path.get(depth);
+        Object child = map.get(name);
+        if (depth == path.size() - 1) {
+            result.put(name, child);
+        } else if (child instanceof Map) {
+            Object nested = result.computeIfAbsent(name, k -> new LinkedHashMap<String, Object>());
+            select(child, path, depth + 1, (Map<String, Object>) nested);
+        } else if (child instanceof List<?> elements) {
+            result.put(name, selectEach(elements, path, depth + 1, (List<Object>) result.get(name)));
+        }
+    }
+
+    /**
+     * Apply the rest of a path to every object element of an array.
+     *
+     * @param elements The array of the value
+     * @param path The selected path
+     * @param depth The number of path members leading to the elements
+     * @param selected The elements selected by earlier paths, or null
+     * @return The selected elements, in array order
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Object> selectEach(List<?> elements, List<String> path, int depth, List<Object> selected) {
+        List<Object> result = selected != null ? selected : new ArrayList<>();
+        int index = 0;
+        for (Object element : elements) {
+            if (element instanceof Map) {
+                // The n-th object element of the array is the n-th element of the result
+                if (index == result.size()) {
+                    result.add(new LinkedHashMap<String, Object>());
+                }
+                select(element, path, depth, (Map<String, Object>) result.get(index++));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Translate the paths into MongoDB field names of the stored document.
+     *
+     * @param field The document field holding the value, e.g. "value"
+     * @return The field names to include, e.g. "value.stats.views"
+     */
+    public List<String> fieldsOf(String field) {
+        return paths.stream().map(path -> field + "." + String.join(".", path)).toList();
+    }
+}
@@ -0,0 +1,358 @@
+package com.springsnake.backend.storage;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Range;
+import org.springframework.data.domain.Range.Bound;
+import org.springframework.stereotype.Component;
+
+import com.springsnake.backend.values;
+import com.springsnake.backend.utils.SpringSnakeProperties;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * In-memory implementation of the storage engine SPI
+ *
+ * This engine keeps all values in a ConcurrentHashMap and is selected with the
+ * "memory" Spring profile. Nothing is persisted, which makes it suitable for
+ * ephemeral caches and for fast test and benchmark runs without a database.
+ *
+ * Reads are lock-free. Writes take one lock out of a fixed set of stripes,
+ * chosen by the hash of the key, so that check-then-act operations such as
+ * insert and update are atomic per key while writers of unrelated keys rarely
+ * contend. A sorted key set kept next to the map serves ordered range scans.
+ *
+ * Expired values are invisible to reads at once and are removed by a background
+ * sweeper that visits only the keys due according to an ExpiryQueue.
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Component
+@Profile("memory")
+public class InMemoryStorageEngine implements StorageEngine {
+
+    /**
+     * All stored values by key
+     */
+    private final ConcurrentHashMap<String, values> data = new ConcurrentHashMap<>();
+
+    /**
+     * Sorted index of the stored keys, used for range scans
+     */
+    private final ConcurrentSkipListSet<String> keys = new ConcurrentSkipListSet<>();
+
+    /**
+     * Write locks, one per stripe of the key space
+     */
+    private final ReentrantLock[] stripes;
+
+    /**
+     * Expiry dates of the stored values that have one
+     */
+    private final ExpiryQueue expiries = new ExpiryQueue();
+
+    /**
+     * Background thread removing expired values
+     */
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * Constructor that sizes the lock stripes from the configuration and starts the expiry sweeper.
+     *
+     * @param properties The Spring Snake configuration properties
+     */
+    public InMemoryStorageEngine(SpringSnakeProperties properties) {
+        this.stripes = new ReentrantLock[properties.getMemory().getStripes()];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ttl-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getTtl().getSweepInterval().toMillis();
+        sweeper.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Select the lock stripe responsible for a key.
+     *
+     * @param key The key being written
+     * @return The lock guarding that key
+     */
+    private ReentrantLock stripeFor(String key) {
+        int hash = key.hashCode();
+        return stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)];
+    }
+
+    /**
+     * Check whether a stored value exists and has not expired.
+     *
+     * @param value The stored value, or null
+     * @param now The current time
+     * @return true if the value is visible
+     */
+    private static boolean isLive(values value, Instant now) {
+        return value != null && !value.isExpiredAt(now);
+    }
+
+    @Override
+    public values findByKey(String key) {
+        values value = data.get(key);
+        return isLive(value, Instant.now()) ? value : null;
+    }
+
+    @Override
+    public values findByKey(String key, FieldProjection projection) {
+        values value = findByKey(key);
+        return value == null ? null : projection.project(value);
+    }
+
+    @Override
+    public Map<String, values> findAllByKey(Collection<String> keys) {
+        Instant now = Instant.now();
+        Map<String, values> found = new HashMap<>();
+        for (String key : keys) {
+            values value = data.get(key);
+            if (isLive(value, now)) {
+                found.put(key, value);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public List<values> findAll() {
+        try (Stream<values> all = streamAll(0)) {
+            return all.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    @Override
+    public Stream<values> streamAll(int batchSize) {
+        Instant now = Instant.now();
+        return keys.stream().map(data::get).filter(value -> isLive(value, now));
+    }
+
+    @Override
+    public Stream<String> streamKeys(int batchSize) {
+        Instant now = Instant.now();
+        return keys.stream().filter(key -> isLive(data.get(key), now));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * This engine has no index on the change time, so the matching values are
+     * collected and sorted in memory.
+     */
+    @Override
+    public Stream<values> streamChangedSince(Instant since, int batchSize) {
+        Instant now = Instant.now();
+        return data.values().stream()
+                .filter(value -> isLive(value, now) && value.getLastchange() != null
+                        && !value.getLastchange().isBefore(since))
+                .sorted(CHANGE_ORDER);
+    }
+
+    @Override
+    public List<values> scan(Range<String> range, int limit) {
+        NavigableSet<String> view = keys;
+        Bound<String> lower = range.getLowerBound();
+        if (lower.isBounded()) {
+            view = view.tailSet(lower.getValue().orElseThrow(), lower.isInclusive());
+        }
+        Bound<String> upper = range.getUpperBound();
+        if (upper.isBounded()) {
+            view = view.headSet(upper.getValue().orElseThrow(), upper.isInclusive());
+        }
+        Instant now = Instant.now();
+        return view.stream().map(data::get).filter(value -> isLive(value, now)).limit(limit).toList();
+    }
+
+    @Override
+    public boolean insert(values value) {
+        ReentrantLock lock = stripeFor(value.getKey());
+        lock.lock();
+        try {
+            // An expired value is replaced as if it didn't exist
+            if (isLive(data.get(value.getKey()), Instant.now())) {
+                return false;
+            }
+            data.put(value.getKey(), value);
+            keys.add(value.getKey());
+            expiries.schedule(value.getKey(), value.getExpiresAt());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Set<String> insertAll(List<values> batch) {
+        Set<String> inserted = new HashSet<>();
+        for (values value : batch) {
+            if (insert(value)) {
+                inserted.add(value.getKey());
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public boolean update(String key, Object value, Instant lastchange, Instant expiresAt) {
+        return replace(key, null, current -> value, lastchange, expiresAt) != null;
+    }
+
+    @Override
+    public Long updateIfVersion(String key, long expectedVersion, Object value, Instant lastchange, Instant expiresAt) {
+        values updated = replace(key, expectedVersion, current -> value, lastchange, expiresAt);
+        return updated == null ? null : updated.getVersion();
+    }
+
+    @Override
+    public values applyChange(String key, ValueChange change, Instant lastchange) {
+        return replace(key, null, change::applyTo, lastchange, null);
+    }
+
+    /**
+     * Replace the value of a live key, optionally only if it has a given version.
+     *
+     * @param key The key to update
+     * @param expectedVersion The version the value must have, or null to update any version
+     * @param newValue Function computing the new value from the current one
+     * @param lastchange The timestamp of this change
+     * @param expiresAt The new expiry date, or null to keep the current one
+     * @return The updated values entity, or null if the key doesn't exist or has another version
+     */
+    private values replace(String key, Long expectedVersion, UnaryOperator<Object> newValue, Instant lastchange,
+            Instant expiresAt) {
+        ReentrantLock lock = stripeFor(key);
+        lock.lock();
+        try {
+            values existing = data.get(key);
+            if (!isLive(existing, Instant.now())
+                    || expectedVersion != null && existing.getVersion() != expectedVersion) {
+                return null;
+            }
+            // Replace instead of mutating, so readers never see a half-updated entity
+            values updated = new values(key, newValue.apply(existing.getValue()));
+            updated.setId(existing.getId());
+            updated.setLastchange(lastchange);
+            updated.setExpiresAt(expiresAt != null ? expiresAt : existing.getExpiresAt());
+            updated.setVersion(existing.getVersion() + 1);
+            data.put(key, updated);
+            expiries.schedule(key, expiresAt);
+            return updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long updateAll(List<values> batch) {
+        long updated = 0;
+        for (values value : batch) {
+            if (update(value.getKey(), value.getValue(), value.getLastchange(), value.getExpiresAt())) {
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public boolean delete(String key) {
+        ReentrantLock lock = stripeFor(key);
+        lock.lock();
+        try {
+            values removed = data.remove(key);
+            if (removed == null) {
+                return false;
+            }
+            keys.remove(key);
+            return !removed.isExpiredAt(Instant.now());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove a key if its value has expired.
+     *
+     * @param key The key that is due
+     * @param now The current time
+     * @return true if an expired value was removed
+     */
+    private boolean expire(String key, Instant now) {
+        ReentrantLock lock = stripeFor(key);
+        lock.lock();
+        try {
+            values value = data.get(key);
+            if (value == null || !value.isExpiredAt(now)) {
+                return false;
+            }
+            data.remove(key);
+            keys.remove(key);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove every value whose expiry date has passed.
+     *
+     * @return The number of removed values
+     */
+    int sweep() {
+        Instant now = Instant.now();
+        return expiries.expireDue(now, key -> expire(key, now));
+    }
+
+    @Override
+    public void deleteAll() {
+        // Take every stripe in a fixed order so no write interleaves with the clear
+        for (ReentrantLock lock : stripes) {
+            lock.lock();
+        }
+        try {
+            data.clear();
+            keys.clear();
+            expiries.clear();
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                stripes[i].unlock();
+            }
+        }
+    }
+
+    /**
+     * Stop the expiry sweeper.
+     */
+    @PreDestroy
+    public void close() {
+        sweeper.shutdownNow();
+    }
+}
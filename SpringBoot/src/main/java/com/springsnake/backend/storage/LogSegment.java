@@ -0,0 +1,429 @@
+package com.springsnake.backend.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * One append-only segment file of the log-structured storage engine
+ *
+ * A segment is a sequence of self-describing records. Each record has a fixed
+ * 17 byte header followed by the key, the lastchange timestamp and the value
+ * (as JSON), all length-prefixed in the header:
+ *
+ * [int crc32c][byte type][int keyLength][int lastchangeLength][int valueLength][key][lastchange][value]
+ *
+ * Values are stored as VERSIONED_PUT records, which carry 16 more bytes right
+ * after the header: the version of the value and its expiry in epoch
+ * milliseconds (Long.MIN_VALUE if it doesn't expire). Segments may also hold
+ * the PUT and EXPIRING_PUT records of earlier versions, which have no version
+ * and only an expiry (8 bytes) or no extra bytes at all. Decoding turns every
+ * one of them into a PUT entry, older records with version 1, so only this
+ * class knows the difference.
+ *
+ * The checksum covers everything after itself, so a record torn by a crash is
+ * detected and cut off during recovery. Only the active segment is appended to;
+ * once it is full it is sealed and memory-mapped, and all later reads of it are
+ * served from the mapping without system calls.
+ *
+ * Appends are not synchronized here: the engine serializes them with its own
+ * write lock. Reads are safe from any thread.
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+final class LogSegment {
+
+    /**
+     * Record type storing a value under a key
+     */
+    static final byte PUT = 0;
+
+    /**
+     * Record type marking a key as deleted (tombstone)
+     */
+    static final byte DELETE = 1;
+
+    /**
+     * Record type discarding every record of older segments
+     */
+    static final byte CLEAR = 2;
+
+    /**
+     * On-disk record type of a PUT with an expiry date
+     */
+    private static final byte EXPIRING_PUT = 3;
+
+    /**
+     * On-disk record type of a PUT with version and expiry date
+     */
+    private static final byte VERSIONED_PUT = 4;
+
+    /**
+     * Size of the expiry date following the header of an EXPIRING_PUT record
+     */
+    private static final int EXPIRY_SIZE = 8;
+
+    /**
+     * Size of the version and expiry date following the header of a VERSIONED_PUT record
+     */
+    private static final int VERSION_SIZE = 16;
+
+    /**
+     * Expiry stored in a VERSIONED_PUT record for a value that doesn't expire
+     */
+    private static final long NO_EXPIRY = Long.MIN_VALUE;
+
+    /**
+     * Size of the fixed record header in bytes
+     */
+    static final int HEADER_SIZE = 17;
+
+    /**
+     * One decoded record together with its position in the segment
+     *
+     * @param type The record type (PUT, DELETE or CLEAR)
+     * @param key The key of the record (empty for CLEAR)
+     * @param lastchange The change timestamp (empty unless PUT)
+     * @param value The JSON encoded value (empty unless PUT)
+     * @param expiresAt The expiry date of a PUT, or null if it doesn't expire
+     * @param version The version of the value of a PUT (0 unless PUT)
+     * @param offset The position of the record in the segment
+     * @param length The total length of the record in bytes
+     */
+    record Entry(byte type, String key, String lastchange, byte[] value, Instant expiresAt, long version,
+            long offset, int length) {
+    }
+
+    /**
+     * Sequence number of the segment; higher numbers hold newer records
+     */
+    private final int id;
+
+    /**
+     * Location of the segment file
+     */
+    private final Path path;
+
+    /**
+     * Channel used for appends and for reads while the segment is active
+     */
+    private final FileChannel channel;
+
+    /**
+     * Number of bytes of valid records, which is also the next append position
+     */
+    private final AtomicLong size;
+
+    /**
+     * Number of bytes taken by records that are overwritten, deleted or tombstones
+     */
+    private final AtomicLong garbage = new AtomicLong();
+
+    /**
+     * Read-only mapping of the whole segment, set once the segment is sealed
+     */
+    private volatile MappedByteBuffer mapped;
+
+    private LogSegment(int id, Path path, FileChannel channel) throws IOException {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.size = new AtomicLong(channel.size());
+    }
+
+    /**
+     * Create a new, empty segment file.
+     *
+     * @param directory The data directory
+     * @param id The sequence number of the new segment
+     * @return The created segment
+     * @throws IOException If the file cannot be created
+     */
+    static LogSegment create(Path directory, int id) throws IOException {
+        Path path = directory.resolve(fileName(id));
+        return new LogSegment(id, path, FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Open an existing segment file.
+     *
+     * @param path The segment file
+     * @param id The sequence number of the segment
+     * @return The opened segment
+     * @throws IOException If the file cannot be opened
+     */
+    static LogSegment open(Path path, int id) throws IOException {
+        return new LogSegment(id, path, FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Build the file name of a segment.
+     *
+     * @param id The sequence number of the segment
+     * @return The file name, which sorts in sequence order
+     */
+    static String fileName(int id) {
+        return String.format("segment-%010d.log", id);
+    }
+
+    /**
+     * Encode a record into a buffer ready to be appended.
+     *
+     * @param type The record type
+     * @param key The key of the record
+     * @param lastchange The change timestamp, or empty
+     * @param value The JSON encoded value, or empty
+     * @param expiresAt The expiry date of a PUT, or null
+     * @param version The version of the value of a PUT, ignored otherwise
+     * @return A buffer positioned at the start of the encoded record
+     */
+    static ByteBuffer encode(byte type, String key, String lastchange, byte[] value, Instant expiresAt, long version) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] lastchangeBytes = lastchange.getBytes(StandardCharsets.UTF_8);
+        boolean put = type == PUT;
+        int extraSize = put ? VERSION_SIZE : 0;
+        ByteBuffer buffer = ByteBuffer.allocate(
+                HEADER_SIZE + extraSize + keyBytes.length + lastchangeBytes.length + value.length);
+        buffer.putInt(0)
+                .put(put ? VERSIONED_PUT : type)
+                .putInt(keyBytes.length)
+                .putInt(lastchangeBytes.length)
+                .putInt(value.length);
+        if (put) {
+            buffer.putLong(version)
+                    .putLong(expiresAt == null ? NO_EXPIRY : expiresAt.toEpochMilli());
+        }
+        buffer.put(keyBytes)
+                .put(lastchangeBytes)
+                .put(value);
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 4, buffer.capacity() - 4);
+        buffer.putInt(0, (int) crc.getValue());
+        return buffer.flip();
+    }
+
+    /**
+     * Number of bytes between the header and the key of a record.
+     *
+     * @param type The on-disk record type
+     * @return The size of the type specific fields
+     */
+    private static int extraSize(byte type) {
+        return switch (type) {
+            case EXPIRING_PUT -> EXPIRY_SIZE;
+            case VERSIONED_PUT -> VERSION_SIZE;
+            default -> 0;
+        };
+    }
+
+    /**
+     * Decode a record and verify its checksum.
+     *
+     * @param buffer Buffer holding exactly one record
+     * @param offset The position of the record in the segment
+     * @return The decoded record, or null if it is incomplete or corrupt
+     */
+    private static Entry decode(ByteBuffer buffer, long offset) {
+        int length = buffer.remaining();
+        if (length < HEADER_SIZE) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 4, length - 4);
+        ByteBuffer record = ByteBuffer.wrap(bytes);
+        if (record.getInt() != (int) crc.getValue()) {
+            return null;
+        }
+        byte type = record.get();
+        int keyLength = record.getInt();
+        int lastchangeLength = record.getInt();
+        int valueLength = record.getInt();
+        Instant expiresAt = null;
+        long version = 0;
+        int start = HEADER_SIZE + extraSize(type);
+        if (type == VERSIONED_PUT) {
+            version = record.getLong();
+            long expiry = record.getLong();
+            expiresAt = expiry == NO_EXPIRY ? null : Instant.ofEpochMilli(expiry);
+            type = PUT;
+        } else if (type == EXPIRING_PUT) {
+            expiresAt = Instant.ofEpochMilli(record.getLong());
+            version = 1;
+            type = PUT;
+        } else if (type == PUT) {
+            version = 1;
+        }
+        String key = new String(bytes, start, keyLength, StandardCharsets.UTF_8);
+        String lastchange = new String(bytes, start + keyLength, lastchangeLength, StandardCharsets.UTF_8);
+        byte[] value = new byte[valueLength];
+        System.arraycopy(bytes, start + keyLength + lastchangeLength, value, 0, valueLength);
+        return new Entry(type, key, lastchange, value, expiresAt, version, offset, length);
+    }
+
+    int id() {
+        return id;
+    }
+
+    long size() {
+        return size.get();
+    }
+
+    long garbage() {
+        return garbage.get();
+    }
+
+    void addGarbage(long bytes) {
+        garbage.addAndGet(bytes);
+    }
+
+    boolean isSealed() {
+        return mapped != null;
+    }
+
+    /**
+     * Append an encoded record at the end of the segment.
+     *
+     * @param record The encoded record
+     * @return The position at which the record was written
+     * @throws IOException If the write fails
+     */
+    long append(ByteBuffer record) throws IOException {
+        long offset = size.get();
+        long position = offset;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        size.set(position);
+        return offset;
+    }
+
+    /**
+     * Read the record stored at a position.
+     *
+     * @param offset The position of the record
+     * @param length The length of the record
+     * @return The decoded record, or null if the bytes do not form a valid record
+     * @throws IOException If the read fails
+     */
+    Entry read(long offset, int length) throws IOException {
+        MappedByteBuffer view = mapped;
+        if (view == null) {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, offset + buffer.position()) < 0) {
+                        return null;
+                    }
+                }
+                return decode(buffer.flip(), offset);
+            } catch (ClosedChannelException e) {
+                // Sealed and retired while reading: the mapping is still valid
+                view = mapped;
+                if (view == null) {
+                    throw e;
+                }
+            }
+        }
+        return decode(view.slice((int) offset, length), offset);
+    }
+
+    /**
+     * Scan all records from the start of the segment.
+     *
+     * The scan stops at the first incomplete or corrupt record, which can only
+     * be the result of an interrupted write. If truncate is set, the file is cut
+     * back to the end of the last valid record so that appends continue cleanly.
+     *
+     * @param consumer Callback receiving every valid record in order
+     * @param truncate Whether to cut off an invalid tail
+     * @return The number of bytes discarded after the last valid record
+     * @throws IOException If the file cannot be read
+     */
+    long scan(Consumer<Entry> consumer, boolean truncate) throws IOException {
+        long fileSize = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (position + HEADER_SIZE <= fileSize) {
+            header.clear();
+            while (header.hasRemaining() && channel.read(header, position + header.position()) >= 0) {
+                // keep reading until the header is complete
+            }
+            header.flip();
+            header.getInt();
+            long length = HEADER_SIZE + extraSize(header.get());
+            length += (long) header.getInt() + header.getInt() + header.getInt();
+            if (length < HEADER_SIZE || position + length > fileSize) {
+                break;
+            }
+            Entry entry = read(position, (int) length);
+            if (entry == null) {
+                break;
+            }
+            consumer.accept(entry);
+            position += length;
+        }
+        long discarded = fileSize - position;
+        if (truncate && discarded > 0) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+        size.set(position);
+        return discarded;
+    }
+
+    /**
+     * Flush appended records to the storage device.
+     *
+     * @throws IOException If the flush fails
+     */
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Seal the segment: flush it and switch reads to a memory mapping.
+     *
+     * @throws IOException If the flush or the mapping fails
+     */
+    void seal() throws IOException {
+        channel.force(true);
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size.get());
+    }
+
+    /**
+     * Close the segment file without deleting it.
+     *
+     * @throws IOException If closing fails
+     */
+    void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Close and delete the segment file.
+     *
+     * Existing mappings stay readable until they are garbage collected,
+     * so readers holding a location in this segment are not affected.
+     *
+     * @throws IOException If the file cannot be deleted
+     */
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+}
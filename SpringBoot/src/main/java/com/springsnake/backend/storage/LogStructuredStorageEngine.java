@@ -0,0 +1,831 @@
+package com.springsnake.backend.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.domain.Range.Bound;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springsnake.backend.values;
+import com.springsnake.backend.utils.LegacyTimestampConverter;
+import com.springsnake.backend.utils.SpringSnakeProperties;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Embedded, log-structured implementation of the storage engine SPI
+ *
+ * This engine is selected with the "local" Spring profile and persists values
+ * to a directory on the local disk, so SpringSnake can run without MongoDB
+ * (e.g. on edge devices) and still keep its data across restarts.
+ *
+ * - Writes: every change is appended as a checksummed record to the active
+ *   segment file through a FileChannel. Appends are serialized by one lock;
+ *   durability uses group commit, i.e. concurrent writers waiting for an fsync
+ *   share a single FileChannel.force call instead of issuing one each.
+ * - Reads: an in-memory sorted index maps every key to the segment and offset
+ *   of its latest record. Full segments are sealed and memory-mapped, so most
+ *   reads are a map lookup plus a copy out of the page cache.
+ * - Compaction: a background task rewrites the live records of sealed segments
+ *   that are mostly overwritten or deleted into the active segment and deletes
+ *   the old file.
+ * - Recovery: on startup all segments are scanned in order to rebuild the index.
+ *   A record torn by a crash fails its checksum and is cut off.
+ * - Versions: the index keeps the version of every value next to its location,
+ *   so conditional updates compare versions without reading the record.
+ * - Expiry: the index keeps the expiry date of every value, so reads skip
+ *   expired values without touching the disk. A sweeper visits the keys due
+ *   according to an ExpiryQueue and appends a tombstone for each of them.
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Component
+@Profile("local")
+@Slf4j
+public class LogStructuredStorageEngine implements StorageEngine {
+
+    /**
+     * Pattern of segment file names, capturing the sequence number
+     */
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d+)\\.log");
+
+    /**
+     * Position of the latest record of a key
+     *
+     * The segment is referenced directly, so a reader keeps working even if
+     * compaction retires the segment while the read is in progress.
+     *
+     * @param segment The segment holding the record
+     * @param offset The position of the record in the segment
+     * @param length The length of the record in bytes
+     * @param expiresAt The expiry date of the value, or null if it doesn't expire
+     * @param version The version of the value (0 for other records)
+     */
+    private record Location(LogSegment segment, long offset, int length, Instant expiresAt, long version) {
+
+        /**
+         * Check whether the value at this location is visible.
+         *
+         * @param now The current time
+         * @return true if the value has not expired
+         */
+        boolean isLive(Instant now) {
+            return expiresAt == null || expiresAt.isAfter(now);
+        }
+    }
+
+    /**
+     * Directory holding the segment files
+     */
+    private final Path directory;
+
+    /**
+     * Size after which the active segment is sealed and a new one is started
+     */
+    private final long segmentSize;
+
+    /**
+     * Whether writes wait for their records to reach the storage device
+     */
+    private final boolean syncWrites;
+
+    /**
+     * Share of garbage bytes from which a sealed segment is compacted
+     */
+    private final double compactionThreshold;
+
+    /**
+     * Mapper used to encode values as JSON inside the records
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Latest record location of every live key, sorted for range scans
+     */
+    private final ConcurrentSkipListMap<String, Location> index = new ConcurrentSkipListMap<>();
+
+    /**
+     * All segments on disk by sequence number
+     */
+    private final ConcurrentSkipListMap<Integer, LogSegment> segments = new ConcurrentSkipListMap<>();
+
+    /**
+     * Lock serializing appends and index changes
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * Monitor coordinating group commit between writers
+     */
+    private final Object syncMonitor = new Object();
+
+    /**
+     * Expiry dates of the indexed values that have one
+     */
+    private final ExpiryQueue expiries = new ExpiryQueue();
+
+    /**
+     * Background thread running compaction, expiry and, without sync writes, periodic flushes
+     */
+    private final ScheduledExecutorService maintenance;
+
+    /**
+     * The segment currently appended to
+     */
+    private volatile LogSegment active;
+
+    /**
+     * Sequence number of the last appended record
+     */
+    private volatile long appendedSequence;
+
+    /**
+     * Sequence number up to which records are known to be flushed (guarded by syncMonitor)
+     */
+    private long durableSequence;
+
+    /**
+     * Whether a writer is currently flushing on behalf of the group (guarded by syncMonitor)
+     */
+    private boolean syncing;
+
+    /**
+     * Constructor that opens the data directory, recovers the index from the
+     * existing segments and starts background compaction and expiry.
+     *
+     * @param properties The Spring Snake configuration properties
+     * @param objectMapper The mapper used to encode values
+     */
+    public LogStructuredStorageEngine(SpringSnakeProperties properties, ObjectMapper objectMapper) {
+        SpringSnakeProperties.Local local = properties.getLocal();
+        this.directory = Paths.get(local.getDirectory());
+        this.segmentSize = Math.min(local.getSegmentSize().toBytes(), Integer.MAX_VALUE);
+        this.syncWrites = local.isSyncWrites();
+        this.compactionThreshold = local.getCompactionThreshold();
+        this.objectMapper = objectMapper;
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the data directory " + directory, e);
+        }
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "log-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = local.getCompactionInterval().toMillis();
+        maintenance.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.MILLISECONDS);
+        long sweepInterval = properties.getTtl().getSweepInterval().toMillis();
+        maintenance.scheduleWithFixedDelay(this::expireValues, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Rebuild the index by replaying every segment in sequence order.
+     *
+     * @throws IOException If a segment cannot be read
+     */
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> SEGMENT_FILE.matcher(path.getFileName().toString()).matches()).sorted().toList();
+        }
+        AtomicInteger clearedBefore = new AtomicInteger(-1);
+        for (Path file : files) {
+            Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+            matcher.matches();
+            LogSegment segment = LogSegment.open(file, Integer.parseInt(matcher.group(1)));
+            segments.put(segment.id(), segment);
+            long discarded = segment.scan(entry -> {
+                if (entry.type() == LogSegment.CLEAR) {
+                    clearedBefore.set(segment.id());
+                }
+                replay(segment, entry);
+            }, true);
+            if (discarded > 0) {
+                log.warn("Discarded {} bytes of incomplete records at the end of {}", discarded, file);
+            }
+        }
+        // An interrupted deleteAll may have left segments that a clear record has already discarded
+        for (LogSegment segment : new ArrayList<>(segments.headMap(clearedBefore.get()).values())) {
+            segments.remove(segment.id());
+            segment.delete();
+        }
+        LogSegment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        for (LogSegment segment : segments.values()) {
+            if (segment != last || segment.size() >= segmentSize) {
+                segment.seal();
+            }
+        }
+        active = last != null && !last.isSealed() ? last : newSegment();
+        log.info("Recovered {} keys from {} segments in {}", index.size(), segments.size(), directory);
+    }
+
+    /**
+     * Apply one recovered record to the index.
+     *
+     * Values that expired while the engine was down are indexed like any other
+     * and scheduled for expiry, so the first sweep writes their tombstones.
+     *
+     * @param segment The segment holding the record
+     * @param entry The recovered record
+     */
+    private void replay(LogSegment segment, LogSegment.Entry entry) {
+        switch (entry.type()) {
+            case LogSegment.PUT -> {
+                Location location = new Location(segment, entry.offset(), entry.length(), entry.expiresAt(),
+                        entry.version());
+                retire(index.put(entry.key(), location));
+                expiries.schedule(entry.key(), entry.expiresAt());
+            }
+            case LogSegment.DELETE -> {
+                retire(index.remove(entry.key()));
+                segment.addGarbage(entry.length());
+            }
+            case LogSegment.CLEAR -> {
+                index.values().forEach(this::retire);
+                index.clear();
+                segment.addGarbage(entry.length());
+            }
+            default -> throw new IllegalStateException("Unknown record type " + entry.type());
+        }
+    }
+
+    /**
+     * Account a record that is no longer the latest one of its key as garbage.
+     *
+     * @param location The superseded record, or null
+     */
+    private void retire(Location location) {
+        if (location != null) {
+            location.segment().addGarbage(location.length());
+        }
+    }
+
+    /**
+     * Create the next segment file.
+     *
+     * @return The new, empty segment
+     * @throws IOException If the file cannot be created
+     */
+    private LogSegment newSegment() throws IOException {
+        int id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        LogSegment segment = LogSegment.create(directory, id);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * Seal the active segment and start a new one. Caller must hold the write lock.
+     *
+     * @throws IOException If sealing or creating a segment fails
+     */
+    private void roll() throws IOException {
+        active.seal();
+        active = newSegment();
+    }
+
+    /**
+     * Append a record to the active segment. Caller must hold the write lock.
+     *
+     * @param type The record type
+     * @param key The key of the record
+     * @param lastchange The change timestamp, or empty
+     * @param value The JSON encoded value, or empty
+     * @param expiresAt The expiry date of a PUT, or null
+     * @param version The version of the value of a PUT, or 0
+     * @return The location of the appended record
+     * @throws IOException If the write fails
+     */
+    private Location append(byte type, String key, String lastchange, byte[] value, Instant expiresAt, long version)
+            throws IOException {
+        ByteBuffer record = LogSegment.encode(type, key, lastchange, value, expiresAt, version);
+        int length = record.remaining();
+        if (active.size() > 0 && active.size() + length > segmentSize) {
+            roll();
+        }
+        long offset = active.append(record);
+        appendedSequence++;
+        return new Location(active, offset, length, expiresAt, version);
+    }
+
+    /**
+     * Append a PUT record for a value and schedule its expiry. Caller must hold the write lock.
+     *
+     * @param key The key of the value
+     * @param value The value to store
+     * @param lastchange The change timestamp, or null
+     * @param expiresAt The expiry date, or null
+     * @param version The version of the value
+     * @return The location of the appended record
+     * @throws IOException If the write fails
+     */
+    private Location appendPut(String key, Object value, Instant lastchange, Instant expiresAt, long version)
+            throws IOException {
+        Location location = append(LogSegment.PUT, key, lastchange == null ? "" : lastchange.toString(),
+                objectMapper.writeValueAsBytes(value), expiresAt, version);
+        expiries.schedule(key, expiresAt);
+        return location;
+    }
+
+    /**
+     * Append a tombstone for a key and drop it from the index. Caller must hold the write lock.
+     *
+     * @param key The key to delete
+     * @throws IOException If the write fails
+     */
+    private void appendDelete(String key) throws IOException {
+        Location tombstone = append(LogSegment.DELETE, key, "", new byte[0], null, 0);
+        tombstone.segment().addGarbage(tombstone.length());
+        retire(index.remove(key));
+    }
+
+    /**
+     * Find the location of a key whose value has not expired.
+     *
+     * @param key The key to look up
+     * @param now The current time
+     * @return The location of the live value, or null
+     */
+    private Location live(String key, Instant now) {
+        Location location = index.get(key);
+        return location != null && location.isLive(now) ? location : null;
+    }
+
+    /**
+     * Wait until every record appended so far has reached the storage device.
+     *
+     * The first waiting writer flushes on behalf of everyone; writers arriving
+     * during that flush wait and are covered together by the next one.
+     *
+     * @throws IOException If the flush fails
+     */
+    private void awaitDurable() throws IOException {
+        if (!syncWrites) {
+            return;
+        }
+        long sequence = appendedSequence;
+        while (true) {
+            synchronized (syncMonitor) {
+                while (syncing && durableSequence < sequence) {
+                    try {
+                        syncMonitor.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for fsync", e);
+                    }
+                }
+                if (durableSequence >= sequence) {
+                    return;
+                }
+                syncing = true;
+            }
+            // Everything up to this sequence is written before the flush starts
+            long target = appendedSequence;
+            boolean flushed = false;
+            try {
+                active.force();
+                flushed = true;
+            } finally {
+                synchronized (syncMonitor) {
+                    syncing = false;
+                    if (flushed) {
+                        durableSequence = Math.max(durableSequence, target);
+                    }
+                    syncMonitor.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Read and decode the record at a location.
+     *
+     * @param location The location of the record
+     * @return The values entity stored there
+     */
+    private values read(Location location) {
+        try {
+            LogSegment.Entry entry = location.segment().read(location.offset(), location.length());
+            if (entry == null) {
+                throw new DataAccessResourceFailureException("Corrupt record in segment " + location.segment().id());
+            }
+            values value = new values(entry.key(), objectMapper.readValue(entry.value(), Object.class));
+            value.setLastchange(LegacyTimestampConverter.parse(entry.lastchange()));
+            value.setExpiresAt(entry.expiresAt());
+            value.setVersion(entry.version());
+            return value;
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Could not read segment " + location.segment().id(), e);
+        }
+    }
+
+    @Override
+    public values findByKey(String key) {
+        Location location = live(key, Instant.now());
+        return location == null ? null : read(location);
+    }
+
+    @Override
+    public values findByKey(String key, FieldProjection projection) {
+        // Records hold the value as one JSON document, so it is read whole and projected here
+        values value = findByKey(key);
+        return value == null ? null : projection.project(value);
+    }
+
+    @Override
+    public Map<String, values> findAllByKey(Collection<String> keys) {
+        Map<String, values> found = new HashMap<>();
+        for (String key : keys) {
+            values value = findByKey(key);
+            if (value != null) {
+                found.put(key, value);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public List<values> findAll() {
+        try (Stream<values> all = streamAll(0)) {
+            return all.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    @Override
+    public Stream<values> streamAll(int batchSize) {
+        Instant now = Instant.now();
+        return index.values().stream().filter(location -> location.isLive(now)).map(this::read);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Keys are taken from the in-memory index, so no record is read.
+     */
+    @Override
+    public Stream<String> streamKeys(int batchSize) {
+        Instant now = Instant.now();
+        return index.entrySet().stream().filter(entry -> entry.getValue().isLive(now)).map(Map.Entry::getKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The index holds no change times, so every live record is read and the
+     * matching values are sorted in memory.
+     */
+    @Override
+    public Stream<values> streamChangedSince(Instant since, int batchSize) {
+        return streamAll(batchSize)
+                .filter(value -> value.getLastchange() != null && !value.getLastchange().isBefore(since))
+                .sorted(CHANGE_ORDER);
+    }
+
+    @Override
+    public List<values> scan(Range<String> range, int limit) {
+        NavigableMap<String, Location> view = index;
+        Bound<String> lower = range.getLowerBound();
+        if (lower.isBounded()) {
+            view = view.tailMap(lower.getValue().orElseThrow(), lower.isInclusive());
+        }
+        Bound<String> upper = range.getUpperBound();
+        if (upper.isBounded()) {
+            view = view.headMap(upper.getValue().orElseThrow(), upper.isInclusive());
+        }
+        Instant now = Instant.now();
+        return view.values().stream().filter(location -> location.isLive(now)).limit(limit).map(this::read).toList();
+    }
+
+    @Override
+    public boolean insert(values value) {
+        return !insertAll(List.of(value)).isEmpty();
+    }
+
+    @Override
+    public Set<String> insertAll(List<values> batch) {
+        Set<String> inserted = new HashSet<>();
+        Instant now = Instant.now();
+        try {
+            writeLock.lock();
+            try {
+                for (values value : batch) {
+                    // An expired value is replaced as if it didn't exist
+                    if (live(value.getKey(), now) == null) {
+                        retire(index.put(value.getKey(), appendPut(value.getKey(), value.getValue(),
+                                value.getLastchange(), value.getExpiresAt(), value.getVersion())));
+                        inserted.add(value.getKey());
+                    }
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            // One flush for the whole batch
+            awaitDurable();
+            return inserted;
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Could not append to the log", e);
+        }
+    }
+
+    @Override
+    public boolean update(String key, Object value, Instant lastchange, Instant expiresAt) {
+        return replace(key, null, current -> value, lastchange, expiresAt) != null;
+    }
+
+    @Override
+    public Long updateIfVersion(String key, long expectedVersion, Object value, Instant lastchange, Instant expiresAt) {
+        values updated = replace(key, expectedVersion, current -> value, lastchange, expiresAt);
+        return updated == null ? null : updated.getVersion();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The current record is read and decoded under the write lock, and the
+     * changed value is appended as a whole.
+     */
+    @Override
+    public values applyChange(String key, ValueChange change, Instant lastchange) {
+        return replace(key, null, current -> change.applyTo(read(current).getValue()), lastchange, null);
+    }
+
+    /**
+     * Append a new value for a live key, optionally only if it has a given version.
+     *
+     * @param key The key to update
+     * @param expectedVersion The version the value must have, or null to update any version
+     * @param newValue Function computing the new value from the location of the current one
+     * @param lastchange The timestamp of this change
+     * @param expiresAt The new expiry date, or null to keep the current one
+     * @return The updated values entity, or null if the key doesn't exist or has another version
+     */
+    private values replace(String key, Long expectedVersion, Function<Location, Object> newValue, Instant lastchange,
+            Instant expiresAt) {
+        try {
+            values updated;
+            writeLock.lock();
+            try {
+                Location current = live(key, Instant.now());
+                if (current == null || expectedVersion != null && current.version() != expectedVersion) {
+                    return null;
+                }
+                updated = new values(key, newValue.apply(current));
+                updated.setLastchange(lastchange);
+                updated.setExpiresAt(expiresAt != null ? expiresAt : current.expiresAt());
+                updated.setVersion(current.version() + 1);
+                retire(index.put(key, appendPut(key, updated.getValue(), lastchange, updated.getExpiresAt(),
+                        updated.getVersion())));
+            } finally {
+                writeLock.unlock();
+            }
+            awaitDurable();
+            return updated;
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Could not append to the log", e);
+        }
+    }
+
+    @Override
+    public long updateAll(List<values> batch) {
+        long updated = 0;
+        Instant now = Instant.now();
+        try {
+            writeLock.lock();
+            try {
+                for (values value : batch) {
+                    Location current = live(value.getKey(), now);
+                    if (current != null) {
+                        Instant expiry = value.getExpiresAt() != null ? value.getExpiresAt() : current.expiresAt();
+                        retire(index.put(value.getKey(), appendPut(value.getKey(), value.getValue(),
+                                value.getLastchange(), expiry, current.version() + 1)));
+                        updated++;
+                    }
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            // One flush for the whole batch
+            awaitDurable();
+            return updated;
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Could not append to the log", e);
+        }
+    }
+
+    @Override
+    public boolean delete(String key) {
+        try {
+            boolean live;
+            writeLock.lock();
+            try {
+                Location current = index.get(key);
+                if (current == null) {
+                    return false;
+                }
+                // An expired value is removed as well, but reported as missing
+                live = current.isLive(Instant.now());
+                appendDelete(key);
+            } finally {
+                writeLock.unlock();
+            }
+            awaitDurable();
+            return live;
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Could not append to the log", e);
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        try {
+            writeLock.lock();
+            try {
+                // The clear record goes first into a fresh segment, so every older segment can simply be deleted
+                roll();
+                Location clear = append(LogSegment.CLEAR, "", "", new byte[0], null, 0);
+                clear.segment().addGarbage(clear.length());
+                active.force();
+                index.clear();
+                expiries.clear();
+                for (LogSegment segment : new ArrayList<>(segments.headMap(active.id()).values())) {
+                    segments.remove(segment.id());
+                    segment.delete();
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Could not clear the log", e);
+        }
+    }
+
+    /**
+     * Periodic background work: flush when writes are not synced, then compact.
+     */
+    private void maintain() {
+        try {
+            if (!syncWrites) {
+                active.force();
+            }
+            compact();
+        } catch (Exception e) {
+            log.error("Log maintenance failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Periodic background work: remove expired values.
+     */
+    private void expireValues() {
+        try {
+            sweep();
+        } catch (Exception e) {
+            log.error("Expiry sweep failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Append a tombstone for every key whose value has expired.
+     *
+     * The tombstones are not flushed explicitly: if they are lost in a crash,
+     * the values are still expired after recovery and are swept again.
+     *
+     * @return The number of removed values
+     */
+    int sweep() {
+        Instant now = Instant.now();
+        return expiries.expireDue(now, key -> {
+            writeLock.lock();
+            try {
+                Location current = index.get(key);
+                if (current == null || current.isLive(now)) {
+                    return false;
+                }
+                appendDelete(key);
+                return true;
+            } catch (IOException e) {
+                throw new DataAccessResourceFailureException("Could not append to the log", e);
+            } finally {
+                writeLock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Compact every sealed segment whose share of garbage reaches the threshold.
+     *
+     * Segments are processed oldest first. Live PUT records are copied to the
+     * active segment and the index is repointed; tombstones are copied only while
+     * older segments exist that may still hold the deleted value. Once the copies
+     * are flushed, the old segment file is deleted.
+     *
+     * @return The number of segments that were compacted
+     * @throws IOException If reading, appending or deleting fails
+     */
+    int compact() throws IOException {
+        int compacted = 0;
+        for (LogSegment segment : new ArrayList<>(segments.values())) {
+            if (segment == active || !segment.isSealed() || !segments.containsKey(segment.id())
+                    || segment.garbage() < segment.size() * compactionThreshold) {
+                continue;
+            }
+            List<LogSegment.Entry> entries = new ArrayList<>();
+            segment.scan(entries::add, false);
+            for (LogSegment.Entry entry : entries) {
+                writeLock.lock();
+                try {
+                    relocate(segment, entry);
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+            writeLock.lock();
+            try {
+                active.force();
+                segments.remove(segment.id());
+                segment.delete();
+            } finally {
+                writeLock.unlock();
+            }
+            log.debug("Compacted segment {} ({} of {} bytes were garbage)", segment.id(), segment.garbage(), segment.size());
+            compacted++;
+        }
+        return compacted;
+    }
+
+    /**
+     * Copy one record out of a segment being compacted if it is still needed.
+     * Caller must hold the write lock.
+     *
+     * @param segment The segment being compacted
+     * @param entry The record to check
+     * @throws IOException If the append fails
+     */
+    private void relocate(LogSegment segment, LogSegment.Entry entry) throws IOException {
+        if (entry.type() == LogSegment.PUT) {
+            Location current = index.get(entry.key());
+            if (current != null && current.segment() == segment && current.offset() == entry.offset()) {
+                index.put(entry.key(), append(LogSegment.PUT, entry.key(), entry.lastchange(), entry.value(),
+                        entry.expiresAt(), entry.version()));
+            }
+        } else if (entry.type() == LogSegment.DELETE && !index.containsKey(entry.key())
+                && segments.firstKey() < segment.id()) {
+            Location tombstone = append(LogSegment.DELETE, entry.key(), "", new byte[0], null, 0);
+            tombstone.segment().addGarbage(tombstone.length());
+        }
+    }
+
+    /**
+     * Stop background work, flush the active segment and close all files.
+     */
+    @PreDestroy
+    public void close() {
+        if (maintenance.isShutdown()) {
+            return;
+        }
+        maintenance.shutdownNow();
+        writeLock.lock();
+        try {
+            active.force();
+            for (LogSegment segment : segments.values()) {
+                segment.close();
+            }
+        } catch (IOException e) {
+            log.error("Could not close the log cleanly: {}", e.getMessage(), e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
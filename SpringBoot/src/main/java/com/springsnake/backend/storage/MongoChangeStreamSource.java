@@ -0,0 +1,264 @@
+package com.springsnake.backend.storage;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.FullDocumentBeforeChange;
+import com.springsnake.backend.values;
+import com.springsnake.backend.utils.ChangeFeed;
+import com.springsnake.backend.utils.KeyFilter;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * MongoDB change stream as the source of the change feed
+ *
+ * With springsnake.feed.source=mongo, ChangeFeed ignores the writes of
+ * ValueService and publishes the changes reported by a change stream on the
+ * values collection instead. The feed then also carries the writes of other
+ * application instances sharing the database and the deletes of the TTL
+ * index. Change streams need a replica set or a sharded cluster.
+ *
+ * Only key, version and lastchange are projected from the changed documents,
+ * so large values are never transferred. A deleted document only has its _id,
+ * so its key comes from the pre-image of the document, which MongoDB 6.0 and
+ * later records for collections with changeStreamPreAndPostImages enabled.
+ * This component enables it at startup; where that isn't possible, a delete
+ * is published as a "reset" event and clients resynchronize.
+ *
+ * The stream is resumed from the last seen resume token after errors. If the
+ * token has expired from the oplog, or the collection is dropped or renamed,
+ * a "reset" event is published and the stream starts over from the present.
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Component
+@Profile("!memory & !local")
+@ConditionalOnProperty(prefix = "springsnake.feed", name = "source", havingValue = "mongo")
+@Slf4j
+public class MongoChangeStreamSource {
+
+    /**
+     * Longest wait between two retries of a failed change stream, in milliseconds
+     */
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    /**
+     * MongoDB access to the values collection
+     */
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Feed receiving the changes
+     */
+    private final ChangeFeed feed;
+
+    /**
+     * Bloom filter of existing keys, which learns keys created by other instances
+     */
+    private final KeyFilter keyFilter;
+
+    /**
+     * Thread reading the change stream, once started
+     */
+    private volatile Thread reader;
+
+    /**
+     * Set when the application shuts down
+     */
+    private volatile boolean closing;
+
+    /**
+     * Resume token of the last published change, or null to start from the present
+     */
+    private BsonDocument resumeToken;
+
+    /**
+     * Constructor with the MongoDB template, the feed to publish to and the key filter.
+     *
+     * @param mongoTemplate The MongoDB template of the application
+     * @param feed The change feed
+     * @param keyFilter The Bloom filter of existing keys
+     */
+    public MongoChangeStreamSource(MongoTemplate mongoTemplate, ChangeFeed feed, KeyFilter keyFilter) {
+        this.mongoTemplate = mongoTemplate;
+        this.feed = feed;
+        this.keyFilter = keyFilter;
+    }
+
+    /**
+     * Start reading the change stream once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread worker = new Thread(this::run, "mongo-change-stream");
+        worker.setDaemon(true);
+        reader = worker;
+        worker.start();
+    }
+
+    /**
+     * Enable pre-images, then read the change stream until shutdown, retrying with backoff.
+     */
+    private void run() {
+        enablePreImages();
+        long backoff = 100;
+        while (!closing) {
+            try {
+                watch();
+                backoff = 100;
+            } catch (MongoException e) {
+                if (closing) {
+                    return;
+                }
+                log.warn("MongoDB change stream failed, retrying in {} ms: {}", backoff, e.getMessage());
+                if (e.getCode() == 286 || e.getCode() == 280) {
+                    // ChangeStreamHistoryLost or ChangeStreamFatalError: the token cannot be resumed
+                    resumeToken = null;
+                    feed.publish("reset", null, null, null);
+                }
+                try {
+                    TimeUnit.MILLISECONDS.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Ask MongoDB to record pre-images of the values collection, so deletes carry their key.
+     */
+    private void enablePreImages() {
+        try {
+            mongoTemplate.executeCommand(new Document("collMod", mongoTemplate.getCollectionName(values.class))
+                    .append("changeStreamPreAndPostImages", new Document("enabled", true)));
+        } catch (RuntimeException e) {
+            log.warn("Pre-images cannot be enabled, deletes are published as reset events: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Open the change stream and publish its events until it is closed or fails.
+     */
+    private void watch() {
+        // The _id of each event is its resume token and is kept by the projection
+        ChangeStreamIterable<Document> stream = mongoTemplate.getCollection(mongoTemplate.getCollectionName(values.class))
+                .watch(List.of(Aggregates.project(Projections.include("operationType",
+                        "fullDocument.key", "fullDocument.version", "fullDocument.lastchange",
+                        "fullDocumentBeforeChange.key"))))
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .fullDocumentBeforeChange(FullDocumentBeforeChange.WHEN_AVAILABLE)
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        if (resumeToken != null) {
+            stream = stream.resumeAfter(resumeToken);
+        }
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+            while (!closing) {
+                ChangeStreamDocument<Document> change = cursor.tryNext();
+                if (change != null && !publish(change)) {
+                    // An invalidated stream cannot be resumed, so start over from the present
+                    resumeToken = null;
+                    return;
+                }
+                if (cursor.getResumeToken() != null) {
+                    resumeToken = cursor.getResumeToken();
+                }
+            }
+        }
+    }
+
+    /**
+     * Translate one change into a feed event.
+     *
+     * @param change The change stream document
+     * @return false if the change ends the stream, e.g. because the collection was dropped
+     */
+    private boolean publish(ChangeStreamDocument<Document> change) {
+        Document document = change.getFullDocument();
+        switch (change.getOperationTypeString()) {
+            case "insert" -> {
+                keyFilter.add(document.getString("key"));
+                feed.publish("put", document.getString("key"), version(document), lastchange(document));
+            }
+            case "update", "replace" -> {
+                // The document may be deleted again before the lookup
+                if (document != null) {
+                    // Another instance may have replaced an expired value, which recreates its key
+                    keyFilter.add(document.getString("key"));
+                    feed.publish("update", document.getString("key"), version(document), lastchange(document));
+                }
+            }
+            case "delete" -> {
+                Document before = change.getFullDocumentBeforeChange();
+                if (before != null && before.getString("key") != null) {
+                    feed.publish("delete", before.getString("key"), null, null);
+                } else {
+                    feed.publish("reset", null, null, null);
+                }
+            }
+            case "drop", "rename", "dropDatabase", "invalidate" -> {
+                feed.publish("reset", null, null, null);
+                return false;
+            }
+            default -> log.debug("Ignoring change stream event '{}'", change.getOperationTypeString());
+        }
+        return true;
+    }
+
+    /**
+     * Read the version of a changed document.
+     *
+     * @param document The projected document
+     * @return The version, or null if it is missing
+     */
+    private static Long version(Document document) {
+        Object version = document.get("version");
+        return version instanceof Number number ? number.longValue() : null;
+    }
+
+    /**
+     * Read the last change of a changed document.
+     *
+     * @param document The projected document
+     * @return The last change, or null if it is missing
+     */
+    private static Instant lastchange(Document document) {
+        Object lastchange = document.get("lastchange");
+        return lastchange instanceof Date date ? date.toInstant() : null;
+    }
+
+    /**
+     * Stop reading the change stream.
+     */
+    @PreDestroy
+    public void close() {
+        closing = true;
+        Thread worker = reader;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+}
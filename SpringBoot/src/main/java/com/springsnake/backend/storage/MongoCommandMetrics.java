@@ -0,0 +1,86 @@
+package com.springsnake.backend.storage;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * MongoDB command listener recording how many documents each command returns
+ *
+ * Spring Boot already times every command of the driver (mongodb.driver.commands,
+ * tagged by command, collection and status). This listener adds the number of
+ * documents per command to it, as springsnake.mongo.documents tagged by command:
+ * the size of the returned cursor batch for reads (find, aggregate, getMore) and
+ * the affected count for writes (insert, update, delete).
+ *
+ * It registers itself through a MongoClientSettingsBuilderCustomizer and is only
+ * active together with the MongoDB storage engine.
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Component
+@Profile("!memory & !local")
+public class MongoCommandMetrics implements CommandListener, MongoClientSettingsBuilderCustomizer {
+
+    /**
+     * Registry the per-command summaries are registered with
+     */
+    private final MeterRegistry registry;
+
+    /**
+     * Constructor.
+     *
+     * @param registry The Micrometer registry
+     */
+    public MongoCommandMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void customize(MongoClientSettings.Builder builder) {
+        builder.addCommandListener(this);
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        long documents = documents(event.getResponse());
+        if (documents >= 0) {
+            DistributionSummary.builder("springsnake.mongo.documents")
+                    .description("Documents returned or affected per MongoDB command")
+                    .baseUnit("documents")
+                    .tag("command", event.getCommandName())
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(documents);
+        }
+    }
+
+    /**
+     * Extract the number of returned or affected documents from a command response.
+     *
+     * @param response The server response
+     * @return The number of documents, or -1 if the command has no such notion
+     */
+    private static long documents(BsonDocument response) {
+        BsonDocument cursor = response.getDocument("cursor", null);
+        if (cursor != null) {
+            BsonArray batch = cursor.containsKey("firstBatch") ? cursor.getArray("firstBatch") : cursor.getArray("nextBatch", null);
+            return batch == null ? -1 : batch.size();
+        }
+        if (response.isNumber("n")) {
+            return response.getNumber("n").longValue();
+        }
+        return -1;
+    }
+}
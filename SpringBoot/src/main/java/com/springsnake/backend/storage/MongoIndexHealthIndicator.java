@@ -0,0 +1,40 @@
+package com.springsnake.backend.storage;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * Health of the MongoDB schema
+ *
+ * Reports DOWN while the unique key index is missing, either because
+ * MongoStorageEngine has not created it yet or because its creation failed,
+ * for instance on a collection that already holds duplicate keys. Inserts
+ * stay correct for single writers in the meantime, but concurrent inserts of
+ * one key are not detected, so this must not go unnoticed.
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Component
+@Profile("!memory & !local")
+@AllArgsConstructor
+public class MongoIndexHealthIndicator implements HealthIndicator {
+
+    /**
+     * The engine that creates the indexes
+     */
+    private final MongoStorageEngine engine;
+
+    @Override
+    public Health health() {
+        if (engine.isKeyIndexReady()) {
+            return Health.up().build();
+        }
+        return Health.down().withDetail("keyIndex", "missing, inserts check for existing keys").build();
+    }
+}
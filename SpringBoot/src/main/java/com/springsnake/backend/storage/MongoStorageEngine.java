@@ -0,0 +1,709 @@
+package com.springsnake.backend.storage;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.domain.Range.Bound;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoServerException;
+import com.mongodb.bulk.BulkWriteError;
+import com.springsnake.backend.values;
+import com.springsnake.backend.utils.LegacyTimestampConverter;
+import com.springsnake.backend.utils.ValueRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * MongoDB implementation of the storage engine SPI
+ *
+ * This is the default storage engine of Spring Snake. Simple operations are
+ * delegated to ValueRepository; operations that need cursors, projections or
+ * bulk writes use MongoTemplate directly. Every single-key write is one atomic
+ * MongoDB command whose result (duplicate key error, matched or deleted count)
+ * tells whether the key existed.
+ *
+ * The engine also owns its schema: once the application is ready it ensures
+ * the indexes declared on the values entity, in particular the unique key index
+ * that insert relies on to detect conflicts. Index creation runs in the
+ * background, followed by the conversion of lastchange fields that older
+ * versions stored as text and the versioning of documents that have no version
+ * yet, and failures are logged instead of aborting startup,
+ * so the API and its health checks stay available while the database is unreachable.
+ * Until the unique key index exists, which is retried every minute, insert
+ * checks that the key is free before writing and MongoIndexHealthIndicator
+ * reports the service DOWN. The check is not atomic with the insert, so
+ * concurrent inserts of one key may still both succeed in that window; a
+ * collection that already holds duplicate keys keeps the index from being
+ * built until they are removed. The conversion of lastchange fields and
+ * the versioning of documents are retried with the indexes until they
+ * succeed; until the versioning has succeeded, every update first stores
+ * version 1 in a document of its keys that has none, so the $inc of the
+ * version goes from 1 to 2 and the change gets a new ETag.
+ *
+ * Expired values are deleted by the MongoDB TTL monitor, which only runs about
+ * once a minute. Until then every query excludes them with a filter on
+ * expiresAt, and insert overwrites an expired document that still holds the key.
+ *
+ * Every update increments the version field with $inc in the same command, and
+ * a conditional update is a findAndModify whose filter includes the expected
+ * version, so the compare and the write happen atomically on the server.
+ * Partial changes (ValueChange) are translated to $set, $unset, $inc and $push
+ * on paths inside the value field and applied with findAndModify as well.
+ *
+ * Large values are stored compressed by ValueCompressor and decompressed by
+ * every read. Update operators cannot reach into a compressed value, so
+ * partial changes and projections of such values are applied in the
+ * application instead, with a compare-and-set on the version for changes.
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Component
+@Profile("!memory & !local")
+@RequiredArgsConstructor
+@Slf4j
+public class MongoStorageEngine implements StorageEngine {
+
+    /**
+     * Repository interface for simple database operations on values
+     */
+    private final ValueRepository valueRepo;
+
+    /**
+     * Template used for cursors, projections, bulk writes and index management
+     */
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Codec storing large values compressed
+     */
+    private final ValueCompressor compressor;
+
+    /**
+     * Server error codes of an update operator that doesn't fit the document:
+     * BadValue ($push to a non-array), TypeMismatch ($inc of a non-number) and
+     * PathNotViable (a field path through a non-object)
+     */
+    private static final Set<Integer> SHAPE_CONFLICT_CODES = Set.of(2, 14, 28);
+
+    /**
+     * Number of legacy documents converted per bulk write during the lastchange migration
+     */
+    private static final int MIGRATION_BATCH_SIZE = 1000;
+
+    /**
+     * Wait between two attempts to create the indexes, in milliseconds
+     */
+    private static final long INDEX_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Whether the unique key index is known to exist
+     */
+    private volatile boolean keyIndexReady;
+
+    /**
+     * Whether every document written before versions existed has been given version 1
+     */
+    private volatile boolean versionsMigrated;
+
+    /**
+     * Start index creation and schema migration once the application is ready to serve requests.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread worker = new Thread(() -> {
+            boolean indexed = ensureIndexes();
+            boolean converted = migrateLastchange();
+            boolean versioned = migrateVersions();
+            while (!indexed || !converted || !versioned) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(INDEX_RETRY_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                indexed = indexed || ensureIndexes();
+                converted = converted || migrateLastchange();
+                versioned = versioned || migrateVersions();
+            }
+        }, "mongo-index-init");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Ensure every index declared on the values entity exists.
+     *
+     * Creating an index that already exists is a no-op in MongoDB, so this is
+     * safe to run on every startup.
+     *
+     * @return true if the indexes are in place
+     */
+    public boolean ensureIndexes() {
+        IndexOperations indexOps = mongoTemplate.indexOps(values.class);
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(
+                mongoTemplate.getConverter().getMappingContext());
+        try {
+            resolver.resolveIndexFor(values.class).forEach(indexOps::ensureIndex);
+            log.info("MongoDB indexes for collection '{}' are in place", mongoTemplate.getCollectionName(values.class));
+            keyIndexReady = true;
+        } catch (DataAccessException e) {
+            log.error("Could not create MongoDB indexes (duplicate keys or database unavailable), "
+                    + "inserts check for existing keys until they are in place: {}", e.getMessage());
+        }
+        return keyIndexReady;
+    }
+
+    /**
+     * @return true once the unique key index that insert relies on exists
+     */
+    public boolean isKeyIndexReady() {
+        return keyIndexReady;
+    }
+
+    /**
+     * Convert lastchange fields written as text by older versions into dates.
+     *
+     * Legacy documents stay readable through LegacyTimestampConverter, but only
+     * dates are found by delta queries. Documents are converted in unordered
+     * bulk writes; a document changed concurrently already holds a date and is
+     * no longer matched by the conversion filter. A text that is not a
+     * timestamp can never be converted, so it is logged and left as is
+     * instead of failing the whole conversion.
+     *
+     * @return true if the conversion ran to the end, false if it has to be retried
+     */
+    public boolean migrateLastchange() {
+        Query legacy = new Query(Criteria.where("lastchange").type(JsonSchemaObject.Type.STRING));
+        legacy.fields().include("lastchange");
+        String collection = mongoTemplate.getCollectionName(values.class);
+        try (Stream<Document> documents = mongoTemplate.stream(legacy.cursorBatchSize(MIGRATION_BATCH_SIZE),
+                Document.class, collection)) {
+            long migrated = 0;
+            BulkOperations bulk = null;
+            int pending = 0;
+            for (Document document : (Iterable<Document>) documents::iterator) {
+                String text = document.getString("lastchange");
+                Instant lastchange;
+                try {
+                    lastchange = LegacyTimestampConverter.parse(text);
+                } catch (DateTimeParseException e) {
+                    log.warn("Left the lastchange '{}' of document {} as text: {}", text, document.get("_id"),
+                            e.getMessage());
+                    continue;
+                }
+                if (bulk == null) {
+                    bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, collection);
+                }
+                bulk.updateOne(Query.query(Criteria.where("_id").is(document.get("_id"))
+                                .and("lastchange").is(text)),
+                        new Update().set("lastchange", lastchange));
+                if (++pending == MIGRATION_BATCH_SIZE) {
+                    migrated += bulk.execute().getModifiedCount();
+                    bulk = null;
+                    pending = 0;
+                }
+            }
+            if (bulk != null) {
+                migrated += bulk.execute().getModifiedCount();
+            }
+            if (migrated > 0) {
+                log.info("Converted the lastchange field of {} documents to dates", migrated);
+            }
+            return true;
+        } catch (DataAccessException e) {
+            log.error("Could not convert legacy lastchange fields, retrying: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Give version 1 to the documents written before values had a version.
+     *
+     * Such documents are already read as version 1, but conditional updates
+     * only match a version that is stored. A document updated concurrently
+     * already has a version and is no longer matched by the filter.
+     *
+     * @return true if every document has a version
+     */
+    public boolean migrateVersions() {
+        try {
+            long migrated = setMissingVersions(new Criteria());
+            if (migrated > 0) {
+                log.info("Set the version of {} documents", migrated);
+            }
+            versionsMigrated = true;
+        } catch (DataAccessException e) {
+            log.error("Could not set the version of legacy documents, retrying with every update: {}",
+                    e.getMessage());
+        }
+        return versionsMigrated;
+    }
+
+    /**
+     * Give version 1 to the matching documents that have no version.
+     *
+     * @param criteria The documents to version
+     * @return The number of documents that got a version
+     */
+    private long setMissingVersions(Criteria criteria) {
+        return mongoTemplate.updateMulti(new Query(criteria.and("version").exists(false)),
+                new Update().set("version", 1L), values.class).getModifiedCount();
+    }
+
+    /**
+     * Version the document of a key before it is updated, until every document has a version.
+     *
+     * Otherwise the $inc of the update would start from a missing version and
+     * store 1, the version the document was already read with.
+     *
+     * @param key The key about to be updated
+     */
+    private void versionBeforeUpdate(String key) {
+        if (!versionsMigrated) {
+            setMissingVersions(Criteria.where("key").is(key));
+        }
+    }
+
+    /**
+     * Build the criteria matching values that have not expired.
+     *
+     * @param now The current time
+     * @return Criteria matching documents without expiry date or with one after now
+     */
+    private static Criteria live(Instant now) {
+        return new Criteria().orOperator(Criteria.where("expiresAt").is(null), Criteria.where("expiresAt").gt(now));
+    }
+
+    /**
+     * Build the query for the live value of a key.
+     *
+     * @param key The key to match
+     * @return Query matching the key unless its value has expired
+     */
+    private static Query liveKey(String key) {
+        return Query.query(Criteria.where("key").is(key).andOperator(live(Instant.now())));
+    }
+
+    @Override
+    public values findByKey(String key) {
+        values value = valueRepo.findByKey(key);
+        return value == null || value.isExpiredAt(Instant.now()) ? null : compressor.decompress(value);
+    }
+
+    @Override
+    public values findByKey(String key, FieldProjection projection) {
+        // Read only the selected subtrees of the value off disk and over the wire
+        Query query = liveKey(key);
+        query.fields().include("key", "lastchange", "expiresAt", "version", "codec");
+        projection.fieldsOf("value").forEach(query.fields()::include);
+        values value = mongoTemplate.findOne(query, values.class);
+        if (value != null && value.getCodec() != null) {
+            // A compressed value can only be read whole
+            values whole = findByKey(key);
+            return whole == null ? null : projection.project(whole);
+        }
+        if (value != null && !(value.getValue() instanceof Map)) {
+            // None of the paths exists, or the value is not an object
+            value.setValue(new LinkedHashMap<String, Object>());
+        }
+        return value;
+    }
+
+    @Override
+    public Map<String, values> findAllByKey(Collection<String> keys) {
+        // Fetch only the fields needed to build a ValueDTO
+        Query query = new Query(Criteria.where("key").in(keys).andOperator(live(Instant.now())));
+        query.fields().include("key", "value", "lastchange", "expiresAt", "version", "codec", "originalSize");
+        Map<String, values> found = new HashMap<>();
+        for (values value : mongoTemplate.find(query, values.class)) {
+            found.put(value.getKey(), compressor.decompress(value));
+        }
+        return found;
+    }
+
+    @Override
+    public List<values> findAll() {
+        List<values> found = mongoTemplate.find(new Query(live(Instant.now())), values.class);
+        found.forEach(compressor::decompress);
+        return found;
+    }
+
+    @Override
+    public Stream<values> streamAll(int batchSize) {
+        return mongoTemplate.stream(new Query(live(Instant.now())).cursorBatchSize(batchSize), values.class)
+                .map(compressor::decompress);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Only the key field is fetched, so large values are never transferred.
+     */
+    @Override
+    public Stream<String> streamKeys(int batchSize) {
+        Query query = new Query(live(Instant.now())).cursorBatchSize(batchSize);
+        query.fields().include("key").exclude("_id");
+        return mongoTemplate.stream(query, values.class).map(values::getKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The query is a range scan on the compound (lastchange, key) index, which
+     * also provides the sort order.
+     */
+    @Override
+    public Stream<values> streamChangedSince(Instant since, int batchSize) {
+        Query query = new Query(Criteria.where("lastchange").gte(since).andOperator(live(Instant.now())))
+                .with(Sort.by(Sort.Direction.ASC, "lastchange", "key"))
+                .cursorBatchSize(batchSize);
+        return mongoTemplate.stream(query, values.class).map(compressor::decompress);
+    }
+
+    @Override
+    public List<values> scan(Range<String> range, int limit) {
+        Criteria key = Criteria.where("key");
+        Bound<String> lower = range.getLowerBound();
+        if (lower.isBounded()) {
+            String from = lower.getValue().orElseThrow();
+            key = lower.isInclusive() ? key.gte(from) : key.gt(from);
+        }
+        Bound<String> upper = range.getUpperBound();
+        if (upper.isBounded()) {
+            String to = upper.getValue().orElseThrow();
+            key = upper.isInclusive() ? key.lte(to) : key.lt(to);
+        }
+        Query query = new Query(key.andOperator(live(Instant.now())))
+                .with(Sort.by(Sort.Direction.ASC, "key"))
+                .limit(limit);
+        List<values> found = mongoTemplate.find(query, values.class);
+        found.forEach(compressor::decompress);
+        return found;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Without the unique key index MongoDB would store a second document for
+     * the key, so the key is looked up first until the index exists.
+     */
+    @Override
+    public boolean insert(values value) {
+        if (!keyIndexReady && mongoTemplate.exists(Query.query(Criteria.where("key").is(value.getKey())),
+                values.class)) {
+            return replaceExpired(value);
+        }
+        try {
+            valueRepo.insert(stored(value));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return replaceExpired(value);
+        }
+    }
+
+    /**
+     * Overwrite the document of a key whose value has expired but not been removed yet.
+     *
+     * @param value The values entity to store
+     * @return true if an expired document was overwritten, false if the key holds a live value
+     */
+    private boolean replaceExpired(values value) {
+        Query query = Query.query(Criteria.where("key").is(value.getKey()).and("expiresAt").lte(Instant.now()));
+        Update update = valueUpdate(value.getValue())
+                .set("lastchange", value.getLastchange())
+                .set("expiresAt", value.getExpiresAt())
+                .set("version", value.getVersion());
+        return mongoTemplate.updateFirst(query, update, values.class).getMatchedCount() > 0;
+    }
+
+    /**
+     * Insert a batch of values with two round trips.
+     *
+     * One $in lookup returns only the keys of the batch that already exist,
+     * then one unordered bulk insert stores the rest. Keys inserted concurrently
+     * by another writer between those two steps are caught by the unique key
+     * index and left out of the result.
+     */
+    @Override
+    public Set<String> insertAll(List<values> batch) {
+        // Find which keys of the batch already exist, fetching only the key and expiry fields
+        Instant now = Instant.now();
+        Query query = new Query(Criteria.where("key").in(batch.stream().map(values::getKey).toList()));
+        query.fields().include("key", "expiresAt");
+        Map<String, values> existing = mongoTemplate.find(query, values.class).stream()
+                .collect(Collectors.toMap(values::getKey, value -> value));
+        List<values> toInsert = batch.stream().filter(value -> !existing.containsKey(value.getKey()))
+                .map(this::stored).toList();
+
+        // Overwrite keys whose value has expired; these are rare, so one at a time
+        Set<String> inserted = new HashSet<>();
+        for (values value : batch) {
+            values current = existing.get(value.getKey());
+            if (current != null && current.isExpiredAt(now) && replaceExpired(value)) {
+                inserted.add(value.getKey());
+            }
+        }
+        if (toInsert.isEmpty()) {
+            return inserted;
+        }
+
+        // Insert the rest, tolerating keys created concurrently in the meantime
+        Set<Integer> duplicates = new HashSet<>();
+        try {
+            mongoTemplate.bulkOps(BulkMode.UNORDERED, values.class).insert(toInsert).execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                    throw e;
+                }
+                duplicates.add(error.getIndex());
+            }
+        }
+        for (int i = 0; i < toInsert.size(); i++) {
+            if (!duplicates.contains(i)) {
+                inserted.add(toInsert.get(i).getKey());
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public boolean update(String key, Object value, Instant lastchange, Instant expiresAt) {
+        versionBeforeUpdate(key);
+        return mongoTemplate.updateFirst(liveKey(key), liveUpdate(value, lastchange, expiresAt), values.class)
+                .getMatchedCount() > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * One findAndModify returning only the new version of the document,
+     * preceded by the versioning of the document if version 1 is expected.
+     */
+    @Override
+    public Long updateIfVersion(String key, long expectedVersion, Object value, Instant lastchange, Instant expiresAt) {
+        if (expectedVersion == 1) {
+            // The client may hold the version of a document without one, such as one written by an older instance
+            setMissingVersions(Criteria.where("key").is(key));
+        }
+        Query query = liveKey(key).addCriteria(Criteria.where("version").is(expectedVersion));
+        query.fields().include("version");
+        values updated = mongoTemplate.findAndModify(query, liveUpdate(value, lastchange, expiresAt),
+                FindAndModifyOptions.options().returnNew(true), values.class);
+        return updated == null ? null : updated.getVersion();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * One findAndModify returning only the new version and the result path.
+     */
+    @Override
+    public values applyChange(String key, ValueChange change, Instant lastchange) {
+        versionBeforeUpdate(key);
+        Update update = new Update().set("lastchange", lastchange).inc("version", 1L);
+        for (ValueChange.Operation operation : change.operations()) {
+            String field = valueField(operation.path());
+            switch (operation.kind()) {
+                case SET -> update.set(field, operation.argument());
+                case UNSET -> update.unset(field);
+                case INC -> update.inc(field, (Number) operation.argument());
+                case PUSH -> update.push(field).value(operation.argument());
+            }
+        }
+        Query query = liveKey(key).addCriteria(Criteria.where("codec").exists(false));
+        query.fields().include("version");
+        if (change.resultPath() != null) {
+            query.fields().include(valueField(change.resultPath()));
+        }
+        values changed;
+        try {
+            changed = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+                    values.class);
+        } catch (DataAccessException e) {
+            if (isShapeConflict(e)) {
+                throw new DataIntegrityViolationException("The change does not fit the stored value", e);
+            }
+            throw e;
+        }
+        // The key is missing or its value is compressed
+        return changed != null ? changed : applyChangeByVersion(key, change, lastchange);
+    }
+
+    /**
+     * Apply a partial change in the application, as a compare-and-set on the version.
+     *
+     * Used for compressed values, which update operators cannot reach into.
+     * The value is read, changed and written back only if no other writer has
+     * changed it in the meantime; otherwise the whole cycle is repeated.
+     *
+     * @param key The key to change
+     * @param change The operations to apply to the value
+     * @param lastchange The timestamp of this change
+     * @return The changed values entity, or null if the key doesn't exist
+     * @throws DataIntegrityViolationException If the change doesn't fit the stored value
+     */
+    private values applyChangeByVersion(String key, ValueChange change, Instant lastchange) {
+        while (true) {
+            values current = findByKey(key);
+            if (current == null) {
+                return null;
+            }
+            Object value = change.applyTo(current.getValue());
+            Long version = updateIfVersion(key, current.getVersion(), value, lastchange, null);
+            if (version != null) {
+                current.setValue(value);
+                current.setLastchange(lastchange);
+                current.setVersion(version);
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Build the document field path of a path inside the value.
+     *
+     * @param path The member names inside the value
+     * @return e.g. "value.settings.theme", or "value" for the empty path
+     */
+    private static String valueField(List<String> path) {
+        return path.isEmpty() ? "value" : "value." + String.join(".", path);
+    }
+
+    /**
+     * Check whether a failed update was rejected because an operator didn't fit the document.
+     *
+     * @param e The translated exception
+     * @return true if the server reported one of the SHAPE_CONFLICT_CODES
+     */
+    private static boolean isShapeConflict(DataAccessException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoServerException server) {
+                return SHAPE_CONFLICT_CODES.contains(server.getCode());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Build the update of a value, keeping the current expiry unless a new one is given.
+     *
+     * @param value The new value
+     * @param lastchange The timestamp of the change
+     * @param expiresAt The new expiry date, or null
+     * @return The $set update, which also increments the version
+     */
+    private Update liveUpdate(Object value, Instant lastchange, Instant expiresAt) {
+        Update update = valueUpdate(value).set("lastchange", lastchange).inc("version", 1L);
+        if (expiresAt != null) {
+            update.set("expiresAt", expiresAt);
+        }
+        return update;
+    }
+
+    /**
+     * Build the update setting a value in its stored form.
+     *
+     * @param value The new value
+     * @return The $set of the value field, with codec and original size if it is compressed
+     */
+    private Update valueUpdate(Object value) {
+        ValueCompressor.Compressed compressed = compressor.compress(value);
+        if (compressed == null) {
+            return new Update().set("value", value).unset("codec").unset("originalSize");
+        }
+        return new Update().set("value", compressed.data())
+                .set("codec", compressed.codec())
+                .set("originalSize", compressed.originalSize());
+    }
+
+    /**
+     * Copy a values entity into its stored form for an insert.
+     *
+     * @param value The values entity with the original value
+     * @return The same entity if the value is stored as is, otherwise a copy with the compressed value
+     */
+    private values stored(values value) {
+        ValueCompressor.Compressed compressed = compressor.compress(value.getValue());
+        if (compressed == null) {
+            return value;
+        }
+        values stored = new values(value.getKey(), compressed.data());
+        stored.setLastchange(value.getLastchange());
+        stored.setExpiresAt(value.getExpiresAt());
+        stored.setVersion(value.getVersion());
+        stored.setCodec(compressed.codec());
+        stored.setOriginalSize(compressed.originalSize());
+        return stored;
+    }
+
+    @Override
+    public long updateAll(List<values> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        if (!versionsMigrated) {
+            setMissingVersions(Criteria.where("key").in(batch.stream().map(values::getKey).toList()));
+        }
+        // One unordered bulk write with an updateOne per key, without upsert
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, values.class);
+        for (values value : batch) {
+            bulk.updateOne(liveKey(value.getKey()),
+                    liveUpdate(value.getValue(), value.getLastchange(), value.getExpiresAt()));
+        }
+        return bulk.execute().getMatchedCount();
+    }
+
+    @Override
+    public boolean delete(String key) {
+        return mongoTemplate.remove(liveKey(key), values.class).getDeletedCount() > 0;
+    }
+
+    @Override
+    public void deleteAll() {
+        valueRepo.deleteAll();
+    }
+
+    /**
+     * A MongoDB database may be shared by several application instances.
+     */
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+}
@@ -0,0 +1,226 @@
+package com.springsnake.backend.storage;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.springframework.data.domain.Range;
+
+import com.springsnake.backend.values;
+
+/**
+ * Storage engine SPI for Spring Snake values
+ *
+ * This interface is the only way ValueService and ValueDAO reach stored data,
+ * so the key-value store can run on different backends without touching the
+ * business logic. Exactly one implementation is active, selected by Spring profile:
+ *
+ * - MongoStorageEngine (default): MongoDB through ValueRepository and MongoTemplate
+ * - InMemoryStorageEngine ("memory" profile): striped concurrent hash maps, no persistence
+ * - LogStructuredStorageEngine ("local" profile): append-only segment files on the local disk
+ *
+ * Every single-key operation must be atomic on its own. Implementations report
+ * conflicts and missing keys through their return values instead of exceptions,
+ * so callers never need a read before a write.
+ *
+ * Every value carries a version that every update increments, so a client
+ * can detect changes and make conditional updates. Insert stores the version
+ * the new entity was created with (values.firstVersion()), never 1, so a key
+ * created again never repeats a version of its previous lifetime.
+ *
+ * Values may carry an expiry date. An expired value counts as absent for every
+ * operation, even before the engine has physically removed it: reads skip it,
+ * insert may replace it, and update and delete report it as missing.
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+public interface StorageEngine {
+
+    /**
+     * Order of change streams: by change time, then by key
+     */
+    Comparator<values> CHANGE_ORDER = Comparator.comparing(values::getLastchange).thenComparing(values::getKey);
+
+    /**
+     * Find the value stored under a key.
+     *
+     * @param key The key to search for
+     * @return The values entity, or null if the key doesn't exist
+     */
+    values findByKey(String key);
+
+    /**
+     * Find the selected parts of the value stored under a key.
+     *
+     * Engines that can read parts of a value, such as MongoDB with a field
+     * projection, read and transfer only the selected parts.
+     *
+     * @param key The key to search for
+     * @param projection The parts of the value to return
+     * @return The values entity with the projected value, or null if the key doesn't exist
+     */
+    values findByKey(String key, FieldProjection projection);
+
+    /**
+     * Find the values stored under several keys.
+     *
+     * @param keys The keys to search for
+     * @return Map of the keys that exist to their values entity
+     */
+    Map<String, values> findAllByKey(Collection<String> keys);
+
+    /**
+     * Find all stored values.
+     *
+     * @return List of every values entity
+     */
+    List<values> findAll();
+
+    /**
+     * Stream all stored values without loading them all into memory.
+     *
+     * The returned stream may hold resources such as a database cursor
+     * and must be closed by the caller.
+     *
+     * @param batchSize Number of values fetched per round trip, where applicable
+     * @return Lazily evaluated stream of every values entity
+     */
+    Stream<values> streamAll(int batchSize);
+
+    /**
+     * Stream the keys of all stored values, without reading the values.
+     *
+     * The returned stream may hold resources such as a database cursor
+     * and must be closed by the caller.
+     *
+     * @param batchSize Number of keys fetched per round trip, where applicable
+     * @return Lazily evaluated stream of every live key
+     */
+    Stream<String> streamKeys(int batchSize);
+
+    /**
+     * Stream the values changed at or after a point in time, oldest change first.
+     *
+     * Values changed at the same time are ordered by key. The returned stream
+     * may hold resources such as a database cursor and must be closed by the caller.
+     *
+     * @param since The earliest change time to include
+     * @param batchSize Number of values fetched per round trip, where applicable
+     * @return Lazily evaluated stream of the changed values in change order
+     */
+    Stream<values> streamChangedSince(Instant since, int batchSize);
+
+    /**
+     * Find the values whose key lies in a range, in ascending key order.
+     *
+     * @param range The key range, with inclusive, exclusive or unbounded ends
+     * @param limit The maximum number of values to return
+     * @return The matching values ordered by key
+     */
+    List<values> scan(Range<String> range, int limit);
+
+    /**
+     * Insert a value if its key doesn't exist yet.
+     *
+     * @param value The values entity to store
+     * @return true if the value was inserted, false if the key already exists
+     */
+    boolean insert(values value);
+
+    /**
+     * Insert a batch of values, skipping keys that already exist.
+     *
+     * The batch must not contain the same key twice. The operation is not
+     * atomic as a whole, but each key is either inserted or reported absent
+     * from the result.
+     *
+     * @param batch The values entities to store
+     * @return The keys that were actually inserted
+     */
+    Set<String> insertAll(List<values> batch);
+
+    /**
+     * Replace the value stored under an existing key.
+     *
+     * @param key The key to update
+     * @param value The new value
+     * @param lastchange The timestamp of this change
+     * @param expiresAt The new expiry date, or null to keep the current one
+     * @return true if the key existed and was updated, false otherwise
+     */
+    boolean update(String key, Object value, Instant lastchange, Instant expiresAt);
+
+    /**
+     * Replace the value stored under an existing key if it still has a given version.
+     *
+     * The version check and the write are one atomic operation, so of several
+     * writers holding the same version exactly one succeeds.
+     *
+     * @param key The key to update
+     * @param expectedVersion The version the value must have
+     * @param value The new value
+     * @param lastchange The timestamp of this change
+     * @param expiresAt The new expiry date, or null to keep the current one
+     * @return The new version, or null if the key doesn't exist or has another version
+     */
+    Long updateIfVersion(String key, long expectedVersion, Object value, Instant lastchange, Instant expiresAt);
+
+    /**
+     * Apply a partial change to the value stored under an existing key.
+     *
+     * The change is one atomic operation, so concurrent changes of the same key
+     * are never lost, and it increments the version while keeping the expiry.
+     *
+     * @param key The key to change
+     * @param change The operations to apply to the value
+     * @param lastchange The timestamp of this change
+     * @return The changed values entity, or null if the key doesn't exist. It
+     *         holds at least the new version and, if the change has one, the
+     *         content of its result path.
+     * @throws org.springframework.dao.DataIntegrityViolationException If the change doesn't fit the stored value
+     */
+    values applyChange(String key, ValueChange change, Instant lastchange);
+
+    /**
+     * Replace the values stored under several existing keys in one batch.
+     *
+     * Keys that don't exist are skipped, never created, so a batch that was
+     * queued before a delete cannot bring the key back. A null expiry date in
+     * the batch keeps the current expiry of that key.
+     *
+     * @param batch The values entities carrying key, new value, lastchange and expiry
+     * @return The number of keys that existed and were updated
+     */
+    long updateAll(List<values> batch);
+
+    /**
+     * Delete the value stored under a key.
+     *
+     * @param key The key to delete
+     * @return true if the key existed and was deleted, false otherwise
+     */
+    boolean delete(String key);
+
+    /**
+     * Delete all stored values.
+     */
+    void deleteAll();
+
+    /**
+     * Whether other processes may write the same data, unseen by this instance.
+     *
+     * Caches of this instance, such as the Bloom filter of existing keys, can
+     * only be complete for an engine that is not shared.
+     *
+     * @return true if other application instances may share the stored data
+     */
+    default boolean isShared() {
+        return false;
+    }
+}
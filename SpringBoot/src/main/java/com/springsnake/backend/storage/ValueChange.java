@@ -0,0 +1,331 @@
+package com.springsnake.backend.storage;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.dao.DataIntegrityViolationException;
+
+/**
+ * Partial change of a stored value, applied atomically by the storage engine
+ *
+ * A change is a list of operations on paths inside the value, where a path is
+ * a sequence of object member names and the empty path is the value itself.
+ * The operations mirror the MongoDB update operators they are translated to,
+ * so only the change travels to the database instead of the whole value:
+ *
+ * - SET ($set): replace the member at the path, creating missing objects on the way
+ * - UNSET ($unset): remove the member at the path, if it exists
+ * - INC ($inc): add a number to the number at the path, which is created if missing
+ * - PUSH ($push): append an element to the array at the path, which is created if missing
+ *
+ * Engines that keep values in process apply the same operations with
+ * applyTo(), which copies only the objects along the changed paths. An
+ * operation that doesn't fit the stored value, such as incrementing a string
+ * or setting a member inside a number, fails with a
+ * DataIntegrityViolationException in every engine.
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+public final class ValueChange {
+
+    /**
+     * Kind of an operation, named after its MongoDB update operator
+     */
+    public enum Kind {
+        SET, UNSET, INC, PUSH
+    }
+
+    /**
+     * One operation of a change
+     *
+     * @param kind What the operation does
+     * @param path The member names leading to the changed part of the value
+     * @param argument The new member (SET), the number to add (INC) or the element to append (PUSH)
+     */
+    public record Operation(Kind kind, List<String> path, Object argument) {
+    }
+
+    /**
+     * The operations, applied in order
+     */
+    private final List<Operation> operations;
+
+    /**
+     * Path whose new content is the result of the change, or null if there is none
+     */
+    private final List<String> resultPath;
+
+    private ValueChange(List<Operation> operations, List<String> resultPath) {
+        this.operations = List.copyOf(operations);
+        this.resultPath = resultPath;
+    }
+
+    /**
+     * Create a change adding a number to a number inside the value.
+     *
+     * Integral deltas are added as 64-bit integers, all others as doubles.
+     *
+     * @param path The path of the number
+     * @param delta The number to add
+     * @return The increment, whose result is the new number
+     * @throws IllegalArgumentException If the delta is not a finite number within 64-bit range
+     */
+    public static ValueChange increment(List<String> path, Number delta) {
+        Number normalized;
+        if (delta instanceof Integer || delta instanceof Long || delta instanceof Short || delta instanceof Byte) {
+            normalized = delta.longValue();
+        } else if (delta instanceof BigInteger big) {
+            if (big.bitLength() > 63) {
+                throw new IllegalArgumentException("The delta exceeds the 64-bit integer range");
+            }
+            normalized = big.longValue();
+        } else {
+            double value = delta.doubleValue();
+            if (!Double.isFinite(value)) {
+                throw new IllegalArgumentException("The delta must be a finite number");
+            }
+            normalized = value;
+        }
+        return new ValueChange(List.of(new Operation(Kind.INC, path, normalized)), path);
+    }
+
+    /**
+     * Create a change appending an element to an array inside the value.
+     *
+     * @param path The path of the array
+     * @param element The element to append
+     * @return The append
+     */
+    public static ValueChange append(List<String> path, Object element) {
+        return new ValueChange(List.of(new Operation(Kind.PUSH, path, element)), null);
+    }
+
+    /**
+     * Create a change merging a JSON merge patch (RFC 7396) into the value.
+     *
+     * The patch is flattened into one SET per non-object member and one UNSET
+     * per null member, so members of the value that the patch doesn't mention
+     * are never transferred. Unlike RFC 7396, a patch object can only be merged
+     * into an object or a missing member, and an empty patch object changes nothing.
+     *
+     * @param patch The merge patch object
+     * @return The merge
+     * @throws IllegalArgumentException If a member name is empty, contains a dot or starts with $
+     */
+    public static ValueChange mergePatch(Map<?, ?> patch) {
+        List<Operation> operations = new ArrayList<>();
+        flatten(patch, List.of(), operations);
+        return new ValueChange(operations, null);
+    }
+
+    /**
+     * Add the operations of one level of a merge patch.
+     *
+     * @param patch The patch object of this level
+     * @param prefix The path of this level
+     * @param operations The operations collected so far
+     */
+    private static void flatten(Map<?, ?> patch, List<String> prefix, List<Operation> operations) {
+        for (Map.Entry<?, ?> member : patch.entrySet()) {
+            String name = String.valueOf(member.getKey());
+            checkName(name);
+            List<String> path = new ArrayList<>(prefix);
+            path.add(name);
+            if (member.getValue() == null) {
+                operations.add(new Operation(Kind.UNSET, List.copyOf(path), null));
+            } else if (member.getValue() instanceof Map<?, ?> nested) {
+                flatten(nested, path, operations);
+            } else {
+                operations.add(new Operation(Kind.SET, List.copyOf(path), member.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Split a dot-separated path such as "settings.theme" into member names.
+     *
+     * @param path The path, or null or empty for the value itself
+     * @return The member names
+     * @throws IllegalArgumentException If a member name is empty or starts with $
+     */
+    public static List<String> parsePath(String path) {
+        if (path == null || path.isEmpty()) {
+            return List.of();
+        }
+        List<String> names = Arrays.asList(path.split("\\.", -1));
+        names.forEach(ValueChange::checkName);
+        return List.copyOf(names);
+    }
+
+    /**
+     * Reject member names that cannot be addressed as a MongoDB field path.
+     *
+     * @param name The member name
+     * @throws IllegalArgumentException If the name is empty, contains a dot or starts with $
+     */
+    private static void checkName(String name) {
+        if (name.isEmpty() || name.indexOf('.') >= 0 || name.startsWith("$")) {
+            throw new IllegalArgumentException("Invalid member name '" + name + "'");
+        }
+    }
+
+    /**
+     * Look up the part of a value at a path.
+     *
+     * @param value The value
+     * @param path The member names
+     * @return The part at the path, or null if it doesn't exist
+     */
+    public static Object valueAt(Object value, List<String> path) {
+        Object node = value;
+        for (String name : path) {
+            if (!(node instanceof Map<?, ?> map)) {
+                return null;
+            }
+            node = map.get(name);
+        }
+        return node;
+    }
+
+    /**
+     * The operations of the change, in the order they must be applied.
+     *
+     * @return The operations
+     */
+    public List<Operation> operations() {
+        return operations;
+    }
+
+    /**
+     * Path whose new content callers are interested in, e.g. the incremented number.
+     *
+     * @return The path, or null if the change has no result besides the new version
+     */
+    public List<String> resultPath() {
+        return resultPath;
+    }
+
+    /**
+     * Apply the change to a value without modifying it.
+     *
+     * @param value The current value
+     * @return The changed value, sharing all unchanged parts with the current one
+     * @throws DataIntegrityViolationException If an operation doesn't fit the value
+     */
+    public Object applyTo(Object value) {
+        Object result = value;
+        for (Operation operation : operations) {
+            result = apply(result, operation, 0);
+        }
+        return result;
+    }
+
+    /**
+     * Apply one operation below a node of the value.
+     *
+     * @param node The node at the given depth of the operation path, or null if missing
+     * @param operation The operation
+     * @param depth The number of path members leading to the node
+     * @return The changed node
+     */
+    @SuppressWarnings("unchecked")
+    private static Object apply(Object node, Operation operation, int depth) {
+        List<String> path = operation.path();
+        if (depth == path.size()) {
+            return switch (operation.kind()) {
+                case SET -> operation.argument();
+                case INC -> add(node, (Number) operation.argument(), path);
+                case PUSH -> push(node, operation.argument(), path);
+                // UNSET removes its member from the parent and never reaches it
+                case UNSET -> node;
+            };
+        }
+        boolean unset = operation.kind() == Kind.UNSET;
+        if (node == null) {
+            if (unset) {
+                return null;
+            }
+            node = new LinkedHashMap<String, Object>();
+        }
+        if (!(node instanceof Map<?, ?> map)) {
+            if (unset) {
+                // Like $unset, removing a member of something that is not an object does nothing
+                return node;
+            }
+            throw new DataIntegrityViolationException(describe(path, depth) + " is not an object");
+        }
+        String name = path.get(depth);
+        Object child = map.get(name);
+        if (unset && (depth == path.size() - 1 ? !map.containsKey(name) : !(child instanceof Map))) {
+            return node;
+        }
+        Map<String, Object> copy = new LinkedHashMap<>((Map<String, Object>) map);
+        if (unset && depth == path.size() - 1) {
+            copy.remove(name);
+        } else {
+            copy.put(name, apply(child, operation, depth + 1));
+        }
+        return copy;
+    }
+
+    /**
+     * Add a number to the number at a path, like $inc.
+     *
+     * @param current The current number, or null if missing
+     * @param delta The normalized number to add
+     * @param path The path, for error messages
+     * @return The sum
+     */
+    private static Number add(Object current, Number delta, List<String> path) {
+        if (current == null) {
+            return delta;
+        }
+        if (!(current instanceof Number number)) {
+            throw new DataIntegrityViolationException(describe(path, path.size()) + " is not a number");
+        }
+        boolean integral = number instanceof Integer || number instanceof Long
+                || number instanceof Short || number instanceof Byte;
+        if (integral && delta instanceof Long) {
+            try {
+                return Math.addExact(number.longValue(), delta.longValue());
+            } catch (ArithmeticException e) {
+                throw new DataIntegrityViolationException(describe(path, path.size()) + " would overflow");
+            }
+        }
+        return number.doubleValue() + delta.doubleValue();
+    }
+
+    /**
+     * Append an element to the array at a path, like $push.
+     *
+     * @param current The current array, or null if missing
+     * @param element The element to append
+     * @param path The path, for error messages
+     * @return A new array with the element at the end
+     */
+    private static List<Object> push(Object current, Object element, List<String> path) {
+        if (current != null && !(current instanceof List)) {
+            throw new DataIntegrityViolationException(describe(path, path.size()) + " is not an array");
+        }
+        List<Object> copy = current == null ? new ArrayList<>() : new ArrayList<>((List<?>) current);
+        copy.add(element);
+        return copy;
+    }
+
+    /**
+     * Describe a part of the value for error messages.
+     *
+     * @param path The path of an operation
+     * @param depth The number of path members leading to the part
+     * @return e.g. "The value" or "Member 'settings.theme'"
+     */
+    private static String describe(List<String> path, int depth) {
+        return depth == 0 ? "The value" : "Member '" + String.join(".", path.subList(0, depth)) + "'";
+    }
+}
@@ -0,0 +1,321 @@
+package com.springsnake.backend.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.bson.types.Binary;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
+import com.springsnake.backend.values;
+import com.springsnake.backend.utils.SpringSnakeProperties;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Compression of large values stored by the MongoDB storage engine
+ *
+ * Values whose serialized JSON reaches the configured threshold are stored
+ * as compressed JSON in a binary value field, together with the codec and
+ * the original size, which shrinks the working set MongoDB keeps in memory
+ * and the bytes sent between application and database. Smaller values are
+ * stored as BSON, so they stay queryable and can be changed in place.
+ * A value is also stored as is if compression doesn't make it smaller.
+ *
+ * Codecs are looked up by the name stored in each document, so changing the
+ * configured algorithm only affects new writes. Two JDK codecs are built in:
+ *
+ * - deflate: zlib format (Deflater/Inflater)
+ * - gzip: gzip format, e.g. for documents that other tools read directly
+ *
+ * The cost is published through Micrometer, so CPU can be traded against
+ * memory and I/O by tuning threshold, algorithm and level:
+ *
+ * - springsnake.compression.ratio: compressed size / original size per compressed value
+ * - springsnake.compression.cpu: CPU time of the calling thread spent on
+ *   serializing and compressing (operation=compress) or decompressing and
+ *   parsing (operation=decompress) a value
+ *
+ * The component also enables zlib compression of the MongoDB wire protocol,
+ * which the server uses if it supports it.
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Component
+@Profile("!memory & !local")
+public class ValueCompressor implements MongoClientSettingsBuilderCustomizer {
+
+    /**
+     * A compression algorithm for serialized values
+     */
+    public interface Codec {
+
+        /**
+         * Compress serialized data.
+         *
+         * @param data The uncompressed bytes
+         * @param level The compression level from 1 to 9
+         * @param out The stream receiving the compressed bytes
+         * @throws IOException If the data cannot be written
+         */
+        void compress(byte[] data, int level, OutputStream out) throws IOException;
+
+        /**
+         * Open a stream decompressing data.
+         *
+         * @param compressed The stream of compressed bytes
+         * @return The stream of uncompressed bytes
+         * @throws IOException If the stream cannot be read
+         */
+        InputStream decompress(InputStream compressed) throws IOException;
+    }
+
+    /**
+     * The available codecs by the name stored in the documents
+     */
+    private static final Map<String, Codec> CODECS = Map.of(
+            "deflate", new Codec() {
+                @Override
+                public void compress(byte[] data, int level, OutputStream out) throws IOException {
+                    Deflater deflater = new Deflater(level);
+                    try (DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater)) {
+                        deflated.write(data);
+                    } finally {
+                        deflater.end();
+                    }
+                }
+
+                @Override
+                public InputStream decompress(InputStream compressed) {
+                    return new InflaterInputStream(compressed, new Inflater());
+                }
+            },
+            "gzip", new Codec() {
+                @Override
+                public void compress(byte[] data, int level, OutputStream out) throws IOException {
+                    try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+                        {
+                            def.setLevel(level);
+                        }
+                    }) {
+                        gzip.write(data);
+                    }
+                }
+
+                @Override
+                public InputStream decompress(InputStream compressed) throws IOException {
+                    return new GZIPInputStream(compressed);
+                }
+            });
+
+    /**
+     * A value in its stored, compressed form
+     *
+     * @param data The compressed JSON
+     * @param codec The name of the codec that compressed it
+     * @param originalSize The size of the uncompressed JSON in bytes
+     */
+    public record Compressed(byte[] data, String codec, long originalSize) {
+    }
+
+    /**
+     * Whether new values are compressed at all
+     */
+    private final boolean enabled;
+
+    /**
+     * Serialized size in bytes from which a value is compressed
+     */
+    private final long threshold;
+
+    /**
+     * Name of the codec of new values
+     */
+    private final String algorithm;
+
+    /**
+     * Codec of new values
+     */
+    private final Codec codec;
+
+    /**
+     * Compression level of new values
+     */
+    private final int level;
+
+    /**
+     * Whether the MongoDB wire protocol is compressed
+     */
+    private final boolean wire;
+
+    /**
+     * Mapper serializing values to the JSON that is compressed
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Source of the CPU time of the current thread
+     */
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Compressed size / original size of every compressed value
+     */
+    private final DistributionSummary ratio;
+
+    /**
+     * CPU time spent on compressing values
+     */
+    private final Timer compressTime;
+
+    /**
+     * CPU time spent on decompressing values
+     */
+    private final Timer decompressTime;
+
+    /**
+     * Constructor that validates the configuration and registers the meters.
+     *
+     * @param properties The Spring Snake configuration properties
+     * @param objectMapper The Jackson mapper of the application
+     * @param registry The Micrometer registry
+     * @throws IllegalArgumentException If the algorithm is unknown or the level is out of range
+     */
+    public ValueCompressor(SpringSnakeProperties properties, ObjectMapper objectMapper, MeterRegistry registry) {
+        SpringSnakeProperties.Compression settings = properties.getCompression();
+        this.enabled = settings.isEnabled();
+        this.threshold = settings.getThreshold().toBytes();
+        this.algorithm = settings.getAlgorithm();
+        this.codec = CODECS.get(algorithm);
+        this.level = settings.getLevel();
+        this.wire = settings.isWire();
+        this.objectMapper = objectMapper;
+        if (codec == null) {
+            throw new IllegalArgumentException("Unknown compression algorithm '" + algorithm + "', expected one of " + CODECS.keySet());
+        }
+        if (level < 1 || level > 9) {
+            throw new IllegalArgumentException("The compression level must be between 1 and 9");
+        }
+        this.ratio = DistributionSummary.builder("springsnake.compression.ratio")
+                .description("Compressed size divided by original size of compressed values")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(registry);
+        this.compressTime = cpuTimer("compress", registry);
+        this.decompressTime = cpuTimer("decompress", registry);
+    }
+
+    /**
+     * Build the CPU timer of one direction.
+     *
+     * @param operation "compress" or "decompress"
+     * @param registry The Micrometer registry
+     * @return The registered timer
+     */
+    private static Timer cpuTimer(String operation, MeterRegistry registry) {
+        return Timer.builder("springsnake.compression.cpu")
+                .description("CPU time spent on value compression, including JSON serialization")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @Override
+    public void customize(MongoClientSettings.Builder builder) {
+        if (wire) {
+            builder.compressorList(List.of(MongoCompressor.createZlibCompressor()));
+        }
+    }
+
+    /**
+     * CPU time of the current thread, falling back to wall time where the JVM doesn't measure it.
+     *
+     * @return A timestamp in nanoseconds
+     */
+    private long cpuTime() {
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * Compress a value if it is large enough and compression pays off.
+     *
+     * Only strings, objects and arrays can reach the threshold, so other
+     * values are not even serialized.
+     *
+     * @param value The value to store
+     * @return The compressed value, or null if the value is to be stored as is
+     */
+    public Compressed compress(Object value) {
+        if (!enabled || !(value instanceof Map || value instanceof List || value instanceof String)) {
+            return null;
+        }
+        long start = cpuTime();
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(value);
+            if (json.length < threshold) {
+                return null;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+            codec.compress(json, level, out);
+            ratio.record((double) out.size() / json.length);
+            return out.size() < json.length ? new Compressed(out.toByteArray(), algorithm, json.length) : null;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("The value cannot be serialized for compression", e);
+        } finally {
+            compressTime.record(cpuTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Replace the compressed value of an entity read from MongoDB by the original value.
+     *
+     * @param value The values entity as stored, or null
+     * @return The same entity with the original value and no codec, or null
+     * @throws DataRetrievalFailureException If the stored value cannot be decompressed
+     */
+    public values decompress(values value) {
+        if (value == null || value.getCodec() == null) {
+            return value;
+        }
+        Codec stored = CODECS.get(value.getCodec());
+        if (stored == null) {
+            throw new DataRetrievalFailureException("Unknown compression codec '" + value.getCodec()
+                    + "' of key '" + value.getKey() + "'");
+        }
+        long start = cpuTime();
+        byte[] data = value.getValue() instanceof Binary binary ? binary.getData() : (byte[]) value.getValue();
+        try (InputStream json = stored.decompress(new ByteArrayInputStream(data))) {
+            value.setValue(objectMapper.readValue(json, Object.class));
+        } catch (IOException | ClassCastException e) {
+            throw new DataRetrievalFailureException("The stored value of key '" + value.getKey()
+                    + "' cannot be decompressed", e);
+        } finally {
+            decompressTime.record(cpuTime() - start, TimeUnit.NANOSECONDS);
+        }
+        value.setCodec(null);
+        value.setOriginalSize(null);
+        return value;
+    }
+}
@@ -0,0 +1,501 @@
+package com.springsnake.backend.utils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Admission control in front of the /api endpoints
+ *
+ * When the database slows down, every request holds its Tomcat thread longer,
+ * and without a bound the threads run out: every request times out together,
+ * health checks included. This filter bounds the number of concurrent /api
+ * requests instead and rejects the excess at once with 503 Service
+ * Unavailable and a Retry-After header, without queueing it. Requests under
+ * /actuator are never limited.
+ *
+ * There are two limits: one for cheap point operations and one for the bulk
+ * operations listed in springsnake.admission.bulk-paths, which scan or write
+ * the whole collection, so a few bulk requests can't take the capacity of the
+ * point reads. Each limit adapts by AIMD (additive increase, multiplicative
+ * decrease): a request that takes longer than the latency target of its limit
+ * or fails with 503 shrinks the limit by the backoff ratio, at most once per
+ * round of requests; other requests grow it by about one per round while it
+ * is in use. The limits stay between their configured min and max.
+ *
+ * Streaming responses hold their permit until the response is complete, but
+ * their duration isn't taken as a latency sample. Neither is the duration of
+ * the operations listed in springsnake.admission.unsampled-paths, such as a
+ * snapshot import, which takes as long as its payload requires even on an
+ * idle server; they still shrink the limit when they fail with 503.
+ * Long-lived subscriptions
+ * (springsnake.admission.exempt-paths) are not limited; /api/feed has its own
+ * subscriber limit.
+ *
+ * Optionally, each client gets a token bucket refilled at
+ * springsnake.admission.client-rate requests per second. A client without
+ * tokens is rejected with 429 Too Many Requests and the time until its next
+ * token as Retry-After. Clients are told apart by a header or by their remote
+ * address.
+ *
+ * Metrics: springsnake.admission.limit and springsnake.admission.inflight
+ * tagged class=point or class=bulk, and springsnake.admission.rejected tagged
+ * with the class and reason=limit or reason=client.
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Component
+@Slf4j
+public class AdmissionControl extends OncePerRequestFilter {
+
+    /**
+     * An adaptive concurrency limit
+     */
+    static final class Limiter {
+
+        /**
+         * Smallest value of the limit
+         */
+        private final int min;
+
+        /**
+         * Largest value of the limit
+         */
+        private final int max;
+
+        /**
+         * Latency above which a request signals overload, in nanoseconds
+         */
+        private final long latencyTarget;
+
+        /**
+         * Factor applied to the limit on overload
+         */
+        private final double backoffRatio;
+
+        /**
+         * Number of requests holding a permit
+         */
+        private final AtomicInteger inflight = new AtomicInteger();
+
+        /**
+         * Current limit, read without locking by tryAcquire
+         */
+        private volatile int limit;
+
+        /**
+         * Current limit with its fractional part, guarded by this
+         */
+        private double exactLimit;
+
+        /**
+         * Time of the last decrease, guarded by this
+         */
+        private long decreasedAt = System.nanoTime();
+
+        /**
+         * Constructor with the bounds of the limit.
+         *
+         * @param settings The initial value, bounds and latency target
+         * @param backoffRatio The factor applied to the limit on overload
+         */
+        Limiter(SpringSnakeProperties.Admission.Limit settings, double backoffRatio) {
+            this.min = Math.max(1, settings.getMin());
+            this.max = Math.max(min, settings.getMax());
+            this.latencyTarget = settings.getLatencyTarget().toNanos();
+            this.backoffRatio = backoffRatio;
+            this.exactLimit = Math.min(max, Math.max(min, settings.getInitial()));
+            this.limit = (int) exactLimit;
+        }
+
+        /**
+         * Take a permit if the limit allows it.
+         *
+         * @return true if the request may proceed
+         */
+        boolean tryAcquire() {
+            int current;
+            do {
+                current = inflight.get();
+                if (current >= limit) {
+                    return false;
+                }
+            } while (!inflight.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        /**
+         * Return a permit without adapting the limit.
+         */
+        void release() {
+            inflight.decrementAndGet();
+        }
+
+        /**
+         * Return a permit and adapt the limit to the outcome of the request.
+         *
+         * @param startedAt The System.nanoTime() at which the request was admitted
+         * @param failed Whether the request failed with a sign of overload
+         */
+        void release(long startedAt, boolean failed) {
+            int used = inflight.getAndDecrement();
+            long now = System.nanoTime();
+            synchronized (this) {
+                if (failed || now - startedAt > latencyTarget) {
+                    // Requests admitted before the last decrease reflect the old limit
+                    if (startedAt - decreasedAt > 0) {
+                        exactLimit = Math.max(min, exactLimit * backoffRatio);
+                        decreasedAt = now;
+                        log.debug("Concurrency limit decreased to {}", (int) exactLimit);
+                    }
+                } else if (used * 2 >= exactLimit) {
+                    // One more permit per round of requests, and only while the limit is in use
+                    exactLimit = Math.min(max, exactLimit + 1 / exactLimit);
+                }
+                limit = (int) exactLimit;
+            }
+        }
+
+        /**
+         * @return The current limit
+         */
+        int limit() {
+            return limit;
+        }
+
+        /**
+         * @return The number of requests holding a permit
+         */
+        int inflight() {
+            return inflight.get();
+        }
+    }
+
+    /**
+     * A token bucket of one client
+     */
+    static final class TokenBucket {
+
+        /**
+         * Tokens added per nanosecond
+         */
+        private final double rate;
+
+        /**
+         * Largest number of tokens
+         */
+        private final double burst;
+
+        /**
+         * Tokens available at the last refill
+         */
+        private double tokens;
+
+        /**
+         * Time of the last refill
+         */
+        private long refilledAt;
+
+        /**
+         * Constructor of a full bucket.
+         *
+         * @param ratePerSecond Tokens added per second
+         * @param burst Largest number of tokens
+         * @param now The current System.nanoTime()
+         */
+        TokenBucket(double ratePerSecond, int burst, long now) {
+            this.rate = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.burst = Math.max(1, burst);
+            this.tokens = this.burst;
+            this.refilledAt = now;
+        }
+
+        /**
+         * Take a token if one is available.
+         *
+         * @param now The current System.nanoTime()
+         * @return 0 if a token was taken, otherwise the nanoseconds until the next token
+         */
+        synchronized long take(long now) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * rate);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / rate);
+        }
+    }
+
+    /**
+     * Admission control configuration
+     */
+    private final SpringSnakeProperties.Admission settings;
+
+    /**
+     * Paths counted against the bulk limit
+     */
+    private final Set<String> bulkPaths;
+
+    /**
+     * Paths that are never limited
+     */
+    private final Set<String> exemptPaths;
+
+    /**
+     * Paths whose duration isn't a latency sample
+     */
+    private final Set<String> unsampledPaths;
+
+    /**
+     * Limit of the point operations
+     */
+    private final Limiter point;
+
+    /**
+     * Limit of the bulk operations
+     */
+    private final Limiter bulk;
+
+    /**
+     * Token buckets by client, or null if clients aren't limited
+     */
+    private final Cache<String, TokenBucket> buckets;
+
+    /**
+     * Retry-After of requests rejected by a concurrency limit, in seconds
+     */
+    private final String retryAfter;
+
+    /**
+     * Point requests rejected by the concurrency limit
+     */
+    private final Counter pointRejected;
+
+    /**
+     * Bulk requests rejected by the concurrency limit
+     */
+    private final Counter bulkRejected;
+
+    /**
+     * Point requests rejected by the token bucket of their client
+     */
+    private final Counter pointThrottled;
+
+    /**
+     * Bulk requests rejected by the token bucket of their client
+     */
+    private final Counter bulkThrottled;
+
+    /**
+     * Constructor that builds the limits and registers their meters.
+     *
+     * @param properties The Spring Snake configuration properties
+     * @param registry The Micrometer registry for the admission meters
+     */
+    public AdmissionControl(SpringSnakeProperties properties, MeterRegistry registry) {
+        this.settings = properties.getAdmission();
+        this.bulkPaths = Set.copyOf(settings.getBulkPaths());
+        this.exemptPaths = Set.copyOf(settings.getExemptPaths());
+        this.unsampledPaths = Set.copyOf(settings.getUnsampledPaths());
+        this.point = new Limiter(settings.getPoint(), settings.getBackoffRatio());
+        this.bulk = new Limiter(settings.getBulk(), settings.getBackoffRatio());
+        this.retryAfter = seconds(settings.getRetryAfter().toNanos());
+        if (settings.getClientRate() > 0) {
+            // An idle bucket is full again after burst / rate, so it can be forgotten then
+            Duration idle = Duration.ofNanos((long) (Math.max(1, settings.getClientBurst())
+                    / settings.getClientRate() * TimeUnit.SECONDS.toNanos(1)));
+            this.buckets = Caffeine.newBuilder()
+                    .maximumSize(settings.getMaxClients())
+                    .expireAfterAccess(idle.compareTo(Duration.ofSeconds(1)) < 0 ? Duration.ofSeconds(1) : idle)
+                    .build();
+        } else {
+            this.buckets = null;
+        }
+        this.pointRejected = rejected(registry, "point", "limit");
+        this.bulkRejected = rejected(registry, "bulk", "limit");
+        this.pointThrottled = rejected(registry, "point", "client");
+        this.bulkThrottled = rejected(registry, "bulk", "client");
+        gauges(registry, "point", point);
+        gauges(registry, "bulk", bulk);
+    }
+
+    /**
+     * Publish the limit and the requests in progress of one class.
+     *
+     * @param registry The Micrometer registry
+     * @param type The class of the limited requests
+     * @param limiter The limit of the class
+     */
+    private static void gauges(MeterRegistry registry, String type, Limiter limiter) {
+        Gauge.builder("springsnake.admission.limit", limiter, Limiter::limit)
+                .description("Concurrent /api requests currently allowed")
+                .tag("class", type)
+                .register(registry);
+        Gauge.builder("springsnake.admission.inflight", limiter, Limiter::inflight)
+                .description("Concurrent /api requests in progress")
+                .tag("class", type)
+                .register(registry);
+    }
+
+    /**
+     * Build the rejection counter of one class and reason.
+     *
+     * @param registry The Micrometer registry
+     * @param type The class of the rejected requests
+     * @param reason Why they were rejected
+     * @return The registered counter
+     */
+    private static Counter rejected(MeterRegistry registry, String type, String reason) {
+        return Counter.builder("springsnake.admission.rejected")
+                .description("Requests rejected by admission control")
+                .tag("class", type)
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    /**
+     * Skip requests outside /api, exempt paths, and everything if admission control is disabled.
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = path(request);
+        return !settings.isEnabled() || !path.startsWith("/api/") || exemptPaths.contains(path);
+    }
+
+    /**
+     * Admit the request under the client and concurrency limits, or reject it.
+     */
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = path(request);
+        boolean isBulk = bulkPaths.contains(path);
+        if (buckets != null) {
+            long wait = buckets.get(client(request),
+                    client -> new TokenBucket(settings.getClientRate(), settings.getClientBurst(), System.nanoTime()))
+                    .take(System.nanoTime());
+            if (wait > 0) {
+                (isBulk ? bulkThrottled : pointThrottled).increment();
+                reject(response, HttpStatus.TOO_MANY_REQUESTS, seconds(wait),
+                        "Too many requests from this client, retry later");
+                return;
+            }
+        }
+        Limiter limiter = isBulk ? bulk : point;
+        if (!limiter.tryAcquire()) {
+            (isBulk ? bulkRejected : pointRejected).increment();
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, retryAfter, "Service overloaded, retry later");
+            return;
+        }
+        long startedAt = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = response.getStatus() == HttpStatus.SERVICE_UNAVAILABLE.value();
+        } finally {
+            if (request.isAsyncStarted()) {
+                // Streaming responses keep their permit until they are written
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        limiter.release();
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                        event.getAsyncContext().addListener(this);
+                    }
+                });
+            } else if (failed || !unsampledPaths.contains(path)) {
+                limiter.release(startedAt, failed);
+            } else {
+                limiter.release();
+            }
+        }
+    }
+
+    /**
+     * Answer a rejected request.
+     *
+     * @param response The response to write
+     * @param status The status of the rejection
+     * @param retryAfter Seconds after which the client may retry
+     * @param message The body of the response
+     * @throws IOException If the response cannot be written
+     */
+    private static void reject(HttpServletResponse response, HttpStatus status, String retryAfter, String message)
+            throws IOException {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write(message);
+    }
+
+    /**
+     * Format a wait as a Retry-After value.
+     *
+     * @param nanos The wait in nanoseconds
+     * @return The wait in whole seconds, rounded up and at least 1
+     */
+    private static String seconds(long nanos) {
+        long second = TimeUnit.SECONDS.toNanos(1);
+        return Long.toString(Math.max(1, (nanos + second - 1) / second));
+    }
+
+    /**
+     * Identify the client of a request.
+     *
+     * @param request The request
+     * @return The configured client header if present, otherwise the remote address
+     */
+    private String client(HttpServletRequest request) {
+        if (!settings.getClientHeader().isEmpty()) {
+            String client = request.getHeader(settings.getClientHeader());
+            if (client != null && !client.isBlank()) {
+                return client;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    /**
+     * @param request The request
+     * @return The path of the request without the context path
+     */
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+}
@@ -0,0 +1,61 @@
+package com.springsnake.backend.utils;
+
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for one event of the change feed
+ * 
+ * This class carries the data of the events pushed by /api/feed. An event
+ * names the changed key but not its value, which clients read with /get or
+ * /getmany if they need it, so large values are never held by the feed.
+ * 
+ * Event types:
+ * - put: a key was created
+ * - update: the value of a key was replaced or partially changed
+ * - delete: a key was deleted
+ * - clear: all keys were deleted
+ * - reset: events were missed, or a snapshot import changed many keys at once; the client must resync, e.g. with /getall/stream
+ * - overflow: the client read too slowly and is disconnected; it should reconnect with Last-Event-ID
+ * 
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChangeEventDTO {
+
+    /**
+     * Event id, to be sent back as Last-Event-ID when reconnecting
+     */
+    private String id;
+
+    /**
+     * Event type, e.g. "put"
+     */
+    private String type;
+
+    /**
+     * Changed key, or null for clear, reset and overflow
+     */
+    private String key;
+
+    /**
+     * Version of the value after the change, or null if it is not known
+     */
+    private Long version;
+
+    /**
+     * Time of the change, or null if it is not known
+     */
+    private Instant lastchange;
+
+}
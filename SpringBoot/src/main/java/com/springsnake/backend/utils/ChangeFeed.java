@@ -0,0 +1,437 @@
+package com.springsnake.backend.utils;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-process broadcaster of the change events served by /api/feed
+ *
+ * Every write through ValueService publishes a ChangeEventDTO here (or, with
+ * springsnake.feed.source=mongo, every change reported by a MongoDB change
+ * stream). Each event gets an id made of the epoch of this process and a
+ * sequence number, is kept in a bounded history for reconnecting clients, and
+ * is offered to the queue of every subscriber whose key prefix matches.
+ *
+ * - Writers never block: offering to a subscriber queue doesn't wait, and a
+ *   subscriber whose queue is full is dropped. Its sender delivers what was
+ *   queued, then an "overflow" event, and closes the connection, so the
+ *   client reconnects with Last-Event-ID and catches up from the history.
+ * - Each subscriber has its own sender thread, so a slow network connection
+ *   only delays its own events. Idle connections get a comment line at the
+ *   heartbeat interval, which also detects clients that went away.
+ * - A client resuming from an id that is no longer in the history, or from
+ *   another process, gets a "reset" event carrying the current id and has to
+ *   resynchronize (e.g. with /getall/stream) before applying further events.
+ *
+ * Metrics: springsnake.feed.subscribers (gauge), springsnake.feed.events and
+ * springsnake.feed.overflows (counters).
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Component
+@Slf4j
+public class ChangeFeed {
+
+    /**
+     * One connected client of the feed
+     */
+    private final class Subscriber {
+
+        /**
+         * Key prefix of the events the client wants, or null for all events
+         */
+        private final String prefix;
+
+        /**
+         * Events published but not yet sent, bounded by the subscriber buffer
+         */
+        private final BlockingQueue<ChangeEventDTO> queue;
+
+        /**
+         * The SSE connection, only written to by the sender thread
+         */
+        private final SseEmitter emitter;
+
+        /**
+         * Thread sending the events of this subscriber
+         */
+        private final Thread sender;
+
+        /**
+         * Set when the queue was full, so no further events are queued
+         */
+        private volatile boolean overflowed;
+
+        /**
+         * Set when the connection is completed, failed or timed out
+         */
+        private volatile boolean closed;
+
+        private Subscriber(String prefix, List<ChangeEventDTO> backlog) {
+            this.prefix = prefix;
+            this.queue = new ArrayBlockingQueue<>(subscriberBuffer);
+            this.emitter = new SseEmitter(0L);
+            this.sender = new Thread(() -> send(backlog), "change-feed-" + senders.incrementAndGet());
+            this.sender.setDaemon(true);
+            emitter.onCompletion(this::close);
+            emitter.onTimeout(this::close);
+            emitter.onError(e -> close());
+        }
+
+        /**
+         * Check whether the client wants an event.
+         *
+         * @param event The published event
+         * @return true if the event concerns no single key or a key with the prefix
+         */
+        private boolean matches(ChangeEventDTO event) {
+            return prefix == null || event.getKey() == null || event.getKey().startsWith(prefix);
+        }
+
+        /**
+         * Send the backlog, then the queued events until the connection ends.
+         *
+         * @param backlog The events to send before the live ones
+         */
+        private void send(List<ChangeEventDTO> backlog) {
+            try {
+                for (ChangeEventDTO event : backlog) {
+                    sendEvent(event);
+                }
+                while (!closed) {
+                    // Once overflowed, nothing is added: drain the queue without waiting
+                    ChangeEventDTO event = overflowed ? queue.poll() : queue.poll(heartbeatNanos, TimeUnit.NANOSECONDS);
+                    if (event != null) {
+                        sendEvent(event);
+                    } else if (overflowed) {
+                        emitter.send(SseEmitter.event().name("overflow")
+                                .data(new ChangeEventDTO(null, "overflow", null, null, null), MediaType.APPLICATION_JSON));
+                        emitter.complete();
+                        return;
+                    } else {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Closed while waiting for events
+            } catch (IOException | IllegalStateException e) {
+                // The client went away; the container completes the emitter
+                log.debug("Change feed subscriber disconnected: {}", e.getMessage());
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Write one event to the connection.
+         *
+         * @param event The event to send
+         * @throws IOException If the client cannot be reached
+         */
+        private void sendEvent(ChangeEventDTO event) throws IOException {
+            emitter.send(SseEmitter.event()
+                    .id(event.getId())
+                    .name(event.getType())
+                    .data(event, MediaType.APPLICATION_JSON));
+        }
+
+        /**
+         * Stop publishing to this subscriber and stop its sender.
+         */
+        private void close() {
+            closed = true;
+            unsubscribe(this);
+            if (Thread.currentThread() != sender) {
+                sender.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Whether ValueService writes are published (source "service")
+     */
+    private final boolean serviceSource;
+
+    /**
+     * Capacity of each subscriber queue
+     */
+    private final int subscriberBuffer;
+
+    /**
+     * Maximum number of concurrent subscribers
+     */
+    private final int maxSubscribers;
+
+    /**
+     * Interval of heartbeat comments, in nanoseconds
+     */
+    private final long heartbeatNanos;
+
+    /**
+     * Start time of this process in base 36, the first part of every event id
+     */
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * Ring buffer of the latest events, indexed by sequence number (guarded by lock)
+     */
+    private final ChangeEventDTO[] history;
+
+    /**
+     * Sequence number of the latest event, 0 before the first one (guarded by lock)
+     */
+    private long sequence;
+
+    /**
+     * Connected subscribers that still receive events (guarded by lock)
+     */
+    private final List<Subscriber> subscribers = new ArrayList<>();
+
+    /**
+     * Lock guarding history, sequence and subscribers
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Number of sender threads started, used to name them
+     */
+    private final AtomicInteger senders = new AtomicInteger();
+
+    /**
+     * Number of published events
+     */
+    private final Counter events;
+
+    /**
+     * Number of subscribers dropped because they read too slowly
+     */
+    private final Counter overflows;
+
+    /**
+     * Constructor that sizes the history from the configuration and registers the metrics.
+     *
+     * @param properties The Spring Snake configuration properties
+     * @param registry The Micrometer registry for the feed metrics
+     */
+    public ChangeFeed(SpringSnakeProperties properties, MeterRegistry registry) {
+        SpringSnakeProperties.Feed settings = properties.getFeed();
+        this.serviceSource = "service".equals(settings.getSource());
+        this.subscriberBuffer = settings.getSubscriberBuffer();
+        this.maxSubscribers = settings.getMaxSubscribers();
+        this.heartbeatNanos = settings.getHeartbeat().toNanos();
+        this.history = new ChangeEventDTO[settings.getHistorySize()];
+        Gauge.builder("springsnake.feed.subscribers", this, ChangeFeed::subscriberCount)
+                .description("Number of clients connected to the change feed")
+                .register(registry);
+        this.events = Counter.builder("springsnake.feed.events")
+                .description("Change events published to the feed")
+                .register(registry);
+        this.overflows = Counter.builder("springsnake.feed.overflows")
+                .description("Feed subscribers disconnected because their queue was full")
+                .register(registry);
+    }
+
+    /**
+     * Publish a write made through ValueService, unless events come from another source.
+     *
+     * @param type The event type, e.g. "put"
+     * @param key The changed key, or null for clear
+     * @param version The version after the change, or null if it is not known
+     * @param lastchange The time of the change, or null if it is not known
+     */
+    public void written(String type, String key, Long version, Instant lastchange) {
+        if (serviceSource) {
+            publish(type, key, version, lastchange);
+        }
+    }
+
+    /**
+     * Publish an event to the history and to every matching subscriber.
+     *
+     * @param type The event type, e.g. "put"
+     * @param key The changed key, or null for events concerning all keys
+     * @param version The version after the change, or null if it is not known
+     * @param lastchange The time of the change, or null if it is not known
+     */
+    public void publish(String type, String key, Long version, Instant lastchange) {
+        lock.lock();
+        try {
+            long id = ++sequence;
+            ChangeEventDTO event = new ChangeEventDTO(eventId(id), type, key, version, lastchange);
+            if (history.length > 0) {
+                history[(int) (id % history.length)] = event;
+            }
+            Iterator<Subscriber> iterator = subscribers.iterator();
+            while (iterator.hasNext()) {
+                Subscriber subscriber = iterator.next();
+                if (subscriber.matches(event) && !subscriber.queue.offer(event)) {
+                    subscriber.overflowed = true;
+                    iterator.remove();
+                    overflows.increment();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        events.increment();
+    }
+
+    /**
+     * Connect a client, sending the events it missed since its last event id first.
+     *
+     * @param prefix Key prefix of the events to send, or null for all events
+     * @param lastEventId The id of the last event the client received, or null for live events only
+     * @return The SSE connection to return from the controller
+     * @throws IllegalArgumentException If the last event id is malformed
+     * @throws TransientDataAccessResourceException If the maximum number of subscribers is connected
+     */
+    public SseEmitter subscribe(String prefix, String lastEventId) {
+        String keyPrefix = prefix == null || prefix.isEmpty() ? null : prefix;
+        Subscriber subscriber;
+        lock.lock();
+        try {
+            if (subscribers.size() >= maxSubscribers) {
+                throw new TransientDataAccessResourceException("The change feed has reached "
+                        + maxSubscribers + " subscribers");
+            }
+            List<ChangeEventDTO> backlog = lastEventId == null || lastEventId.isEmpty()
+                    ? List.of()
+                    : missedSince(lastEventId, keyPrefix);
+            subscriber = new Subscriber(keyPrefix, backlog);
+            subscribers.add(subscriber);
+        } finally {
+            lock.unlock();
+        }
+        subscriber.sender.start();
+        return subscriber.emitter;
+    }
+
+    /**
+     * Collect the events after a given id from the history.
+     *
+     * @param lastEventId The id of the last event the client received
+     * @param prefix Key prefix of the events to collect, or null for all events
+     * @return The missed events, or a single "reset" event if they are not all in the history
+     * @throws IllegalArgumentException If the id is malformed
+     */
+    List<ChangeEventDTO> missedSince(String lastEventId, String prefix) {
+        lock.lock();
+        try {
+            return historyAfter(lastEventId, prefix);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Collect the events after a given id from the history (called with lock held).
+     *
+     * @param lastEventId The id of the last event the client received
+     * @param prefix Key prefix of the events to collect, or null for all events
+     * @return The missed events, or a single "reset" event if they are not all in the history
+     * @throws IllegalArgumentException If the id is malformed
+     */
+    private List<ChangeEventDTO> historyAfter(String lastEventId, String prefix) {
+        int dash = lastEventId.lastIndexOf('-');
+        if (dash < 0) {
+            throw new IllegalArgumentException("Malformed event id: " + lastEventId);
+        }
+        long last;
+        try {
+            last = Long.parseLong(lastEventId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed event id: " + lastEventId);
+        }
+        long oldest = Math.max(1, sequence - history.length + 1);
+        if (!epoch.equals(lastEventId.substring(0, dash)) || last > sequence || last + 1 < oldest) {
+            return List.of(new ChangeEventDTO(eventId(sequence), "reset", null, null, null));
+        }
+        List<ChangeEventDTO> missed = new ArrayList<>();
+        for (long id = last + 1; id <= sequence; id++) {
+            ChangeEventDTO event = history[(int) (id % history.length)];
+            if (prefix == null || event.getKey() == null || event.getKey().startsWith(prefix)) {
+                missed.add(event);
+            }
+        }
+        return missed;
+    }
+
+    /**
+     * Build the id of an event.
+     *
+     * @param sequence The sequence number of the event
+     * @return The id sent to clients, e.g. "lr3k2p1c-42"
+     */
+    private String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    /**
+     * Remove a subscriber, if it is still registered.
+     *
+     * @param subscriber The subscriber to remove
+     */
+    private void unsubscribe(Subscriber subscriber) {
+        lock.lock();
+        try {
+            subscribers.remove(subscriber);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of subscribers receiving events.
+     *
+     * @return The subscriber count
+     */
+    public int subscriberCount() {
+        lock.lock();
+        try {
+            return subscribers.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Close every connection before the application shuts down.
+     */
+    @PreDestroy
+    public void close() {
+        List<Subscriber> connected;
+        lock.lock();
+        try {
+            connected = new ArrayList<>(subscribers);
+            subscribers.clear();
+        } finally {
+            lock.unlock();
+        }
+        for (Subscriber subscriber : connected) {
+            subscriber.closed = true;
+            subscriber.sender.interrupt();
+            subscriber.emitter.complete();
+        }
+    }
+}
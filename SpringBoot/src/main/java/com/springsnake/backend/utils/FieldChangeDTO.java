@@ -0,0 +1,43 @@
+package com.springsnake.backend.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for a change of one part of a stored value
+ *
+ * This class carries the request of the /api/increment and /api/append
+ * endpoints. The path names the part of the value to change as dot-separated
+ * object members, e.g. "stats.views"; without a path the value itself changes.
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FieldChangeDTO {
+
+    /**
+     * Key of the value to change
+     */
+    private String key;
+
+    /**
+     * Dot-separated member names leading to the changed part, or null for the value itself
+     */
+    private String path;
+
+    /**
+     * Number to add (increment only, defaults to 1)
+     */
+    private Number delta;
+
+    /**
+     * Element to append (append only)
+     */
+    private Object value;
+
+}
@@ -0,0 +1,444 @@
+package com.springsnake.backend.utils;
+
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.springsnake.backend.storage.StorageEngine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bloom filter of the existing keys, guarding lookups of missing keys
+ *
+ * A Bloom filter never forgets a key it was given, so when it doesn't contain
+ * a key, the key certainly doesn't exist and ValueService answers "not found"
+ * without a round trip to the storage engine. When it does contain a key, the
+ * key exists or, with the configured false-positive rate, it is one of the
+ * misses the filter cannot tell apart; the storage engine decides then.
+ *
+ * - The filter is built in the background when the application is ready, by
+ *   streaming only the keys from the storage engine. Until then every lookup
+ *   goes to the storage engine.
+ * - ValueService and the snapshot import add every key they create. Keys
+ *   created while a rebuild is streaming are added to the new filter as well,
+ *   so a rebuild never loses a key.
+ * - Deleted and expired keys cannot be removed from a Bloom filter; they stay
+ *   until the next rebuild, which happens at the rebuild interval, after a
+ *   deleteall, and as soon as more keys were added than the filter was sized for.
+ *
+ * Keys created by other application instances sharing the database are only
+ * seen by the next rebuild, unless the change feed reads a MongoDB change
+ * stream, which adds them too. Unless configured explicitly, the filter is
+ * therefore only used with an embedded engine, or with MongoDB when
+ * springsnake.feed.source=mongo.
+ *
+ * Metrics: springsnake.keyfilter.memory (bytes), springsnake.keyfilter.fpp
+ * (estimated false-positive rate from the share of set bits), and
+ * springsnake.keyfilter.lookups tagged result=negative (answered without the
+ * storage engine) or result=false_positive (passed, but the key was missing).
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Component
+@Slf4j
+public class KeyFilter {
+
+    /**
+     * A Bloom filter of strings whose bits can be set concurrently
+     */
+    static final class BloomFilter {
+
+        /**
+         * The bits, 64 per word
+         */
+        private final AtomicLongArray words;
+
+        /**
+         * Number of bits
+         */
+        private final long bits;
+
+        /**
+         * Number of bits set per key
+         */
+        private final int hashes;
+
+        /**
+         * Number of keys the filter is sized for
+         */
+        private final long capacity;
+
+        /**
+         * Number of bits that are set
+         */
+        private final AtomicLong setBits = new AtomicLong();
+
+        /**
+         * Number of keys added, counting repeated keys again
+         */
+        private final AtomicLong added = new AtomicLong();
+
+        /**
+         * Constructor that sizes the filter for a number of keys and a false-positive rate.
+         *
+         * @param capacity The expected number of keys
+         * @param falsePositiveRate The false-positive rate at that number of keys
+         */
+        BloomFilter(long capacity, double falsePositiveRate) {
+            this.capacity = Math.max(1, capacity);
+            double optimalBits = -this.capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+            this.words = new AtomicLongArray((int) Math.max(1, Math.ceil(optimalBits / 64)));
+            this.bits = words.length() * 64L;
+            this.hashes = (int) Math.max(1, Math.round((double) bits / this.capacity * Math.log(2)));
+        }
+
+        /**
+         * Add a key.
+         *
+         * @param key The key
+         */
+        void put(String key) {
+            long h1 = hash(key);
+            long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bits;
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current = words.get(word);
+                while ((current & mask) == 0) {
+                    long witness = words.compareAndExchange(word, current, current | mask);
+                    if (witness == current) {
+                        setBits.incrementAndGet();
+                        break;
+                    }
+                    current = witness;
+                }
+            }
+            added.incrementAndGet();
+        }
+
+        /**
+         * Check whether a key may have been added.
+         *
+         * @param key The key
+         * @return false if the key was certainly never added
+         */
+        boolean mightContain(String key) {
+            long h1 = hash(key);
+            long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bits;
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Estimate the current false-positive rate from the share of set bits.
+         *
+         * @return The probability that a missing key passes the filter
+         */
+        double falsePositiveRate() {
+            return Math.pow((double) setBits.get() / bits, hashes);
+        }
+
+        /**
+         * Size of the bit array.
+         *
+         * @return The memory held by the filter in bytes
+         */
+        long sizeInBytes() {
+            return words.length() * 8L;
+        }
+
+        /**
+         * Whether more keys were added than the filter was sized for.
+         *
+         * @return true if the false-positive rate has grown beyond the target
+         */
+        boolean isOverloaded() {
+            return added.get() > capacity;
+        }
+
+        /**
+         * FNV-1a hash of the characters of a key, mixed to spread all bits.
+         *
+         * @param key The key
+         * @return A 64-bit hash
+         */
+        private static long hash(String key) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                hash ^= key.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return mix(hash);
+        }
+
+        /**
+         * Finalization step of MurmurHash3, which makes every output bit depend on every input bit.
+         *
+         * @param hash The value to mix
+         * @return The mixed value
+         */
+        private static long mix(long hash) {
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+
+    /**
+     * Storage engine whose keys are filtered
+     */
+    private final StorageEngine engine;
+
+    /**
+     * Whether the filter is used at all
+     */
+    private final boolean enabled;
+
+    /**
+     * Target false-positive rate of every built filter
+     */
+    private final double falsePositiveRate;
+
+    /**
+     * Smallest number of keys a filter is sized for
+     */
+    private final long expectedKeys;
+
+    /**
+     * Interval of full rebuilds, in milliseconds
+     */
+    private final long rebuildIntervalMillis;
+
+    /**
+     * Number of keys fetched per round trip while building
+     */
+    private final int batchSize;
+
+    /**
+     * The filter answering lookups, or null until the first build has finished
+     */
+    private volatile BloomFilter active;
+
+    /**
+     * The filter being built, which also receives new keys, or null
+     */
+    private volatile BloomFilter building;
+
+    /**
+     * Number of keys found by the last build
+     */
+    private volatile long lastCount;
+
+    /**
+     * Set while a rebuild is queued or running
+     */
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+
+    /**
+     * Thread running the builds, or null when disabled
+     */
+    private final ScheduledExecutorService builder;
+
+    /**
+     * Lookups answered without the storage engine
+     */
+    private final Counter negatives;
+
+    /**
+     * Lookups that passed the filter although the key was missing
+     */
+    private final Counter falsePositives;
+
+    /**
+     * Constructor that reads the configuration and registers the metrics.
+     *
+     * @param engine The storage engine whose keys are filtered
+     * @param properties The Spring Snake configuration properties
+     * @param registry The Micrometer registry
+     * @throws IllegalArgumentException If the false-positive rate is not between 0 and 1
+     */
+    public KeyFilter(StorageEngine engine, SpringSnakeProperties properties, MeterRegistry registry) {
+        SpringSnakeProperties.KeyFilter settings = properties.getKeyFilter();
+        this.engine = engine;
+        this.enabled = settings.getEnabled() != null ? settings.getEnabled()
+                : !engine.isShared() || "mongo".equals(properties.getFeed().getSource());
+        if (enabled && engine.isShared() && !"mongo".equals(properties.getFeed().getSource())) {
+            log.warn("Key filter enabled on a shared database without springsnake.feed.source=mongo: "
+                    + "keys created by other instances are reported missing until the next rebuild");
+        } else if (!enabled && settings.getEnabled() == null) {
+            log.info("Key filter disabled: keys created by other instances sharing the database would not be seen");
+        }
+        this.falsePositiveRate = settings.getFalsePositiveRate();
+        this.expectedKeys = settings.getExpectedKeys();
+        this.rebuildIntervalMillis = settings.getRebuildInterval().toMillis();
+        this.batchSize = properties.getStream().getBatchSize();
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("The key filter false-positive rate must be between 0 and 1");
+        }
+        Gauge.builder("springsnake.keyfilter.memory", this, filter -> filter.active == null ? 0 : filter.active.sizeInBytes())
+                .description("Memory held by the Bloom filter of existing keys")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("springsnake.keyfilter.fpp", this, filter -> filter.active == null ? 1 : filter.active.falsePositiveRate())
+                .description("Estimated share of missing keys that pass the Bloom filter")
+                .register(registry);
+        this.negatives = lookups("negative", registry);
+        this.falsePositives = lookups("false_positive", registry);
+        if (enabled) {
+            this.builder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "key-filter-builder");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.builder = null;
+        }
+    }
+
+    /**
+     * Build the lookup counter of one result.
+     *
+     * @param result "negative" or "false_positive"
+     * @param registry The Micrometer registry
+     * @return The registered counter
+     */
+    private static Counter lookups(String result, MeterRegistry registry) {
+        return Counter.builder("springsnake.keyfilter.lookups")
+                .description("Lookups of missing keys, by whether the Bloom filter caught them")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * Build the filter in the background and schedule the periodic rebuilds.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            rebuildPending.set(true);
+            builder.execute(this::rebuild);
+            builder.scheduleWithFixedDelay(this::requestRebuild, rebuildIntervalMillis, rebuildIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Check whether a key may exist.
+     *
+     * @param key The key
+     * @return false if the key certainly doesn't exist
+     */
+    public boolean mightContain(String key) {
+        BloomFilter filter = active;
+        if (filter == null || filter.mightContain(key)) {
+            return true;
+        }
+        negatives.increment();
+        return false;
+    }
+
+    /**
+     * Record that a key which passed mightContain() was not found.
+     */
+    public void falsePositive() {
+        if (active != null) {
+            falsePositives.increment();
+        }
+    }
+
+    /**
+     * Add a key that was created, after it has been stored.
+     *
+     * @param key The key
+     */
+    public void add(String key) {
+        if (!enabled) {
+            return;
+        }
+        // Read building before active: a rebuild publishes the new filter as active before it clears building
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(key);
+        }
+        BloomFilter filter = active;
+        if (filter != null) {
+            filter.put(key);
+            if (filter.isOverloaded()) {
+                requestRebuild();
+            }
+        }
+    }
+
+    /**
+     * Queue a rebuild unless one is queued or running already.
+     */
+    public void requestRebuild() {
+        if (enabled && rebuildPending.compareAndSet(false, true)) {
+            builder.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * Build a new filter from the keys in the storage engine and make it active.
+     *
+     * The filter is sized for twice the keys of the previous build, so it
+     * keeps its false-positive rate while the store grows.
+     */
+    void rebuild() {
+        long start = System.nanoTime();
+        BloomFilter next = new BloomFilter(Math.max(expectedKeys, lastCount * 2), falsePositiveRate);
+        building = next;
+        long count = 0;
+        try (Stream<String> keys = engine.streamKeys(batchSize)) {
+            Iterator<String> iterator = keys.iterator();
+            while (iterator.hasNext()) {
+                next.put(iterator.next());
+                count++;
+            }
+            active = next;
+            lastCount = count;
+            log.info("Key filter built with {} keys in {} ms ({} bytes)", count,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), next.sizeInBytes());
+        } catch (RuntimeException e) {
+            log.warn("Key filter build failed, keeping the previous filter: {}", e.getMessage());
+        } finally {
+            building = null;
+            rebuildPending.set(false);
+        }
+    }
+
+    /**
+     * Stop the builder thread when the application shuts down.
+     */
+    @PreDestroy
+    public void close() {
+        if (builder != null) {
+            builder.shutdownNow();
+        }
+    }
+}
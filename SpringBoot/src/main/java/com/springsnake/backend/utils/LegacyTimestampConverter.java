@@ -0,0 +1,44 @@
+package com.springsnake.backend.utils;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+
+/**
+ * Reading converter for change timestamps stored as text
+ *
+ * Up to version 2.0 the lastchange field was written as an ISO zoned date-time
+ * string such as "2025-07-27T09:48:50.883175427Z[Etc/UTC]". It is now a native
+ * date. This converter lets documents written by older versions be read until
+ * MongoStorageEngine has migrated them, and the log-structured engine uses it
+ * to read the timestamps of its records.
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@ReadingConverter
+public class LegacyTimestampConverter implements Converter<String, Instant> {
+
+    @Override
+    public Instant convert(String source) {
+        return parse(source);
+    }
+
+    /**
+     * Parse a timestamp written either as an instant or as an ISO zoned date-time.
+     *
+     * @param text The timestamp, e.g. "2025-07-27T09:48:50.883Z" or "2025-07-27T09:48:50.883175427Z[Etc/UTC]"
+     * @return The parsed point in time, or null if the text is empty
+     * @throws java.time.format.DateTimeParseException If the text is not a valid timestamp
+     */
+    public static Instant parse(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        // ISO_ZONED_DATE_TIME accepts a plain offset as well as an offset followed by a zone id
+        return ZonedDateTime.parse(text).toInstant();
+    }
+}
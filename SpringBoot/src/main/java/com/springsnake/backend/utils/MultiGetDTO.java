@@ -0,0 +1,35 @@
+package com.springsnake.backend.utils;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for the result of a multi-key read
+ * 
+ * This class carries the response of the /api/getmany endpoint: the values of
+ * all requested keys that exist, and the list of requested keys that don't.
+ * 
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MultiGetDTO {
+
+    /**
+     * Map of every found key to its value, in request order
+     */
+    private Map<String, Object> values;
+
+    /**
+     * Requested keys that do not exist, in request order
+     */
+    private List<String> missing;
+
+}
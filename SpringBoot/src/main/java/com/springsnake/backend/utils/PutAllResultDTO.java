@@ -0,0 +1,38 @@
+package com.springsnake.backend.utils;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for the outcome of a batch insert
+ * 
+ * This class reports, key by key, what happened to each entry of a /api/putall
+ * request. A batch no longer fails as a whole when some keys already exist:
+ * every new key is created and every existing key is reported as conflicted.
+ * 
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PutAllResultDTO {
+
+    /**
+     * Keys that were inserted by this batch, in request order
+     */
+    private List<String> created;
+
+    /**
+     * Keys that were not inserted because they already existed
+     * 
+     * This includes keys stored before the batch and keys repeated
+     * within the batch itself (only their first occurrence is inserted).
+     */
+    private List<String> conflicted;
+
+}
@@ -0,0 +1,280 @@
+package com.springsnake.backend.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Per-request logger of the Spring Snake API
+ *
+ * ValueController logs every request through this component instead of a
+ * plain SLF4J logger, which takes logging off the request hot path:
+ *
+ * - Sampling: INFO events (the success path) are kept with the configured
+ *   sample rate; WARN and ERROR events are always kept.
+ * - Async mode: kept events are put into a bounded, lock-free ring buffer and
+ *   formatted and written by a background thread, so a request never waits for
+ *   the appender. When the ring is full, INFO events are dropped while WARN and
+ *   ERROR events are written synchronously instead.
+ *
+ * Every discarded event is counted in springsnake.requestlog.dropped, tagged
+ * with the reason (sampled or overflow).
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Component
+public class RequestLog {
+
+    /**
+     * Logger the events are finally written to
+     */
+    private static final Logger logger = LoggerFactory.getLogger(RequestLog.class);
+
+    /**
+     * One log call captured for the background writer
+     *
+     * @param level The log level
+     * @param format The SLF4J message pattern
+     * @param arguments The message arguments, possibly ending with a Throwable
+     */
+    private record Event(Level level, String format, Object[] arguments) {
+    }
+
+    /**
+     * Share of INFO events that are kept, between 0 and 1
+     */
+    private final double sampleRate;
+
+    /**
+     * Ring buffer of pending events, or null in synchronous mode
+     */
+    private final Ring ring;
+
+    /**
+     * Background thread writing the events, or null in synchronous mode
+     */
+    private final Thread writer;
+
+    /**
+     * INFO events discarded by sampling
+     */
+    private final Counter sampledOut;
+
+    /**
+     * Events discarded because the ring was full
+     */
+    private final Counter overflow;
+
+    /**
+     * Whether the writer keeps waiting for new events
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Constructor that applies the configured mode and starts the writer thread in async mode.
+     *
+     * @param properties The Spring Snake configuration properties
+     * @param registry The Micrometer registry for the drop counters
+     */
+    public RequestLog(SpringSnakeProperties properties, MeterRegistry registry) {
+        SpringSnakeProperties.RequestLog settings = properties.getRequestLog();
+        this.sampleRate = settings.getSampleRate();
+        this.sampledOut = Counter.builder("springsnake.requestlog.dropped")
+                .description("Request log events that were not written")
+                .tag("reason", "sampled")
+                .register(registry);
+        this.overflow = Counter.builder("springsnake.requestlog.dropped")
+                .description("Request log events that were not written")
+                .tag("reason", "overflow")
+                .register(registry);
+        if (settings.isAsync()) {
+            this.ring = new Ring(settings.getBufferSize());
+            this.writer = new Thread(this::drain, "request-log-writer");
+            this.writer.setDaemon(true);
+            this.writer.start();
+        } else {
+            this.ring = null;
+            this.writer = null;
+        }
+    }
+
+    /**
+     * Log a success-path event, subject to sampling.
+     *
+     * @param format The SLF4J message pattern
+     * @param arguments The message arguments
+     */
+    public void info(String format, Object... arguments) {
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            sampledOut.increment();
+            return;
+        }
+        if (ring == null) {
+            logger.info(format, arguments);
+        } else if (!ring.offer(new Event(Level.INFO, format, arguments))) {
+            overflow.increment();
+        }
+    }
+
+    /**
+     * Log a warning; warnings are never sampled or dropped.
+     *
+     * @param format The SLF4J message pattern
+     * @param arguments The message arguments
+     */
+    public void warn(String format, Object... arguments) {
+        if (logger.isWarnEnabled()) {
+            keep(new Event(Level.WARN, format, arguments));
+        }
+    }
+
+    /**
+     * Log an error; errors are never sampled or dropped.
+     *
+     * @param format The SLF4J message pattern
+     * @param arguments The message arguments, optionally ending with a Throwable
+     */
+    public void error(String format, Object... arguments) {
+        if (logger.isErrorEnabled()) {
+            keep(new Event(Level.ERROR, format, arguments));
+        }
+    }
+
+    /**
+     * Hand an event that must not be lost to the writer, or write it right away.
+     *
+     * @param event The event to log
+     */
+    private void keep(Event event) {
+        if (ring == null || !ring.offer(event)) {
+            write(event);
+        }
+    }
+
+    /**
+     * Write one event to the logger.
+     *
+     * @param event The event to log
+     */
+    private static void write(Event event) {
+        switch (event.level()) {
+            case ERROR -> logger.error(event.format(), event.arguments());
+            case WARN -> logger.warn(event.format(), event.arguments());
+            default -> logger.info(event.format(), event.arguments());
+        }
+    }
+
+    /**
+     * Writer loop: write events as they arrive, parking briefly when the ring is empty.
+     */
+    private void drain() {
+        while (true) {
+            Event event = ring.poll();
+            if (event != null) {
+                write(event);
+            } else if (running) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Write the remaining events and stop the writer.
+     */
+    @PreDestroy
+    public void close() {
+        running = false;
+        if (writer != null) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Bounded multi-producer, single-consumer ring buffer
+     *
+     * Each slot carries a sequence number telling producers and the consumer
+     * whose turn it is (after Dmitry Vyukov's bounded queue), so offer and poll
+     * need one compare-and-set at most and never block.
+     */
+    private static final class Ring {
+
+        private final AtomicReferenceArray<Event> slots;
+
+        private final AtomicLongArray sequences;
+
+        private final int mask;
+
+        private final AtomicLong tail = new AtomicLong();
+
+        /**
+         * Next position to read; only touched by the single consumer
+         */
+        private long head;
+
+        Ring(int requestedCapacity) {
+            int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1) << 1);
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.sequences = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+            }
+        }
+
+        boolean offer(Event event) {
+            long position = tail.get();
+            while (true) {
+                int index = (int) position & mask;
+                long difference = sequences.get(index) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        slots.lazySet(index, event);
+                        sequences.set(index, position + 1);
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (difference < 0) {
+                    // The slot still holds an event from one lap ago: the ring is full
+                    return false;
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+
+        Event poll() {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                return null;
+            }
+            Event event = slots.get(index);
+            slots.lazySet(index, null);
+            sequences.set(index, head + mask + 1);
+            head++;
+            return event;
+        }
+    }
+}
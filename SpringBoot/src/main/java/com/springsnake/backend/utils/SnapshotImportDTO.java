@@ -0,0 +1,51 @@
+package com.springsnake.backend.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for the outcome of a snapshot import
+ * 
+ * This class reports how far a /api/snapshot import got. Counts are totals
+ * instead of key lists, because a snapshot may hold tens of millions of keys.
+ * An import that did not reach the end of the snapshot can be resumed by
+ * sending the same snapshot again with the reported offset.
+ * 
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SnapshotImportDTO {
+
+    /**
+     * Number of leading records of the snapshot that are fully loaded
+     * 
+     * This is the offset to resume from if the import is incomplete.
+     */
+    private long offset;
+
+    /**
+     * Keys inserted by this import
+     */
+    private long created;
+
+    /**
+     * Keys not inserted because they already existed
+     */
+    private long conflicted;
+
+    /**
+     * Records skipped because their value had expired
+     */
+    private long expired;
+
+    /**
+     * Whether the whole snapshot was read, up to its end marker
+     */
+    private boolean complete;
+
+}
@@ -0,0 +1,484 @@
+package com.springsnake.backend.utils;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.util.unit.DataSize;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Application-specific configuration for Spring Snake
+ *
+ * This class binds all properties under the "springsnake" prefix from
+ * application.properties (or the matching environment variables) so that
+ * tunables such as cache sizing live in one typed place instead of being
+ * scattered across the service layer.
+ *
+ * Each nested class groups the settings of a single feature and carries
+ * sensible defaults, so the application also starts without any explicit
+ * configuration.
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Data
+@ConfigurationProperties(prefix = "springsnake")
+public class SpringSnakeProperties {
+
+    /**
+     * Settings for the in-process read-through value cache
+     */
+    private Cache cache = new Cache();
+
+    /**
+     * Settings for streaming reads over a database cursor
+     */
+    private Stream stream = new Stream();
+
+    /**
+     * Settings for batch writes such as /api/putall
+     */
+    private Bulk bulk = new Bulk();
+
+    /**
+     * Settings for the in-memory storage engine ("memory" profile)
+     */
+    private Memory memory = new Memory();
+
+    /**
+     * Settings for the embedded log-structured storage engine ("local" profile)
+     */
+    private Local local = new Local();
+
+    /**
+     * Settings for buffered, asynchronous updates
+     */
+    private WriteBehind writeBehind = new WriteBehind();
+
+    /**
+     * Settings for expiring values
+     */
+    private Ttl ttl = new Ttl();
+
+    /**
+     * Settings for the per-request log of ValueController
+     */
+    private RequestLog requestLog = new RequestLog();
+
+    /**
+     * Settings for compressing values stored in MongoDB
+     */
+    private Compression compression = new Compression();
+
+    /**
+     * Settings for the change feed of /api/feed
+     */
+    private Feed feed = new Feed();
+
+    /**
+     * Settings for snapshot export and import
+     */
+    private Snapshot snapshot = new Snapshot();
+
+    /**
+     * Settings for the Bloom filter of existing keys
+     */
+    private KeyFilter keyFilter = new KeyFilter();
+
+    /**
+     * Settings for the admission control of the /api endpoints
+     */
+    private Admission admission = new Admission();
+
+    /**
+     * Configuration of the in-process value cache
+     *
+     * The cache sits in front of the database for single key reads and is
+     * invalidated by every write that goes through ValueService.
+     */
+    @Data
+    public static class Cache {
+
+        /**
+         * Whether reads are served through the cache at all
+         */
+        private boolean enabled = true;
+
+        /**
+         * Maximum number of entries (found and not found) kept in memory
+         */
+        private long maximumSize = 10_000;
+
+        /**
+         * Time after which a cached value is reloaded from the database
+         */
+        private Duration ttl = Duration.ofMinutes(5);
+
+        /**
+         * Time for which a "not found" result is remembered
+         */
+        private Duration negativeTtl = Duration.ofSeconds(5);
+
+        /**
+         * Whether concurrent misses for the same key share one database fetch
+         */
+        private boolean coalesce = true;
+    }
+
+    /**
+     * Configuration of cursor-backed streaming endpoints
+     */
+    @Data
+    public static class Stream {
+
+        /**
+         * Number of documents fetched from the database per cursor batch
+         */
+        private int batchSize = 1_000;
+    }
+
+    /**
+     * Configuration of chunked bulk writes
+     */
+    @Data
+    public static class Bulk {
+
+        /**
+         * Number of values sent to the database per existence lookup and bulk insert
+         */
+        private int chunkSize = 1_000;
+
+        /**
+         * Number of chunks processed concurrently
+         */
+        private int parallelism = 4;
+    }
+
+    /**
+     * Configuration of the in-memory storage engine
+     */
+    @Data
+    public static class Memory {
+
+        /**
+         * Number of lock stripes guarding writes; more stripes mean less contention
+         */
+        private int stripes = 64;
+    }
+
+    /**
+     * Configuration of the embedded log-structured storage engine
+     */
+    @Data
+    public static class Local {
+
+        /**
+         * Directory holding the segment files
+         */
+        private String directory = "./data";
+
+        /**
+         * Size after which the active segment is sealed and memory-mapped (at most 2GB)
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Whether writes are acknowledged only after an fsync; if false, the log is flushed periodically
+         */
+        private boolean syncWrites = true;
+
+        /**
+         * Interval of the background compaction (and flush, without sync writes)
+         */
+        private Duration compactionInterval = Duration.ofMinutes(1);
+
+        /**
+         * Share of overwritten or deleted bytes from which a sealed segment is compacted
+         */
+        private double compactionThreshold = 0.5;
+    }
+
+    /**
+     * Configuration of the write-behind buffer for /api/update
+     */
+    @Data
+    public static class WriteBehind {
+
+        /**
+         * Whether updates are acknowledged from the buffer and flushed asynchronously
+         */
+        private boolean enabled = false;
+
+        /**
+         * Maximum number of distinct keys held in the buffer
+         */
+        private int capacity = 10_000;
+
+        /**
+         * Number of buffered keys that triggers a flush and maximum keys per bulk write
+         */
+        private int batchSize = 500;
+
+        /**
+         * Maximum time an update stays in the buffer before it is flushed
+         */
+        private Duration flushInterval = Duration.ofMillis(100);
+
+        /**
+         * Maximum time a writer waits for space in a full buffer before it is rejected
+         */
+        private Duration offerTimeout = Duration.ofSeconds(1);
+    }
+
+    /**
+     * Configuration of value expiry
+     */
+    @Data
+    public static class Ttl {
+
+        /**
+         * Interval at which the embedded engines remove expired values (MongoDB uses its TTL monitor)
+         */
+        private Duration sweepInterval = Duration.ofSeconds(1);
+    }
+
+    /**
+     * Configuration of the per-request log
+     */
+    @Data
+    public static class RequestLog {
+
+        /**
+         * Whether log events are handed to a background writer instead of being written on the request thread
+         */
+        private boolean async = false;
+
+        /**
+         * Share of success-path (INFO) events that are logged; warnings and errors are always logged
+         */
+        private double sampleRate = 1.0;
+
+        /**
+         * Capacity of the ring buffer in async mode, rounded up to a power of two
+         */
+        private int bufferSize = 8_192;
+    }
+
+    /**
+     * Configuration of value compression with the MongoDB storage engine
+     */
+    @Data
+    public static class Compression {
+
+        /**
+         * Whether large values are stored compressed
+         */
+        private boolean enabled = true;
+
+        /**
+         * Serialized JSON size from which a value is stored compressed
+         */
+        private DataSize threshold = DataSize.ofKilobytes(16);
+
+        /**
+         * Compression algorithm for new values ("deflate" or "gzip"); stored values keep theirs
+         */
+        private String algorithm = "deflate";
+
+        /**
+         * Compression level from 1 (fastest) to 9 (smallest)
+         */
+        private int level = 6;
+
+        /**
+         * Whether the traffic to MongoDB is compressed with zlib, if the server supports it
+         */
+        private boolean wire = true;
+    }
+
+    /**
+     * Configuration of the change feed
+     */
+    @Data
+    public static class Feed {
+
+        /**
+         * Where events come from: "service" (writes through this instance) or
+         * "mongo" (a MongoDB change stream, which needs a replica set)
+         */
+        private String source = "service";
+
+        /**
+         * Number of recent events kept for subscribers resuming with Last-Event-ID
+         */
+        private int historySize = 10_000;
+
+        /**
+         * Events queued per subscriber before it is disconnected as too slow
+         */
+        private int subscriberBuffer = 1_000;
+
+        /**
+         * Maximum number of concurrent subscribers
+         */
+        private int maxSubscribers = 256;
+
+        /**
+         * Interval of keep-alive comments on idle connections
+         */
+        private Duration heartbeat = Duration.ofSeconds(15);
+    }
+
+    /**
+     * Configuration of snapshot export and import
+     *
+     * Imports insert in chunks of bulk.chunk-size with bulk.parallelism
+     * concurrent chunks.
+     */
+    @Data
+    public static class Snapshot {
+
+        /**
+         * Gzip level of exported snapshots, from 1 (fastest) to 9 (smallest)
+         */
+        private int level = 1;
+
+        /**
+         * Number of records between two progress log lines
+         */
+        private long progressInterval = 100_000;
+    }
+
+    /**
+     * Configuration of the Bloom filter that answers lookups of missing keys
+     */
+    @Data
+    public static class KeyFilter {
+
+        /**
+         * Whether lookups of keys that certainly don't exist skip the storage engine,
+         * or null to use the filter only where it learns every new key: with an
+         * embedded engine, or with MongoDB when the change feed reads the change stream
+         */
+        private Boolean enabled;
+
+        /**
+         * Target false-positive rate of the filter
+         */
+        private double falsePositiveRate = 0.01;
+
+        /**
+         * Smallest number of keys the filter is sized for
+         */
+        private long expectedKeys = 1_000_000;
+
+        /**
+         * Interval of full rebuilds, which drop deleted and expired keys
+         */
+        private Duration rebuildInterval = Duration.ofHours(1);
+    }
+
+    /**
+     * Configuration of the adaptive concurrency limits in front of the /api endpoints
+     */
+    @Data
+    public static class Admission {
+
+        /**
+         * Whether requests beyond the concurrency limits are rejected
+         */
+        private boolean enabled = true;
+
+        /**
+         * Value of the Retry-After header of rejected requests
+         */
+        private Duration retryAfter = Duration.ofSeconds(1);
+
+        /**
+         * Endpoints counted against the bulk limit instead of the point limit
+         */
+        private List<String> bulkPaths = List.of("/api/getall", "/api/getall/stream", "/api/putall",
+                "/api/deleteall", "/api/snapshot", "/api/changes");
+
+        /**
+         * Endpoints that are never limited, such as long-lived subscriptions
+         */
+        private List<String> exemptPaths = List.of("/api/feed");
+
+        /**
+         * Endpoints whose duration depends on the size of their payload rather than on load, such as the snapshot
+         * import, so it isn't taken as a latency sample
+         */
+        private List<String> unsampledPaths = List.of("/api/snapshot");
+
+        /**
+         * Limit of the cheap single and multi-key operations
+         */
+        private Limit point = new Limit(100, 10, 200, Duration.ofMillis(500));
+
+        /**
+         * Limit of the operations that scan or write the whole collection
+         */
+        private Limit bulk = new Limit(4, 1, 16, Duration.ofSeconds(30));
+
+        /**
+         * Factor applied to a limit when a request signals overload
+         */
+        private double backoffRatio = 0.9;
+
+        /**
+         * Sustained requests per second allowed per client, or 0 to not limit clients
+         */
+        private double clientRate = 0;
+
+        /**
+         * Requests a client may send at once above its sustained rate
+         */
+        private int clientBurst = 100;
+
+        /**
+         * Header identifying the client, or empty to use the remote address
+         */
+        private String clientHeader = "";
+
+        /**
+         * Largest number of clients whose buckets are remembered
+         */
+        private long maxClients = 100_000;
+
+        /**
+         * Bounds and latency target of one concurrency limit
+         */
+        @Data
+        @NoArgsConstructor
+        @AllArgsConstructor
+        public static class Limit {
+
+            /**
+             * Concurrent requests allowed at startup
+             */
+            private int initial;
+
+            /**
+             * Concurrent requests that are always allowed
+             */
+            private int min;
+
+            /**
+             * Concurrent requests that are never exceeded
+             */
+            private int max;
+
+            /**
+             * Latency above which a request signals overload
+             */
+            private Duration latencyTarget;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.springsnake.backend.utils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Component;
+
+import com.springsnake.backend.values;
+import com.springsnake.backend.storage.StorageEngine;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Chunked, parallel batch inserter for Spring Snake values
+ * 
+ * This component implements /api/putall without a query per key. The batch is
+ * deduplicated, split into chunks of the configured size, and every chunk is
+ * handed to StorageEngine.insertAll by a worker of a small thread pool. With
+ * MongoDB that costs two round trips per chunk: one $in lookup of the existing
+ * keys and one unordered bulk insert of the rest.
+ * 
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Component
+public class ValueBulkWriter {
+
+    /**
+     * Storage engine that inserts each chunk
+     */
+    private final StorageEngine engine;
+
+    /**
+     * Number of values handled per database round trip
+     */
+    private final int chunkSize;
+
+    /**
+     * Worker pool that processes chunks in parallel
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Constructor that sizes the chunks and the worker pool from the configuration.
+     * 
+     * @param engine The storage engine that stores the values
+     * @param properties The Spring Snake configuration properties
+     */
+    public ValueBulkWriter(StorageEngine engine, SpringSnakeProperties properties) {
+        this.engine = engine;
+        this.chunkSize = properties.getBulk().getChunkSize();
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(properties.getBulk().getParallelism(), runnable -> {
+            Thread thread = new Thread(runnable, "bulk-writer-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Insert a batch of values, reporting the outcome per key.
+     * 
+     * Only the first occurrence of a key within the batch is inserted; later
+     * occurrences are reported as conflicted.
+     * 
+     * @param input List of ValueDTO objects to insert
+     * @return PutAllResultDTO with the created and conflicted keys in request order
+     */
+    public PutAllResultDTO insertAll(List<ValueDTO> input) {
+        // Keep the first occurrence of each key
+        Instant now = Instant.now();
+        Set<String> seen = new HashSet<>();
+        List<values> unique = new ArrayList<>();
+        for (ValueDTO value : input) {
+            if (seen.add(value.getKey())) {
+                values entity = new values(value.getKey(), value.getValue());
+                entity.setExpiresAt(value.expiryFrom(now));
+                unique.add(entity);
+            }
+        }
+
+        // Insert all chunks in parallel
+        List<CompletableFuture<Set<String>>> chunks = new ArrayList<>();
+        for (int from = 0; from < unique.size(); from += chunkSize) {
+            List<values> chunk = unique.subList(from, Math.min(from + chunkSize, unique.size()));
+            chunks.add(CompletableFuture.supplyAsync(() -> engine.insertAll(chunk), executor));
+        }
+        Set<String> inserted = new HashSet<>();
+        try {
+            chunks.forEach(chunk -> inserted.addAll(chunk.join()));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+
+        // Report every key of the request in its original order
+        List<String> created = new ArrayList<>();
+        List<String> conflicted = new ArrayList<>();
+        for (ValueDTO value : input) {
+            if (inserted.remove(value.getKey())) {
+                created.add(value.getKey());
+            } else {
+                conflicted.add(value.getKey());
+            }
+        }
+        return new PutAllResultDTO(created, conflicted);
+    }
+
+    /**
+     * Insert one chunk of complete values entities on the worker pool.
+     * 
+     * Unlike insertAll(), the entities are stored as given, including their
+     * lastchange, expiry and version, which is what restoring a snapshot needs.
+     * 
+     * @param chunk The entities to insert, with distinct keys
+     * @return Future of the keys that were inserted
+     */
+    public CompletableFuture<Set<String>> submit(List<values> chunk) {
+        return CompletableFuture.supplyAsync(() -> engine.insertAll(chunk), executor);
+    }
+
+    /**
+     * Stop the worker pool when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,424 @@
+package com.springsnake.backend.utils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * In-process read-through cache for Spring Snake values
+ *
+ * This component keeps recently read ValueDTO objects in memory so that hot keys
+ * do not cost a MongoDB round trip on every /api/get and /api/getfull call.
+ * It is bounded by entry count and by time, and it also remembers "not found"
+ * results for a shorter period so repeated lookups of missing keys stay cheap.
+ * A value with an expiry date is never cached beyond that date. Caffeine keeps
+ * these per-entry deadlines in a hierarchical timer wheel, so expiring an entry
+ * costs constant time and never scans the cache.
+ *
+ * The cache is local to this instance: ValueService invalidates it on every
+ * write, but writes made through another instance only become visible here
+ * once the cached entry expires.
+ *
+ * Concurrent misses for the same key share one in-flight database fetch, also
+ * when caching is disabled and across single and multi-key reads: the first
+ * request loads the key and every request arriving meanwhile waits for its
+ * result. Invalidating a key detaches its fetch, so a read that starts after
+ * a write never receives a value loaded before it, and a detached fetch does
+ * not populate the cache. With coalescing disabled, fetches are still
+ * registered so that invalidation can detach them, but every miss loads on
+ * its own.
+ *
+ * Hit, miss and eviction counters are published through Micrometer under the
+ * "cache.*" meters with the tag cache=values. Keys fetched from the database
+ * and keys served by another request's fetch are counted by
+ * springsnake.cache.loads with the tag result=loaded or result=coalesced.
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Component
+public class ValueCache {
+
+    /**
+     * Name used for the cache in the exposed metrics
+     */
+    public static final String CACHE_NAME = "values";
+
+    /**
+     * Marker stored for keys that are known not to exist
+     */
+    private static final ValueDTO NOT_FOUND = new ValueDTO();
+
+    /**
+     * Underlying Caffeine cache, or null if caching is disabled
+     */
+    private final Cache<String, ValueDTO> cache;
+
+    /**
+     * Database fetches in progress, by key, or null if neither caching nor coalescing is enabled
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<ValueDTO>> flights;
+
+    /**
+     * Whether a miss joins a fetch of the same key that is already in progress
+     */
+    private final boolean coalesce;
+
+    /**
+     * Counter of keys fetched from the database
+     */
+    private final Counter loaded;
+
+    /**
+     * Counter of keys served by a fetch started by another request
+     */
+    private final Counter coalesced;
+
+    /**
+     * Constructor that builds the cache from the application configuration.
+     *
+     * @param properties The Spring Snake configuration properties
+     * @param registry The meter registry used to publish cache statistics
+     */
+    public ValueCache(SpringSnakeProperties properties, MeterRegistry registry) {
+        SpringSnakeProperties.Cache config = properties.getCache();
+        this.coalesce = config.isCoalesce();
+        this.flights = config.isEnabled() || coalesce ? new ConcurrentHashMap<>() : null;
+        this.loaded = Counter.builder("springsnake.cache.loads")
+                .description("Keys fetched from the database on a cache miss")
+                .tag("result", "loaded")
+                .register(registry);
+        this.coalesced = Counter.builder("springsnake.cache.loads")
+                .description("Keys served by a database fetch of another request")
+                .tag("result", "coalesced")
+                .register(registry);
+        if (flights != null) {
+            Gauge.builder("springsnake.cache.flights", flights, Map::size)
+                    .description("Database fetches in progress that concurrent reads can join")
+                    .register(registry);
+        }
+        if (!config.isEnabled()) {
+            this.cache = null;
+            return;
+        }
+        long ttl = config.getTtl().toNanos();
+        long negativeTtl = config.getNegativeTtl().toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfter(new Expiry<String, ValueDTO>() {
+                    @Override
+                    public long expireAfterCreate(String key, ValueDTO value, long currentTime) {
+                        if (value == NOT_FOUND) {
+                            return negativeTtl;
+                        }
+                        if (value.getExpiresAt() == null) {
+                            return ttl;
+                        }
+                        Instant now = Instant.now();
+                        if (value.getExpiresAt().isAfter(now.plusNanos(ttl))) {
+                            return ttl;
+                        }
+                        return Math.max(0, Duration.between(now, value.getExpiresAt()).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, ValueDTO value, long currentTime,
+                            long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, ValueDTO value, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Retrieve a value from the cache, loading it on a miss.
+     *
+     * Concurrent misses for the same key are collapsed into one call of the loader,
+     * unless coalescing is disabled. A null result from the loader is cached as "not found" for the negative TTL.
+     *
+     * @param key The key to look up
+     * @param loader Function that reads the value from the database, returning null if absent
+     * @return The cached or freshly loaded ValueDTO, or null if the key does not exist
+     */
+    public ValueDTO get(String key, Function<String, ValueDTO> loader) {
+        if (flights == null) {
+            return count(loader.apply(key));
+        }
+        if (cache != null) {
+            ValueDTO value = cache.getIfPresent(key);
+            if (value != null) {
+                return unwrap(value);
+            }
+        }
+        CompletableFuture<ValueDTO> flight = new CompletableFuture<>();
+        CompletableFuture<ValueDTO> joined = register(key, flight);
+        if (joined != null) {
+            coalesced.increment();
+            return unwrap(await(joined));
+        }
+        try {
+            ValueDTO value = wrap(count(loader.apply(key)));
+            land(key, flight, value);
+            return unwrap(value);
+        } catch (RuntimeException e) {
+            flights.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Retrieve a value from the cache without loading it on a miss.
+     *
+     * @param key The key to look up
+     * @return The cached ValueDTO, or null if it is not cached or cached as "not found"
+     */
+    public ValueDTO getIfPresent(String key) {
+        if (cache == null) {
+            return null;
+        }
+        ValueDTO value = cache.getIfPresent(key);
+        return value == NOT_FOUND ? null : value;
+    }
+
+    /**
+     * Retrieve several values from the cache, loading all misses at once.
+     * 
+     * The loader receives every key that is not cached and not already being
+     * fetched by another request, and is expected to fetch them in bulk. Keys
+     * it does not return are cached as "not found". The keys being fetched by
+     * other requests are awaited after the loader has returned, so two batches
+     * sharing keys never wait for each other in a cycle.
+     * 
+     * @param keys The keys to look up
+     * @param loader Function that reads a set of keys from the database and returns the found ones
+     * @return Map of the keys that exist to their ValueDTO, in the order of the requested keys
+     */
+    public Map<String, ValueDTO> getAll(Collection<String> keys, Function<Set<String>, Map<String, ValueDTO>> loader) {
+        Map<String, ValueDTO> values;
+        if (flights != null) {
+            values = loadAll(keys, loader);
+        } else {
+            values = loader.apply(Set.copyOf(keys));
+            loaded.increment(keys.size());
+        }
+        Map<String, ValueDTO> found = new LinkedHashMap<>();
+        for (String key : keys) {
+            ValueDTO value = values.get(key);
+            if (value != null && value != NOT_FOUND) {
+                found.put(key, value);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Look up several keys in the cache and the in-flight fetches, loading the rest at once.
+     * 
+     * @param keys The keys to look up
+     * @param loader Function that reads a set of keys from the database and returns the found ones
+     * @return Map of every key to its ValueDTO or the "not found" marker
+     */
+    private Map<String, ValueDTO> loadAll(Collection<String> keys, Function<Set<String>, Map<String, ValueDTO>> loader) {
+        Map<String, ValueDTO> values = new HashMap<>();
+        Map<String, CompletableFuture<ValueDTO>> owned = new HashMap<>();
+        Map<String, CompletableFuture<ValueDTO>> joined = new HashMap<>();
+        for (String key : new LinkedHashSet<>(keys)) {
+            ValueDTO cached = cache == null ? null : cache.getIfPresent(key);
+            if (cached != null) {
+                values.put(key, cached);
+                continue;
+            }
+            CompletableFuture<ValueDTO> flight = new CompletableFuture<>();
+            CompletableFuture<ValueDTO> existing = register(key, flight);
+            if (existing == null) {
+                owned.put(key, flight);
+            } else {
+                joined.put(key, existing);
+            }
+        }
+        if (!owned.isEmpty()) {
+            Map<String, ValueDTO> found;
+            try {
+                found = loader.apply(new HashSet<>(owned.keySet()));
+            } catch (RuntimeException e) {
+                owned.forEach((key, flight) -> {
+                    flights.remove(key, flight);
+                    flight.completeExceptionally(e);
+                });
+                throw e;
+            }
+            loaded.increment(owned.size());
+            owned.forEach((key, flight) -> {
+                ValueDTO value = wrap(found.get(key));
+                land(key, flight, value);
+                values.put(key, value);
+            });
+        }
+        if (!joined.isEmpty()) {
+            coalesced.increment(joined.size());
+            joined.forEach((key, flight) -> values.put(key, await(flight)));
+        }
+        return values;
+    }
+
+    /**
+     * Register a fetch of a key, so that invalidate() can detach it.
+     * 
+     * Without coalescing, the fetch replaces any other one of the same key,
+     * which then completes without caching its result.
+     * 
+     * @param key The key to fetch
+     * @param flight The fetch of this request
+     * @return The fetch in progress to join instead, or null if this request must load the key
+     */
+    private CompletableFuture<ValueDTO> register(String key, CompletableFuture<ValueDTO> flight) {
+        if (coalesce) {
+            return flights.putIfAbsent(key, flight);
+        }
+        flights.put(key, flight);
+        return null;
+    }
+
+    /**
+     * Complete a fetch, caching its result unless the key was invalidated meanwhile.
+     * 
+     * The check and the caching are atomic with respect to invalidate(), which
+     * detaches the fetch before it drops the cached entry.
+     * 
+     * @param key The fetched key
+     * @param flight The fetch started by this request
+     * @param value The loaded value or the "not found" marker
+     */
+    private void land(String key, CompletableFuture<ValueDTO> flight, ValueDTO value) {
+        flights.computeIfPresent(key, (k, current) -> {
+            if (current != flight) {
+                return current;
+            }
+            if (cache != null) {
+                cache.put(k, value);
+            }
+            return null;
+        });
+        flight.complete(value);
+    }
+
+    /**
+     * Wait for a fetch started by another request.
+     * 
+     * @param flight The fetch to wait for
+     * @return Its ValueDTO or the "not found" marker
+     */
+    private static ValueDTO await(CompletableFuture<ValueDTO> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            // Surface the failure of the fetch as if this request had made it
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Count one key fetched from the database.
+     * 
+     * @param value The loaded ValueDTO, or null
+     * @return The same ValueDTO
+     */
+    private ValueDTO count(ValueDTO value) {
+        loaded.increment();
+        return value;
+    }
+
+    /**
+     * Replace a missing value by the "not found" marker.
+     * 
+     * @param value The loaded ValueDTO, or null
+     * @return The ValueDTO, or the marker
+     */
+    private static ValueDTO wrap(ValueDTO value) {
+        return value == null ? NOT_FOUND : value;
+    }
+
+    /**
+     * Replace the "not found" marker by null.
+     * 
+     * @param value A cached or loaded ValueDTO, or the marker
+     * @return The ValueDTO, or null
+     */
+    private static ValueDTO unwrap(ValueDTO value) {
+        return value == NOT_FOUND ? null : value;
+    }
+
+    /**
+     * Remove a single key from the cache.
+     *
+     * @param key The key whose cached entry should be dropped
+     */
+    public void invalidate(String key) {
+        if (flights != null) {
+            flights.remove(key);
+        }
+        if (cache != null) {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Remove several keys from the cache.
+     *
+     * @param keys The keys whose cached entries should be dropped
+     */
+    public void invalidateAll(Collection<String> keys) {
+        if (flights != null) {
+            keys.forEach(flights::remove);
+        }
+        if (cache != null) {
+            cache.invalidateAll(keys);
+        }
+    }
+
+    /**
+     * Remove every entry from the cache.
+     */
+    public void invalidateAll() {
+        if (flights != null) {
+            flights.clear();
+        }
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+}
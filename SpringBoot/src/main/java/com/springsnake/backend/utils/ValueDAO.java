@@ -7,12 +7,13 @@ import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.springsnake.backend.values;
+import com.springsnake.backend.storage.StorageEngine;
 
 /**
  * Data Access Object for Spring Snake Value operations
  * 
  * This class provides a convenient interface for batch operations on key-value pairs.
- * It acts as a buffer between the service layer and the repository, allowing for
+ * It acts as a buffer between the service layer and the storage engine, allowing for
  * efficient bulk operations and data manipulation before persisting to the database.
  * 
  * The ValueDAO maintains an internal list of values that can be manipulated in memory
@@ -25,10 +26,10 @@ import com.springsnake.backend.values;
 public class ValueDAO {
 
     /**
-     * Repository interface for database operations
+     * Storage engine for database operations
      */
     @Autowired
-    private final ValueRepository valueRepo;
+    private final StorageEngine engine;
 
     /**
      * Internal list to hold value instances for batch operations
@@ -36,26 +37,26 @@ public class ValueDAO {
     private List<values> valuesList;
 
     /**
-     * Constructor that initializes the ValueDAO with a repository.
+     * Constructor that initializes the ValueDAO with a storage engine.
      * 
      * This constructor properly initializes the internal valuesList to prevent
      * NullPointerException issues during operations.
      * 
-     * @param valueRepo The ValueRepository instance for database operations
+     * @param engine The StorageEngine instance for database operations
      */
-    public ValueDAO(ValueRepository valueRepo) {
-        this.valueRepo = valueRepo;
+    public ValueDAO(StorageEngine engine) {
+        this.engine = engine;
         this.valuesList = new ArrayList<>();
     }
 
     /**
-     * Retrieve all values from the repository and load them into memory.
+     * Retrieve all values from the storage engine and load them into memory.
      * 
      * This method fetches all stored values from the database and populates
      * the internal valuesList for further operations.
      */
     public void pull() {
-        valuesList = valueRepo.findAll();
+        valuesList = engine.findAll();
     }
 
     /**
@@ -69,7 +70,7 @@ public class ValueDAO {
     public List<ValueDTO> getAll() {
         return valuesList.stream().map(value -> {
             // Mapping values to ValueDTO
-            return new ValueDTO(value.getKey(), value.getValue(), value.getLastchange());
+            return ValueDTO.of(value);
         }).collect(Collectors.toList());
     }
 
@@ -101,11 +102,11 @@ public class ValueDAO {
     /**
      * Persist all values from internal list to the database.
      * 
-     * This method commits all values stored in the internal valuesList
-     * to the database repository. This is typically called after batch
-     * operations to save changes permanently.
+     * This method inserts all values stored in the internal valuesList
+     * through the storage engine, skipping keys that already exist. This is
+     * typically called after batch operations to save changes permanently.
      */
     public void close() {
-        valueRepo.saveAll(valuesList);
+        engine.insertAll(valuesList);
     }
 }
\ No newline at end of file
@@ -1,7 +1,15 @@
 package com.springsnake.backend.utils;
 
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.springsnake.backend.values;
+
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -18,6 +26,9 @@ import lombok.NoArgsConstructor;
  * - Key: Unique identifier with size constraints
  * - Value: The stored data (can be any object type)
  * - LastChange: Timestamp of the last modification
+ * - TTL: Optional time to live in seconds, accepted on writes only
+ * - ExpiresAt: Point in time at which the value expires, if it does
+ * - Version: Number of the stored state, returned in responses only
  * 
  * @author M04ph3u2
  * @version 2.0
@@ -28,6 +39,11 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 public class ValueDTO {
 
+    /**
+     * Largest accepted TTL in seconds (100 years)
+     */
+    public static final long MAX_TTL = 3_153_600_000L;
+
     /**
      * Unique key identifier for the value
      * 
@@ -50,9 +66,72 @@ public class ValueDTO {
     /**
      * Timestamp of the last modification
      * 
-     * This field stores the ISO formatted timestamp of when the value
-     * was last created or updated. It's automatically managed by the system.
+     * This field stores the point in time when the value was last created
+     * or updated, serialized as an ISO-8601 instant. It's automatically
+     * managed by the system.
+     */
+    private Instant lastchange;
+
+    /**
+     * Time to live in seconds
+     * 
+     * Optional on put, putall and update. The value expires this many seconds
+     * after the write. On update, omitting it keeps the current expiry.
+     * It is never part of a response; see expiresAt instead.
+     */
+    @Positive(message = "TTL must be a positive number of seconds")
+    @Max(value = MAX_TTL, message = "TTL must not exceed 100 years")
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    private Long ttl;
+
+    /**
+     * Point in time at which the value expires
+     * 
+     * This field is only present in responses for values that have a TTL.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Instant expiresAt;
+
+    /**
+     * Version of the stored value
+     * 
+     * This field is managed by the system and ignored in requests. It is
+     * absent for an update that is still waiting in the write-behind buffer,
+     * whose version is only assigned when it is written.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    /**
+     * Constructor for a value without expiry
+     * 
+     * @param key The key of the value
+     * @param value The stored data
+     * @param lastchange The timestamp of the last modification
+     */
+    public ValueDTO(String key, Object value, Instant lastchange) {
+        this(key, value, lastchange, null, null, null);
+    }
+
+    /**
+     * Create the DTO of a stored values entity.
+     * 
+     * @param value The values entity
+     * @return ValueDTO with key, value, lastchange, expiry and version of the entity
+     */
+    public static ValueDTO of(values value) {
+        return new ValueDTO(value.getKey(), value.getValue(), value.getLastchange(), null, value.getExpiresAt(),
+                value.getVersion());
+    }
+
+    /**
+     * Compute the expiry date of a write from its TTL.
+     * 
+     * @param now The time of the write
+     * @return The expiry date, or null if no TTL was given
      */
-    private String lastchange;
-    
+    public Instant expiryFrom(Instant now) {
+        return ttl == null ? null : now.plusSeconds(ttl);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.springsnake.backend.utils;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Payload metrics of the Spring Snake API
+ * 
+ * Latency is already covered elsewhere: http.server.requests times every
+ * endpoint by status, the springsnake.service timer every ValueService method
+ * and mongodb.driver.commands every database command. This component adds the
+ * size side of the picture, so that slow requests can be told apart from
+ * big ones:
+ * 
+ * - springsnake.value.size: request body size of /api/put and /api/update
+ * - springsnake.putall.batch.size: number of values per /api/putall request
+ * 
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Component
+public class ValueMetrics {
+
+    /**
+     * Size of single value write requests in bytes
+     */
+    private final DistributionSummary valueSize;
+
+    /**
+     * Number of values per batch write request
+     */
+    private final DistributionSummary batchSize;
+
+    /**
+     * Constructor that registers the distribution summaries.
+     * 
+     * @param registry The Micrometer registry
+     */
+    public ValueMetrics(MeterRegistry registry) {
+        this.valueSize = DistributionSummary.builder("springsnake.value.size")
+                .description("Request body size of single value writes")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.batchSize = DistributionSummary.builder("springsnake.putall.batch.size")
+                .description("Number of values per putall request")
+                .baseUnit("values")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Record the size of a single value write.
+     * 
+     * @param bytes The request body size, or a negative number if unknown
+     */
+    public void recordValueSize(long bytes) {
+        if (bytes >= 0) {
+            valueSize.record(bytes);
+        }
+    }
+
+    /**
+     * Record the size of a batch write.
+     * 
+     * @param values The number of values in the batch
+     */
+    public void recordBatchSize(int values) {
+        batchSize.record(values);
+    }
+}
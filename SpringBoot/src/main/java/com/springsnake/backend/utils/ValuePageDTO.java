@@ -0,0 +1,38 @@
+package com.springsnake.backend.utils;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for one page of a key listing
+ * 
+ * This class carries a page of key-value pairs returned by the /api/list
+ * endpoint together with the opaque cursor that continues the listing.
+ * Pages are ordered by key, and the cursor encodes the last key of the page,
+ * so fetching any page costs the same regardless of its position.
+ * 
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ValuePageDTO {
+
+    /**
+     * The key-value pairs of this page, in ascending key order
+     */
+    private List<ValueDTO> values;
+
+    /**
+     * Opaque cursor to pass as "after" for the next page
+     * 
+     * This field is null when there are no further values to list.
+     */
+    private String next;
+
+}
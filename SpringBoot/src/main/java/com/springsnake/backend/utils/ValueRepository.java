@@ -17,6 +17,9 @@ import com.springsnake.backend.values;
  * - Custom query method for finding values by key
  * - Automatic query derivation based on method names
  * 
+ * Queries that must exclude expired values (updates, deletes, range scans)
+ * are built with MongoTemplate in MongoStorageEngine instead.
+ * 
  * @author M04ph3u2
  * @version 2.0
  * @since 1.0
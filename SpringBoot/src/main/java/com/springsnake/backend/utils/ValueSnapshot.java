@@ -0,0 +1,412 @@
+package com.springsnake.backend.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.springsnake.backend.values;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compressed, length-prefixed snapshots of all stored values
+ *
+ * A snapshot is one gzip stream holding a magic header, then one record per
+ * value, then an end marker with the record count:
+ *
+ * - header: the 8 ASCII bytes "SNAKSNP1"
+ * - record: 4-byte big-endian length, then the CBOR encoding of key, value,
+ *   lastchange, expiresAt and version
+ * - end: a length of 0, then the 8-byte record count
+ *
+ * Export writes the records while a cursor walks the collection, so memory use
+ * doesn't depend on its size. Import reads records into chunks of the bulk
+ * chunk size and hands them to ValueBulkWriter, with at most bulk.parallelism
+ * chunks in flight, so reading, decompressing and inserting overlap while
+ * memory stays bounded. Values keep their lastchange, expiry and version;
+ * existing keys are left untouched and counted as conflicts.
+ *
+ * Because existing keys are never overwritten, an import can be repeated
+ * safely. An interrupted import reports and logs the number of leading records
+ * that are fully loaded; sending the same snapshot again with that offset
+ * skips them without decoding them.
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Component
+@Slf4j
+public class ValueSnapshot {
+
+    /**
+     * First bytes of every snapshot, naming the format and its version
+     */
+    private static final byte[] MAGIC = "SNAKSNP1".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Largest record accepted on import, to reject corrupt lengths before allocating
+     */
+    private static final int MAX_RECORD_SIZE = 256 * 1024 * 1024;
+
+    /**
+     * Size of the buffers around the gzip streams
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * One stored value as written to a snapshot
+     *
+     * @param key The key
+     * @param value The value
+     * @param lastchange The time of the last change
+     * @param expiresAt The expiry date, or null
+     * @param version The version
+     */
+    record Entry(String key, Object value, Instant lastchange, Instant expiresAt, long version) {
+    }
+
+    /**
+     * Inserter of the imported chunks
+     */
+    private final ValueBulkWriter bulkWriter;
+
+    /**
+     * Bloom filter of existing keys, which learns every imported key
+     */
+    private final KeyFilter keyFilter;
+
+    /**
+     * Mapper encoding the records as CBOR
+     */
+    private final ObjectMapper mapper;
+
+    /**
+     * Number of records inserted per chunk
+     */
+    private final int chunkSize;
+
+    /**
+     * Maximum number of chunks being inserted at the same time
+     */
+    private final int parallelism;
+
+    /**
+     * Gzip level of exported snapshots
+     */
+    private final int level;
+
+    /**
+     * Number of records between two progress log lines
+     */
+    private final long progressInterval;
+
+    /**
+     * Number of records exported
+     */
+    private final Counter exported;
+
+    /**
+     * Number of records imported
+     */
+    private final Counter imported;
+
+    /**
+     * Constructor that reads the configuration and registers the metrics.
+     *
+     * @param bulkWriter The inserter of imported chunks
+     * @param keyFilter The Bloom filter of existing keys
+     * @param properties The Spring Snake configuration properties
+     * @param builder The Jackson builder of the application
+     * @param registry The Micrometer registry
+     * @throws IllegalArgumentException If the gzip level is out of range
+     */
+    public ValueSnapshot(ValueBulkWriter bulkWriter, KeyFilter keyFilter, SpringSnakeProperties properties,
+            Jackson2ObjectMapperBuilder builder, MeterRegistry registry) {
+        this.bulkWriter = bulkWriter;
+        this.keyFilter = keyFilter;
+        this.mapper = builder.factory(new CBORFactory()).build();
+        this.chunkSize = properties.getBulk().getChunkSize();
+        this.parallelism = properties.getBulk().getParallelism();
+        this.level = properties.getSnapshot().getLevel();
+        this.progressInterval = Math.max(1, properties.getSnapshot().getProgressInterval());
+        if (level < 1 || level > 9) {
+            throw new IllegalArgumentException("The snapshot gzip level must be between 1 and 9");
+        }
+        this.exported = records("export", registry);
+        this.imported = records("import", registry);
+    }
+
+    /**
+     * Build the record counter of one direction.
+     *
+     * @param operation "export" or "import"
+     * @param registry The Micrometer registry
+     * @return The registered counter
+     */
+    private static Counter records(String operation, MeterRegistry registry) {
+        return Counter.builder("springsnake.snapshot.records")
+                .description("Records written to or read from snapshots")
+                .tag("operation", operation)
+                .register(registry);
+    }
+
+    /**
+     * Write a snapshot of values.
+     *
+     * @param values The values to write, typically a cursor over the collection
+     * @param out The stream receiving the snapshot; it is not closed
+     * @return The number of records written
+     * @throws IOException If the snapshot cannot be written
+     */
+    public long export(Stream<values> values, OutputStream out) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE) {
+            {
+                def.setLevel(level);
+            }
+        };
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(gzip, BUFFER_SIZE));
+        data.write(MAGIC);
+        long count = 0;
+        Iterator<values> iterator = values.iterator();
+        while (iterator.hasNext()) {
+            values value = iterator.next();
+            byte[] record = mapper.writeValueAsBytes(new Entry(value.getKey(), value.getValue(),
+                    value.getLastchange(), value.getExpiresAt(), value.getVersion()));
+            data.writeInt(record.length);
+            data.write(record);
+            if (++count % progressInterval == 0) {
+                exported.increment(progressInterval);
+                log.info("Snapshot export progress - {} records written", count);
+            }
+        }
+        exported.increment(count % progressInterval);
+        // The end marker lets an import tell a complete snapshot from a truncated one
+        data.writeInt(0);
+        data.writeLong(count);
+        data.flush();
+        gzip.finish();
+        return count;
+    }
+
+    /**
+     * Load a snapshot, inserting the keys that don't exist yet.
+     *
+     * The stream is read to its end marker unless it ends early or an insert
+     * fails; the result then reports the offset to resume from.
+     *
+     * @param in The snapshot, as written by export()
+     * @param offset The number of leading records to skip, e.g. the offset of an interrupted import
+     * @return SnapshotImportDTO with the counts and the reached offset
+     * @throws IllegalArgumentException If the stream is not a snapshot or a record is corrupt
+     * @throws IOException If the stream cannot be read
+     * @throws org.springframework.dao.DataAccessException If the storage engine fails, after in-flight chunks ended
+     */
+    public SnapshotImportDTO load(InputStream in, long offset) throws IOException {
+        if (offset < 0) {
+            throw new IllegalArgumentException("The offset cannot be negative");
+        }
+        DataInputStream data;
+        try {
+            data = new DataInputStream(new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE));
+            if (!Arrays.equals(data.readNBytes(MAGIC.length), MAGIC)) {
+                throw new IllegalArgumentException("Not a Spring Snake snapshot");
+            }
+        } catch (ZipException | EOFException e) {
+            throw new IllegalArgumentException("Not a Spring Snake snapshot", e);
+        }
+        Load load = new Load();
+        Instant now = Instant.now();
+        List<values> chunk = new ArrayList<>(chunkSize);
+        try {
+            while (load.failure.get() == null) {
+                int length = data.readInt();
+                if (length == 0) {
+                    long count = data.readLong();
+                    if (count != load.position) {
+                        throw new IllegalArgumentException("The snapshot holds " + count
+                                + " records, but " + load.position + " were read");
+                    }
+                    load.complete = true;
+                    break;
+                }
+                if (length < 0 || length > MAX_RECORD_SIZE) {
+                    throw new IllegalArgumentException("Corrupt record length at offset " + load.position);
+                }
+                if (load.position < offset) {
+                    data.skipNBytes(length);
+                    load.position++;
+                    load.chunkStart = load.position;
+                    continue;
+                }
+                byte[] record = new byte[length];
+                data.readFully(record);
+                Entry entry = mapper.readValue(record, Entry.class);
+                load.position++;
+                if (entry.expiresAt() != null && !entry.expiresAt().isAfter(now)) {
+                    load.expired++;
+                } else {
+                    values value = new values(entry.key(), entry.value());
+                    value.setLastchange(entry.lastchange());
+                    value.setExpiresAt(entry.expiresAt());
+                    value.setVersion(entry.version());
+                    chunk.add(value);
+                }
+                if (chunk.size() == chunkSize) {
+                    load.submit(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+                if (load.position % progressInterval == 0) {
+                    log.info("Snapshot import progress - {} records read, {} created, resume offset {}",
+                            load.position, load.created.get(), load.committed());
+                }
+            }
+        } catch (EOFException e) {
+            log.warn("Snapshot import - The snapshot ended without its end marker after {} records", load.position);
+        } finally {
+            // Records read so far are complete, so they are loaded even if the rest is not
+            if (load.failure.get() == null) {
+                load.submit(chunk);
+            }
+            load.await();
+        }
+        imported.increment(Math.max(0, load.position - offset));
+        RuntimeException failure = load.failure.get();
+        if (failure != null) {
+            log.error("Snapshot import failed - resume with offset {}", load.committed());
+            throw failure;
+        }
+        return new SnapshotImportDTO(load.committed(), load.created.get(), load.conflicted.get(), load.expired,
+                load.complete);
+    }
+
+    /**
+     * State of one running import
+     */
+    private final class Load {
+
+        /**
+         * Number of records read, including skipped ones
+         */
+        private long position;
+
+        /**
+         * Offset of the first record of the chunk being filled
+         */
+        private long chunkStart;
+
+        /**
+         * Start offsets of the chunks being inserted
+         */
+        private final ConcurrentSkipListSet<Long> pending = new ConcurrentSkipListSet<>();
+
+        /**
+         * Limits the number of chunks being inserted at the same time
+         */
+        private final Semaphore slots = new Semaphore(parallelism);
+
+        /**
+         * Number of keys inserted
+         */
+        private final AtomicLong created = new AtomicLong();
+
+        /**
+         * Number of keys that existed already
+         */
+        private final AtomicLong conflicted = new AtomicLong();
+
+        /**
+         * Number of records skipped because they had expired
+         */
+        private long expired;
+
+        /**
+         * Whether the end marker was read
+         */
+        private boolean complete;
+
+        /**
+         * First failure of a chunk insert, which stops the import
+         */
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        /**
+         * Insert a chunk in the background, waiting while all slots are busy.
+         *
+         * @param chunk The entities read since the previous chunk
+         */
+        private void submit(List<values> chunk) {
+            long start = chunkStart;
+            chunkStart = position;
+            if (chunk.isEmpty()) {
+                return;
+            }
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet(null, new IllegalStateException("The snapshot import was interrupted"));
+                return;
+            }
+            pending.add(start);
+            bulkWriter.submit(chunk).whenComplete((inserted, error) -> {
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    failure.compareAndSet(null, cause instanceof RuntimeException runtime
+                            ? runtime
+                            : new IllegalStateException(cause));
+                } else {
+                    inserted.forEach(keyFilter::add);
+                    created.addAndGet(inserted.size());
+                    conflicted.addAndGet(chunk.size() - inserted.size());
+                    pending.remove(start);
+                }
+                slots.release();
+            });
+        }
+
+        /**
+         * Wait until every submitted chunk has been inserted or has failed.
+         */
+        private void await() {
+            slots.acquireUninterruptibly(parallelism);
+            slots.release(parallelism);
+        }
+
+        /**
+         * Number of leading records that are fully loaded.
+         *
+         * @return The offset to resume from
+         */
+        private long committed() {
+            Long first = pending.ceiling(Long.MIN_VALUE);
+            return first != null ? Math.min(first, chunkStart) : chunkStart;
+        }
+    }
+}
@@ -0,0 +1,489 @@
+package com.springsnake.backend.utils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+
+import com.springsnake.backend.values;
+import com.springsnake.backend.storage.StorageEngine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Write-behind buffer for updates of existing keys
+ *
+ * When enabled, ValueService acknowledges /api/update as soon as the new value
+ * sits in this bounded in-memory buffer. Repeated updates of the same key are
+ * collapsed into one entry (the latest value wins), and a background flusher
+ * hands batches to StorageEngine.updateAll, which with MongoDB is one unordered
+ * bulk write per batch. A batch is flushed when the configured batch size is
+ * reached or when the flush interval has passed, whichever comes first.
+ *
+ * - Backpressure: when the buffer holds its capacity of distinct keys, writers
+ *   of new keys wait for the flusher up to the offer timeout and are then
+ *   rejected with a TransientDataAccessResourceException.
+ * - Visibility: buffered and in-flight values are returned by pending(), so
+ *   single key reads see their own writes before they reach the database.
+ * - Deletes: discard() drops the buffered update of a key and waits until an
+ *   update of the key that is being flushed has landed, so the flush can't
+ *   overwrite a value written after the delete.
+ * - Shutdown: the buffer is drained completely before the storage engine closes.
+ *
+ * The buffer trades durability for throughput: updates acknowledged but not yet
+ * flushed are lost if the process crashes.
+ *
+ * @author M04ph3u2
+ * @version 2.0
+ * @since 2.0
+ */
+@Component
+@Slf4j
+public class WriteBehindBuffer {
+
+    /**
+     * Storage engine receiving the flushed batches
+     */
+    private final StorageEngine engine;
+
+    /**
+     * Cache invalidated for every flushed key
+     */
+    private final ValueCache cache;
+
+    /**
+     * Whether write-behind is enabled at all
+     */
+    private final boolean enabled;
+
+    /**
+     * Maximum number of distinct keys held in the buffer
+     */
+    private final int capacity;
+
+    /**
+     * Number of keys that triggers a flush and the maximum size of a batch
+     */
+    private final int batchSize;
+
+    /**
+     * Maximum time a buffered update waits for a flush, in nanoseconds
+     */
+    private final long flushIntervalNanos;
+
+    /**
+     * Maximum time a writer waits for space in a full buffer, in nanoseconds
+     */
+    private final long offerTimeoutNanos;
+
+    /**
+     * Buffered updates by key, oldest first (guarded by lock)
+     */
+    private final LinkedHashMap<String, values> buffer = new LinkedHashMap<>();
+
+    /**
+     * Updates handed to the storage engine but not yet confirmed, removed under the lock
+     */
+    private final Map<String, values> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Lock guarding the buffer
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signalled when the flusher has taken a batch out of the buffer
+     */
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * Signalled when a batch is ready or the buffer is closing
+     */
+    private final Condition flushNeeded = lock.newCondition();
+
+    /**
+     * Signalled when a batch has left the in-flight map
+     */
+    private final Condition flushed = lock.newCondition();
+
+    /**
+     * Number of updates that replaced an update still in the buffer
+     */
+    private final Counter coalesced;
+
+    /**
+     * Number of updates rejected because the buffer stayed full
+     */
+    private final Counter rejected;
+
+    /**
+     * Duration of every flush to the storage engine
+     */
+    private final Timer flushTimer;
+
+    /**
+     * Background thread flushing the buffer, or null when disabled
+     */
+    private final Thread flusher;
+
+    /**
+     * Whether the buffer is shutting down (guarded by lock)
+     */
+    private boolean closing;
+
+    /**
+     * Constructor that sizes the buffer from the configuration, registers its
+     * metrics and starts the flusher thread when write-behind is enabled.
+     *
+     * @param engine The storage engine receiving the updates
+     * @param cache The value cache to invalidate after flushes
+     * @param properties The Spring Snake configuration properties
+     * @param registry The Micrometer registry for the buffer metrics
+     */
+    public WriteBehindBuffer(StorageEngine engine, ValueCache cache, SpringSnakeProperties properties,
+            MeterRegistry registry) {
+        SpringSnakeProperties.WriteBehind settings = properties.getWriteBehind();
+        this.engine = engine;
+        this.cache = cache;
+        this.enabled = settings.isEnabled();
+        this.capacity = settings.getCapacity();
+        this.batchSize = settings.getBatchSize();
+        this.flushIntervalNanos = settings.getFlushInterval().toNanos();
+        this.offerTimeoutNanos = settings.getOfferTimeout().toNanos();
+        Gauge.builder("springsnake.writebehind.depth", this, WriteBehindBuffer::depth)
+                .description("Number of keys waiting in the write-behind buffer")
+                .register(registry);
+        this.coalesced = Counter.builder("springsnake.writebehind.coalesced")
+                .description("Updates collapsed into an update of the same key still in the buffer")
+                .register(registry);
+        this.rejected = Counter.builder("springsnake.writebehind.rejected")
+                .description("Updates rejected because the write-behind buffer stayed full")
+                .register(registry);
+        this.flushTimer = Timer.builder("springsnake.writebehind.flush")
+                .description("Time taken to flush one batch to the storage engine")
+                .publishPercentileHistogram()
+                .register(registry);
+        if (enabled) {
+            this.flusher = new Thread(this::run, "write-behind-flusher");
+            this.flusher.setDaemon(true);
+            this.flusher.start();
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * Whether updates should go through this buffer.
+     *
+     * @return true if write-behind is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Buffer an update, waiting for space if the buffer is full.
+     *
+     * @param value The values entity carrying key, new value and lastchange
+     * @throws TransientDataAccessResourceException If the buffer stays full for the offer timeout
+     */
+    public void offer(values value) {
+        lock.lock();
+        try {
+            if (closing) {
+                rejected.increment();
+                throw new TransientDataAccessResourceException("The write-behind buffer is shutting down");
+            }
+            long remaining = offerTimeoutNanos;
+            while (!buffer.containsKey(value.getKey()) && buffer.size() >= capacity) {
+                if (remaining <= 0 || closing) {
+                    rejected.increment();
+                    throw new TransientDataAccessResourceException("The write-behind buffer is full");
+                }
+                remaining = notFull.awaitNanos(remaining);
+            }
+            if (buffer.put(value.getKey(), value) != null) {
+                coalesced.increment();
+            }
+            if (buffer.size() >= batchSize) {
+                flushNeeded.signal();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransientDataAccessResourceException("Interrupted while waiting for the write-behind buffer", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Look up an update that is buffered or being flushed.
+     *
+     * @param key The key to look up
+     * @return The latest unconfirmed update of the key, or null if there is none
+     */
+    public values pending(String key) {
+        if (!enabled) {
+            return null;
+        }
+        lock.lock();
+        try {
+            values value = buffer.get(key);
+            if (value != null) {
+                return value;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return inFlight.get(key);
+    }
+
+    /**
+     * Apply a change to the unconfirmed update of a key, if it has one.
+     *
+     * The change is computed from the latest buffered or in-flight update and
+     * its result replaces the buffered one, all under the buffer lock, so no
+     * concurrent update of the key can slip in between. The result is buffered
+     * even if the buffer is full: the key is either buffered already or in
+     * flight, which bounds the overshoot by one batch.
+     *
+     * @param key The key to change
+     * @param change Function computing the new update from the pending one
+     * @return The new buffered update, or null if the key has no live pending update
+     */
+    public values applyIfPending(String key, UnaryOperator<values> change) {
+        if (!enabled) {
+            return null;
+        }
+        lock.lock();
+        try {
+            values pending = buffer.get(key);
+            if (pending == null) {
+                pending = inFlight.get(key);
+            }
+            if (pending == null || pending.isExpiredAt(Instant.now())) {
+                return null;
+            }
+            values changed = change.apply(pending);
+            if (buffer.put(key, changed) != null) {
+                coalesced.increment();
+            }
+            if (buffer.size() >= batchSize) {
+                flushNeeded.signal();
+            }
+            return changed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop the buffered update of a key, e.g. because the key is being deleted.
+     *
+     * If an update of the key is being flushed, this waits until it has landed,
+     * so it can't overwrite a value written after the delete. A flush that fails
+     * puts its updates back into the buffer, so they are dropped again.
+     *
+     * @param key The key whose update is discarded
+     * @throws TransientDataAccessResourceException If interrupted while waiting for the flush
+     */
+    public void discard(String key) {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            buffer.remove(key);
+            notFull.signalAll();
+            while (inFlight.containsKey(key)) {
+                flushed.await();
+                buffer.remove(key);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransientDataAccessResourceException("Interrupted while waiting for the write-behind flush", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop all buffered updates, e.g. because all values are being deleted.
+     *
+     * Like discard, this waits until the batch being flushed has landed.
+     *
+     * @throws TransientDataAccessResourceException If interrupted while waiting for the flush
+     */
+    public void discardAll() {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            buffer.clear();
+            notFull.signalAll();
+            while (!inFlight.isEmpty()) {
+                flushed.await();
+                buffer.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransientDataAccessResourceException("Interrupted while waiting for the write-behind flush", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Current number of buffered keys.
+     *
+     * @return The buffer depth
+     */
+    private double depth() {
+        lock.lock();
+        try {
+            return buffer.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flusher loop: wait for a full batch or the flush interval, then flush.
+     * On close the loop keeps flushing until the buffer is empty.
+     */
+    private void run() {
+        while (true) {
+            List<values> batch;
+            lock.lock();
+            try {
+                while (!closing && buffer.size() < batchSize) {
+                    if (flushNeeded.awaitNanos(flushIntervalNanos) <= 0 && !buffer.isEmpty()) {
+                        break;
+                    }
+                }
+                if (buffer.isEmpty()) {
+                    if (closing) {
+                        return;
+                    }
+                    continue;
+                }
+                batch = take();
+                notFull.signalAll();
+            } catch (InterruptedException e) {
+                // Nothing interrupts the flusher on purpose; treat it as a shutdown request
+                closing = true;
+                continue;
+            } finally {
+                lock.unlock();
+            }
+            flush(batch);
+        }
+    }
+
+    /**
+     * Move up to one batch of the oldest updates from the buffer to the in-flight map.
+     * Caller must hold the lock.
+     *
+     * @return The updates to flush
+     */
+    private List<values> take() {
+        List<values> batch = new ArrayList<>(Math.min(batchSize, buffer.size()));
+        Iterator<values> oldest = buffer.values().iterator();
+        while (oldest.hasNext() && batch.size() < batchSize) {
+            values value = oldest.next();
+            oldest.remove();
+            inFlight.put(value.getKey(), value);
+            batch.add(value);
+        }
+        return batch;
+    }
+
+    /**
+     * Write one batch to the storage engine.
+     *
+     * A failed batch is put back into the buffer, except for keys that have
+     * received a newer update in the meantime, and retried with the next flush.
+     *
+     * @param batch The updates to write
+     */
+    private void flush(List<values> batch) {
+        boolean retry = false;
+        try {
+            flushTimer.record(() -> engine.updateAll(batch));
+        } catch (RuntimeException e) {
+            lock.lock();
+            try {
+                if (closing) {
+                    log.error("Write-behind flush of {} keys failed during shutdown, updates lost: {}",
+                            batch.size(), e.getMessage());
+                    return;
+                }
+                log.error("Write-behind flush of {} keys failed, retrying: {}", batch.size(), e.getMessage());
+                for (values value : batch) {
+                    buffer.putIfAbsent(value.getKey(), value);
+                }
+                retry = true;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            lock.lock();
+            try {
+                for (values value : batch) {
+                    inFlight.remove(value.getKey(), value);
+                }
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            batch.forEach(value -> cache.invalidate(value.getKey()));
+        }
+        if (retry) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(flushIntervalNanos);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Drain the buffer to the storage engine and stop the flusher.
+     */
+    @PreDestroy
+    public void close() {
+        if (flusher == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            closing = true;
+            flushNeeded.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Write-behind buffer drained");
+    }
+}
@@ -1,8 +1,12 @@
 package com.springsnake.backend;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.PersistenceCreator;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.Data;
@@ -18,7 +22,11 @@ import lombok.Data;
  * - Unique MongoDB document ID
  * - Key for value identification
  * - Value data (can be any object type)
- * - Automatic timestamp generation for tracking changes
+ * - Automatic timestamp generation for tracking changes, indexed for delta queries
+ * - Optional expiry date, enforced by a MongoDB TTL index
+ * - Version number incremented by every change, used for ETags and conditional updates,
+ *   which never repeats for a key that is deleted and created again
+ * - Compression codec and original size of values stored compressed
  * 
  * @author M04ph3u2
  * @version 2.0
@@ -26,7 +34,13 @@ import lombok.Data;
  */
 @Data
 @Document
+@CompoundIndex(name = "lastchange_key", def = "{ 'lastchange' : 1, 'key' : 1 }")
 public class values {
+
+    /**
+     * Last first version given to a new value in this process
+     */
+    private static final AtomicLong LAST_FIRST_VERSION = new AtomicLong();
     
     /**
      * MongoDB document identifier
@@ -41,8 +55,10 @@ public class values {
      * User-defined key for value identification
      * 
      * This field stores the key that users provide to identify their values.
-     * It should be unique within the application context.
+     * It is backed by a unique index, so inserting an existing key fails
+     * with a duplicate key error instead of creating a second document.
      */
+    @Indexed(unique = true)
     private String key;
     
     /**
@@ -56,16 +72,61 @@ public class values {
     /**
      * Timestamp of the last change
      * 
-     * This field automatically stores the ISO formatted timestamp
-     * of when the value was created or last modified.
+     * This field automatically stores the point in time when the value was
+     * created or last modified, in millisecond precision, as a BSON date.
+     * Together with the key it is indexed, so changes since a given time can
+     * be read in order with a range scan.
+     */
+    private Instant lastchange;
+
+    /**
+     * Point in time at which the value expires, or null if it never does
+     * 
+     * This field is stored as a BSON date and backed by a TTL index, so MongoDB
+     * removes expired documents in the background. The TTL monitor only runs
+     * about once a minute, therefore every read also treats values past this
+     * date as absent.
+     */
+    @Indexed(expireAfter = "0s")
+    private Instant expiresAt;
+
+    /**
+     * Version of the value, starting at firstVersion() and incremented by every update
+     * 
+     * The version identifies one state of the value: it is returned as the
+     * ETag of single key reads and compared by conditional updates (If-Match).
+     * Because a new value starts at the current time in microseconds rather
+     * than at 1, a key that is deleted or expires and is then created again
+     * never gets back a version of its previous lifetime, so an old ETag
+     * can't match the new value.
+     * Documents written before versions existed are read as version 1 and
+     * given that version in the database at startup. Values read from the
+     * database never take a new first version; only values created by the
+     * application do.
      */
-    private String lastchange;
+    private long version;
+
+    /**
+     * Compression codec of the stored value, or null if it is stored as is
+     * 
+     * Large values are stored by the MongoDB engine as compressed JSON in a
+     * binary value field. Such documents record the codec, so they stay
+     * readable when the configured algorithm changes. Values are always
+     * returned decompressed, with this field cleared.
+     */
+    private String codec;
+
+    /**
+     * Size in bytes of the uncompressed JSON of a compressed value, or null
+     */
+    private Long originalSize;
 
     /**
      * Constructor for creating a new value entity
      * 
      * Creates a new values entity with the specified key and value,
-     * automatically setting the lastchange timestamp to the current time.
+     * automatically setting the lastchange timestamp to the current time
+     * and the version to a new first version.
      * 
      * @param key The unique identifier for this value
      * @param value The data to be stored
@@ -73,7 +134,63 @@ public class values {
     public values(String key, Object value) {
         this.key = key;
         this.value = value;
-        DateTimeFormatter formatter = DateTimeFormatter.ISO_ZONED_DATE_TIME;
-        this.lastchange = ZonedDateTime.now().format(formatter);
+        this.lastchange = now();
+        this.version = firstVersion();
+    }
+
+    /**
+     * Constructor used by Spring Data to read a stored document
+     * 
+     * Unlike the public constructor, this keeps the stored version instead of
+     * allocating a new one, so reading a document is repeatable. A document
+     * written before versions existed has no version field and is read as
+     * version 1.
+     * 
+     * @param key The unique identifier of the value
+     * @param value The stored data
+     * @param version The stored version, or null if the document has none
+     */
+    @PersistenceCreator
+    private values(String key, Object value, Long version) {
+        this.key = key;
+        this.value = value;
+        this.lastchange = now();
+        this.version = version != null ? version : 1;
+    }
+
+    /**
+     * Version of a newly created value.
+     * 
+     * This is the current time in microseconds since the epoch, and always
+     * more than the previous result. A previous lifetime of the same key would
+     * need more than a million updates per second to reach it.
+     * 
+     * @return A version that no earlier value of any key started with
+     */
+    public static long firstVersion() {
+        long micros = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+        return LAST_FIRST_VERSION.accumulateAndGet(micros, (last, now) -> Math.max(last + 1, now));
+    }
+
+    /**
+     * Current time as stored in lastchange.
+     * 
+     * The precision is cut to milliseconds, which is what MongoDB stores, so a
+     * timestamp read from any engine can be passed back as a delta query bound.
+     * 
+     * @return The current time in millisecond precision
+     */
+    public static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    /**
+     * Check whether the value has expired at a given point in time.
+     * 
+     * @param now The current time
+     * @return true if the value has an expiry date that is not after now
+     */
+    public boolean isExpiredAt(Instant now) {
+        return expiresAt != null && !expiresAt.isAfter(now);
     }
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package com.springsnake.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("memory")
+class ValueControllerTests {
+
+	private final ObjectReader cbor = new CBORMapper().readerFor(JsonNode.class)
+			.with(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Test
+	void everyEndpointAnswersCborOrNothingToCborClients() throws Exception {
+		assertThat(send(put("/api/put").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"key\":\"a\",\"value\":{\"n\":1,\"tags\":[]}}"), 201).asText()).isEqualTo("Saved");
+		assertThat(send(put("/api/put").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"key\":\"a\",\"value\":1}"), 409).isTextual()).isTrue();
+		assertThat(send(get("/api/get").param("key", "a"), 200).get("n").asInt()).isEqualTo(1);
+		assertThat(send(get("/api/get").param("key", "missing"), 404).asText())
+				.isEqualTo("The value has not been found");
+		assertThat(send(get("/api/getfull").param("key", "a"), 200).get("key").asText()).isEqualTo("a");
+		send(post("/api/getmany").contentType(MediaType.APPLICATION_JSON).content("[\"a\",\"b\"]"), 200);
+		send(put("/api/putall").contentType(MediaType.APPLICATION_JSON).content("[{\"key\":\"b\",\"value\":2}]"), 200);
+		send(get("/api/getall"), 200);
+		send(get("/api/list"), 200);
+		assertThat(send(post("/api/update").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"key\":\"a\",\"value\":{\"n\":2,\"tags\":[]}}"), 200).asText()).isEqualTo("Updated");
+		assertThat(send(post("/api/increment").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"key\":\"a\",\"path\":\"n\",\"delta\":1}"), 200).asInt()).isEqualTo(3);
+		send(post("/api/append").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"key\":\"a\",\"path\":\"tags\",\"value\":\"x\"}"), 200);
+		send(patch("/api/patch").param("key", "a").contentType(MediaType.APPLICATION_JSON).content("{\"m\":1}"), 200);
+		send(post("/api/snapshot").contentType(MediaType.APPLICATION_OCTET_STREAM).content(new byte[0]), 400);
+		// Streams have their own media types and refuse CBOR instead of mislabelling it
+		send(get("/api/getall/stream"), 406);
+		send(get("/api/changes").param("since", "2024-01-01T00:00:00Z"), 406);
+		send(get("/api/snapshot"), 406);
+		send(get("/api/feed"), 406);
+		send(delete("/api/delete").param("key", "b"), 200);
+		send(delete("/api/deleteall"), 200);
+	}
+
+	@Test
+	void textAndJsonClientsStillGetPlainMessages() throws Exception {
+		MockHttpServletResponse response = mvc.perform(get("/api/get").param("key", "missing")).andReturn().getResponse();
+		assertThat(response.getContentAsString()).isEqualTo("The value has not been found");
+
+		response = mvc.perform(get("/api/get").param("key", "missing").accept(MediaType.APPLICATION_JSON)).andReturn()
+				.getResponse();
+		assertThat(response.getContentAsString()).isEqualTo("The value has not been found");
+	}
+
+	/**
+	 * Send a request accepting only CBOR and decode the response body.
+	 */
+	private JsonNode send(MockHttpServletRequestBuilder request, int status) throws Exception {
+		MockHttpServletResponse response = mvc.perform(request.accept(MediaType.APPLICATION_CBOR)).andReturn()
+				.getResponse();
+		String description = request.buildRequest(null).getRequestURI();
+		assertThat(response.getStatus()).as(description).isEqualTo(status);
+		byte[] body = response.getContentAsByteArray();
+		if (body.length == 0) {
+			return null;
+		}
+		assertThat(MediaType.parseMediaType(response.getContentType()).isCompatibleWith(MediaType.APPLICATION_CBOR))
+				.as(description).isTrue();
+		return cbor.readValue(body);
+	}
+
+}
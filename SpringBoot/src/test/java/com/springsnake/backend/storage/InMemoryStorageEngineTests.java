@@ -0,0 +1,160 @@
+package com.springsnake.backend.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.domain.Range.Bound;
+
+import com.springsnake.backend.values;
+import com.springsnake.backend.utils.SpringSnakeProperties;
+
+class InMemoryStorageEngineTests {
+
+	private final InMemoryStorageEngine engine = new InMemoryStorageEngine(new SpringSnakeProperties());
+
+	@Test
+	void insertUpdateDeleteReportExistence() {
+		assertThat(engine.insert(new values("a", 1))).isTrue();
+		assertThat(engine.insert(new values("a", 2))).isFalse();
+		assertThat(engine.update("a", 3, values.now(), null)).isTrue();
+		assertThat(engine.update("b", 3, values.now(), null)).isFalse();
+		assertThat(engine.findByKey("a").getValue()).isEqualTo(3);
+		assertThat(engine.delete("a")).isTrue();
+		assertThat(engine.delete("a")).isFalse();
+		assertThat(engine.findByKey("a")).isNull();
+	}
+
+	@Test
+	void expiredValuesAreAbsentAndSwept() {
+		values expired = new values("a", 1);
+		expired.setExpiresAt(Instant.now().minusSeconds(1));
+		values expiring = new values("b", 1);
+		expiring.setExpiresAt(Instant.now().plusSeconds(60));
+		engine.insertAll(List.of(expired, expiring, new values("c", 1)));
+
+		assertThat(engine.findByKey("a")).isNull();
+		assertThat(engine.update("a", 2, values.now(), null)).isFalse();
+		assertThat(engine.findAll()).extracting(values::getKey).containsExactly("b", "c");
+		assertThat(engine.sweep()).isEqualTo(1);
+		assertThat(engine.insert(new values("a", 3))).isTrue();
+		assertThat(engine.findByKey("a").getExpiresAt()).isNull();
+
+		assertThat(engine.update("b", 2, values.now(), null)).isTrue();
+		assertThat(engine.findByKey("b").getExpiresAt()).isEqualTo(expiring.getExpiresAt());
+	}
+
+	@Test
+	void updateIfVersionOnlyAppliesToExpectedVersion() {
+		values inserted = new values("a", 1);
+		long first = inserted.getVersion();
+		engine.insert(inserted);
+		assertThat(engine.findByKey("a").getVersion()).isEqualTo(first);
+		assertThat(engine.update("a", 2, values.now(), null)).isTrue();
+
+		assertThat(engine.updateIfVersion("a", first, 3, values.now(), null)).isNull();
+		assertThat(engine.updateIfVersion("a", first + 1, 3, values.now(), null)).isEqualTo(first + 2);
+		assertThat(engine.updateIfVersion("b", first, 3, values.now(), null)).isNull();
+		assertThat(engine.findByKey("a").getValue()).isEqualTo(3);
+		assertThat(engine.findByKey("a").getVersion()).isEqualTo(first + 2);
+	}
+
+	@Test
+	void recreatedKeyNeverReusesAVersion() {
+		engine.insert(new values("a", "old"));
+		long old = engine.findByKey("a").getVersion();
+		assertThat(engine.delete("a")).isTrue();
+		engine.insert(new values("a", "new"));
+
+		long recreated = engine.findByKey("a").getVersion();
+		assertThat(recreated).isGreaterThan(old);
+		assertThat(engine.updateIfVersion("a", old, "stale", values.now(), null)).isNull();
+		assertThat(engine.findByKey("a").getValue()).isEqualTo("new");
+
+		values expired = new values("b", "old");
+		expired.setExpiresAt(Instant.now().minusSeconds(1));
+		engine.insert(expired);
+		engine.insert(new values("b", "new"));
+		assertThat(engine.findByKey("b").getVersion()).isGreaterThan(expired.getVersion());
+	}
+
+	@Test
+	void applyChangeIncrementsAppendsAndMergesInPlace() {
+		values inserted = new values("a", Map.of("views", 1, "tags", List.of("x"), "old", true));
+		long first = inserted.getVersion();
+		engine.insert(inserted);
+
+		values incremented = engine.applyChange("a", ValueChange.increment(List.of("views"), 2), values.now());
+		assertThat(ValueChange.valueAt(incremented.getValue(), List.of("views"))).isEqualTo(3L);
+		assertThat(incremented.getVersion()).isEqualTo(first + 1);
+		engine.applyChange("a", ValueChange.append(List.of("tags"), "y"), values.now());
+		Map<String, Object> patch = new HashMap<>();
+		patch.put("old", null);
+		patch.put("settings", Map.of("theme", "dark"));
+		engine.applyChange("a", ValueChange.mergePatch(patch), values.now());
+
+		assertThat(engine.findByKey("a").getValue()).isEqualTo(
+				Map.of("views", 3L, "tags", List.of("x", "y"), "settings", Map.of("theme", "dark")));
+		assertThat(engine.findByKey("a").getVersion()).isEqualTo(first + 3);
+		assertThat(engine.applyChange("b", ValueChange.increment(List.of(), 1), values.now())).isNull();
+		assertThatThrownBy(() -> engine.applyChange("a", ValueChange.increment(List.of("tags"), 1), values.now()))
+				.isInstanceOf(DataIntegrityViolationException.class);
+		assertThat(engine.findByKey("a").getVersion()).isEqualTo(first + 3);
+	}
+
+	@Test
+	void findByKeyWithProjectionReturnsOnlySelectedMembers() {
+		engine.insert(new values("a", Map.of("title", "t", "body", "long",
+				"stats", Map.of("views", 3, "likes", 1),
+				"comments", List.of(Map.of("by", "x", "text", "hi"), "skipped", Map.of("text", "yo")))));
+
+		values projected = engine.findByKey("a", FieldProjection.parse("stats.views, title,comments.by,missing,stats.views.x"));
+		assertThat(projected.getValue()).isEqualTo(Map.of("title", "t", "stats", Map.of("views", 3),
+				"comments", List.of(Map.of("by", "x"), Map.of())));
+		assertThat(projected.getVersion()).isEqualTo(engine.findByKey("a").getVersion());
+		assertThat((Map<?, ?>) engine.findByKey("a").getValue()).hasSize(4);
+		assertThat(engine.findByKey("b", FieldProjection.parse("title"))).isNull();
+		assertThatThrownBy(() -> FieldProjection.parse("title,,stats")).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void scanReturnsKeysOfRangeInOrder() {
+		engine.insertAll(List.of(new values("b", 1), new values("ab", 1), new values("a", 1), new values("ac", 1)));
+
+		Range<String> range = Range.of(Bound.exclusive("a"), Bound.exclusive("b"));
+		assertThat(engine.scan(range, 10)).extracting(values::getKey).containsExactly("ab", "ac");
+		assertThat(engine.scan(Range.of(Bound.inclusive(""), Bound.unbounded()), 3))
+				.extracting(values::getKey).containsExactly("a", "ab", "ac");
+	}
+
+	@Test
+	void concurrentInsertsOfSameKeySucceedOnce() throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		AtomicInteger inserted = new AtomicInteger();
+		for (int i = 0; i < 1000; i++) {
+			String key = "k" + (i % 100);
+			pool.execute(() -> {
+				if (engine.insert(new values(key, 1))) {
+					inserted.incrementAndGet();
+				}
+			});
+		}
+		pool.shutdown();
+		assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+		assertThat(inserted).hasValue(100);
+		assertThat(engine.findAll()).hasSize(100);
+	}
+
+}
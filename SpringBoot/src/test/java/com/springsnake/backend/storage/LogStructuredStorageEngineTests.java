@@ -0,0 +1,161 @@
+package com.springsnake.backend.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springsnake.backend.values;
+import com.springsnake.backend.utils.SpringSnakeProperties;
+
+class LogStructuredStorageEngineTests {
+
+	@TempDir
+	Path directory;
+
+	private LogStructuredStorageEngine engine;
+
+	private LogStructuredStorageEngine open(DataSize segmentSize) {
+		SpringSnakeProperties properties = new SpringSnakeProperties();
+		properties.getLocal().setDirectory(directory.toString());
+		properties.getLocal().setSegmentSize(segmentSize);
+		engine = new LogStructuredStorageEngine(properties, new ObjectMapper());
+		return engine;
+	}
+
+	private long segmentFiles() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.count();
+		}
+	}
+
+	@AfterEach
+	void close() {
+		engine.close();
+	}
+
+	@Test
+	void expiryIsRecoveredAndSweptWithTombstone() {
+		open(DataSize.ofMegabytes(1));
+		Instant later = Instant.now().plusSeconds(60).truncatedTo(ChronoUnit.MILLIS);
+		values expiring = new values("a", 1);
+		expiring.setExpiresAt(later);
+		values expired = new values("b", 1);
+		expired.setExpiresAt(Instant.now().minusSeconds(1));
+		engine.insertAll(List.of(expiring, expired));
+		assertThat(engine.findByKey("b")).isNull();
+		engine.close();
+
+		open(DataSize.ofMegabytes(1));
+		assertThat(engine.findByKey("a").getExpiresAt()).isEqualTo(later);
+		assertThat(engine.findByKey("b")).isNull();
+		assertThat(engine.sweep()).isEqualTo(1);
+		assertThat(engine.insert(new values("b", 2))).isTrue();
+		engine.close();
+
+		open(DataSize.ofMegabytes(1));
+		assertThat(engine.findAll()).extracting(values::getKey).containsExactly("a", "b");
+		assertThat(engine.findByKey("b").getExpiresAt()).isNull();
+	}
+
+	@Test
+	void recoversIndexAfterRestart() {
+		open(DataSize.ofMegabytes(1));
+		assertThat(engine.insert(new values("a", Map.of("x", 1)))).isTrue();
+		assertThat(engine.insert(new values("a", 2))).isFalse();
+		values b = new values("b", "2");
+		long first = b.getVersion();
+		assertThat(engine.insertAll(List.of(b, new values("c", 3)))).containsExactlyInAnyOrder("b", "c");
+		Instant changed = values.now();
+		assertThat(engine.update("b", "updated", changed, null)).isTrue();
+		assertThat(engine.delete("c")).isTrue();
+		assertThat(engine.delete("c")).isFalse();
+		engine.close();
+
+		open(DataSize.ofMegabytes(1));
+		assertThat(engine.findByKey("a").getValue()).isEqualTo(Map.of("x", 1));
+		assertThat(engine.findByKey("b").getValue()).isEqualTo("updated");
+		assertThat(engine.findByKey("b").getLastchange()).isEqualTo(changed);
+		assertThat(engine.findByKey("b").getVersion()).isEqualTo(first + 1);
+		assertThat(engine.updateIfVersion("b", first, "stale", values.now(), null)).isNull();
+		assertThat(engine.updateIfVersion("b", first + 1, "current", values.now(), null)).isEqualTo(first + 2);
+		assertThat(engine.findByKey("c")).isNull();
+		assertThat(engine.findAll()).extracting(values::getKey).containsExactly("a", "b");
+	}
+
+	@Test
+	void discardsTornRecordAtTheEndOfTheLog() throws IOException {
+		open(DataSize.ofMegabytes(1));
+		engine.insert(new values("a", 1));
+		engine.close();
+		try (Stream<Path> files = Files.list(directory)) {
+			Path last = files.sorted().reduce((first, second) -> second).orElseThrow();
+			Files.write(last, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18 },
+					StandardOpenOption.APPEND);
+		}
+
+		open(DataSize.ofMegabytes(1));
+		assertThat(engine.findByKey("a").getValue()).isEqualTo(1);
+		assertThat(engine.insert(new values("b", 2))).isTrue();
+		engine.close();
+
+		open(DataSize.ofMegabytes(1));
+		assertThat(engine.findAll()).extracting(values::getKey).containsExactly("a", "b");
+	}
+
+	@Test
+	void compactionReclaimsOverwrittenAndDeletedValues() throws IOException {
+		open(DataSize.ofBytes(256));
+		Map<String, Long> first = new HashMap<>();
+		for (int round = 0; round < 20; round++) {
+			for (int i = 0; i < 5; i++) {
+				if (!engine.update("key" + i, round, values.now(), null)) {
+					values created = new values("key" + i, round);
+					first.put(created.getKey(), created.getVersion());
+					engine.insert(created);
+				}
+			}
+		}
+		engine.delete("key4");
+		long before = segmentFiles();
+
+		assertThat(engine.compact()).isPositive();
+		assertThat(segmentFiles()).isLessThan(before);
+		engine.close();
+
+		open(DataSize.ofBytes(256));
+		assertThat(engine.findAll()).extracting(values::getValue).containsExactly(19, 19, 19, 19);
+		assertThat(engine.findAll()).extracting(value -> value.getVersion() - first.get(value.getKey()))
+				.containsExactly(19L, 19L, 19L, 19L);
+		assertThat(engine.findByKey("key4")).isNull();
+	}
+
+	@Test
+	void deleteAllSurvivesRestart() {
+		open(DataSize.ofBytes(256));
+		for (int i = 0; i < 20; i++) {
+			engine.insert(new values("key" + i, i));
+		}
+		engine.deleteAll();
+		engine.insert(new values("after", 1));
+		engine.close();
+
+		open(DataSize.ofBytes(256));
+		assertThat(engine.findAll()).extracting(values::getKey).containsExactly("after");
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.springsnake.backend.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.springsnake.backend.values;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MongoStorageEngineTests {
+
+	private static final MongoServer server = new MongoServer(new MemoryBackend());
+
+	@Autowired
+	private MongoStorageEngine engine;
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Autowired
+	private MockMvc mvc;
+
+	@DynamicPropertySource
+	static void mongo(DynamicPropertyRegistry registry) {
+		registry.add("spring.data.mongodb.uri", server::bindAndGetConnectionString);
+		registry.add("spring.data.mongodb.database", () -> "test");
+	}
+
+	@AfterAll
+	static void stop() {
+		server.shutdown();
+	}
+
+	/**
+	 * Store a document the way versions before versioning wrote it.
+	 */
+	private void insertLegacy(String key) {
+		mongoTemplate.insert(new Document("key", key).append("value", Map.of("n", 1)).append("lastchange", new Date()),
+				mongoTemplate.getCollectionName(values.class));
+	}
+
+	@Test
+	void documentWithoutVersionIsReadAsVersionOne() {
+		insertLegacy("legacy-read");
+
+		for (int i = 0; i < 3; i++) {
+			assertThat(engine.findByKey("legacy-read").getVersion()).isEqualTo(1);
+		}
+		assertThat(engine.findAllByKey(List.of("legacy-read")).get("legacy-read").getVersion())
+				.isEqualTo(1);
+	}
+
+	@Test
+	void convertsTextLastchangeAndSkipsWhatIsNoTimestamp() {
+		String collection = mongoTemplate.getCollectionName(values.class);
+		mongoTemplate.insert(new Document("key", "text-date").append("value", 1)
+				.append("lastchange", "2025-07-27T09:48:50.883175427Z[Etc/UTC]"), collection);
+		mongoTemplate.insert(new Document("key", "no-date").append("value", 1).append("lastchange", "yesterday"),
+				collection);
+
+		assertThat(engine.migrateLastchange()).isTrue();
+
+		Query key = Query.query(Criteria.where("key").is("text-date"));
+		assertThat(mongoTemplate.findOne(key, Document.class, collection).get("lastchange"))
+				.isEqualTo(Date.from(Instant.parse("2025-07-27T09:48:50.883Z")));
+		key = Query.query(Criteria.where("key").is("no-date"));
+		assertThat(mongoTemplate.findOne(key, Document.class, collection).get("lastchange")).isEqualTo("yesterday");
+		mongoTemplate.remove(key, collection);
+	}
+
+	@Test
+	void conditionalRequestsWorkOnDocumentWithoutVersion() throws Exception {
+		insertLegacy("legacy");
+
+		MockHttpServletResponse first = mvc.perform(get("/api/get").param("key", "legacy")).andReturn().getResponse();
+		MockHttpServletResponse second = mvc.perform(get("/api/get").param("key", "legacy")).andReturn().getResponse();
+		assertThat(first.getHeader(HttpHeaders.ETAG)).isEqualTo("\"1\"");
+		assertThat(second.getHeader(HttpHeaders.ETAG)).isEqualTo("\"1\"");
+		assertThat(mvc.perform(get("/api/get").param("key", "legacy").header(HttpHeaders.IF_NONE_MATCH, "\"1\""))
+				.andReturn().getResponse().getStatus()).isEqualTo(304);
+
+		MockHttpServletResponse updated = mvc.perform(post("/api/update").header(HttpHeaders.IF_MATCH, "\"1\"")
+				.contentType(MediaType.APPLICATION_JSON).content("{\"key\":\"legacy\",\"value\":{\"n\":2}}"))
+				.andReturn().getResponse();
+		assertThat(updated.getStatus()).isEqualTo(200);
+		assertThat(updated.getHeader(HttpHeaders.ETAG)).isEqualTo("\"2\"");
+
+		// The old ETag no longer matches the changed value
+		assertThat(mvc.perform(get("/api/get").param("key", "legacy").header(HttpHeaders.IF_NONE_MATCH, "\"1\""))
+				.andReturn().getResponse().getStatus()).isEqualTo(200);
+		assertThat(mvc.perform(post("/api/update").header(HttpHeaders.IF_MATCH, "\"1\"")
+				.contentType(MediaType.APPLICATION_JSON).content("{\"key\":\"legacy\",\"value\":{\"n\":3}}"))
+				.andReturn().getResponse().getStatus()).isEqualTo(412);
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.springsnake.backend.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springsnake.backend.values;
+import com.springsnake.backend.utils.SpringSnakeProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ValueCompressorTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private ValueCompressor compressor(String algorithm) {
+		SpringSnakeProperties properties = new SpringSnakeProperties();
+		properties.getCompression().setThreshold(DataSize.ofKilobytes(1));
+		properties.getCompression().setAlgorithm(algorithm);
+		return new ValueCompressor(properties, new ObjectMapper(), registry);
+	}
+
+	private static List<Object> largeValue() {
+		List<Object> items = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			items.add(Map.of("id", i, "name", "item " + i));
+		}
+		return items;
+	}
+
+	@Test
+	void onlyLargeValuesAreCompressed() {
+		ValueCompressor compressor = compressor("deflate");
+		assertThat(compressor.compress(Map.of("small", 1))).isNull();
+		assertThat(compressor.compress(42)).isNull();
+
+		ValueCompressor.Compressed compressed = compressor.compress(largeValue());
+		assertThat(compressed.codec()).isEqualTo("deflate");
+		assertThat(compressed.data().length).isLessThan((int) compressed.originalSize());
+		assertThat(registry.get("springsnake.compression.ratio").summary().count()).isEqualTo(1);
+	}
+
+	@Test
+	void storedValuesDecompressWithTheirOwnCodec() {
+		ValueCompressor.Compressed gzip = compressor("gzip").compress(largeValue());
+		values stored = new values("a", gzip.data());
+		stored.setCodec(gzip.codec());
+		stored.setOriginalSize(gzip.originalSize());
+
+		values read = compressor("deflate").decompress(stored);
+		assertThat(read.getValue()).isEqualTo(largeValue());
+		assertThat(read.getCodec()).isNull();
+		assertThat(read.getOriginalSize()).isNull();
+	}
+
+}
@@ -0,0 +1,147 @@
+package com.springsnake.backend.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AdmissionControlTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void limitBacksOffOnSlowRequestsAndGrowsBack() throws Exception {
+		AdmissionControl.Limiter limiter = new AdmissionControl.Limiter(
+				new SpringSnakeProperties.Admission.Limit(10, 2, 20, Duration.ofMillis(20)), 0.5);
+
+		TimeUnit.MILLISECONDS.sleep(1);
+		long startedAt = System.nanoTime();
+		for (int i = 0; i < 10; i++) {
+			assertThat(limiter.tryAcquire()).isTrue();
+		}
+		assertThat(limiter.tryAcquire()).isFalse();
+		TimeUnit.MILLISECONDS.sleep(50);
+		// Only one decrease for requests that were all admitted before it
+		for (int i = 0; i < 10; i++) {
+			limiter.release(startedAt, false);
+		}
+		assertThat(limiter.limit()).isEqualTo(5);
+
+		for (int i = 0; i < 100; i++) {
+			limiter.tryAcquire();
+			limiter.tryAcquire();
+			limiter.tryAcquire();
+			limiter.release(System.nanoTime(), false);
+			limiter.release(System.nanoTime(), false);
+			limiter.release(System.nanoTime(), false);
+		}
+		assertThat(limiter.limit()).isGreaterThan(5);
+		assertThat(limiter.inflight()).isZero();
+	}
+
+	@Test
+	void rejectsBeyondTheBulkLimitWithoutTouchingPointReads() throws Exception {
+		SpringSnakeProperties properties = new SpringSnakeProperties();
+		properties.getAdmission().setBulk(new SpringSnakeProperties.Admission.Limit(1, 1, 1, Duration.ofSeconds(30)));
+		AdmissionControl filter = new AdmissionControl(properties, registry);
+		MockHttpServletResponse nested = new MockHttpServletResponse();
+		MockHttpServletResponse point = new MockHttpServletResponse();
+
+		// The second getall and the get arrive while the first getall is running
+		filter.doFilter(new MockHttpServletRequest("GET", "/api/getall"), new MockHttpServletResponse(), (req, res) -> {
+			filter.doFilter(new MockHttpServletRequest("GET", "/api/getall"), nested, new MockFilterChain());
+			filter.doFilter(new MockHttpServletRequest("GET", "/api/get"), point, new MockFilterChain());
+		});
+
+		assertThat(nested.getStatus()).isEqualTo(503);
+		assertThat(nested.getHeader("Retry-After")).isEqualTo("1");
+		assertThat(point.getStatus()).isEqualTo(200);
+		assertThat(registry.get("springsnake.admission.rejected").tag("class", "bulk").tag("reason", "limit")
+				.counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void slowImportsDoNotShrinkTheBulkLimit() throws Exception {
+		SpringSnakeProperties properties = new SpringSnakeProperties();
+		properties.getAdmission().setBulk(new SpringSnakeProperties.Admission.Limit(10, 1, 10, Duration.ofMillis(1)));
+		AdmissionControl filter = new AdmissionControl(properties, registry);
+		TimeUnit.MILLISECONDS.sleep(1);
+
+		filter.doFilter(new MockHttpServletRequest("POST", "/api/snapshot"), new MockHttpServletResponse(),
+				(req, res) -> sleep());
+		assertThat(gauge("limit")).isEqualTo(10);
+
+		filter.doFilter(new MockHttpServletRequest("GET", "/api/getall"), new MockHttpServletResponse(),
+				(req, res) -> sleep());
+		assertThat(gauge("limit")).isEqualTo(9);
+	}
+
+	@Test
+	void streamingResponsesHoldTheirPermitUntilComplete() throws Exception {
+		SpringSnakeProperties properties = new SpringSnakeProperties();
+		properties.getAdmission().setBulk(new SpringSnakeProperties.Admission.Limit(1, 1, 1, Duration.ofMillis(1)));
+		AdmissionControl filter = new AdmissionControl(properties, registry);
+		MockHttpServletRequest stream = new MockHttpServletRequest("GET", "/api/getall/stream");
+		stream.setAsyncSupported(true);
+
+		filter.doFilter(stream, new MockHttpServletResponse(), (req, res) -> req.startAsync());
+		assertThat(gauge("inflight")).isEqualTo(1);
+		MockHttpServletResponse rejected = new MockHttpServletResponse();
+		filter.doFilter(new MockHttpServletRequest("GET", "/api/getall"), rejected, new MockFilterChain());
+		assertThat(rejected.getStatus()).isEqualTo(503);
+
+		sleep();
+		((MockAsyncContext) stream.getAsyncContext()).complete();
+		assertThat(gauge("inflight")).isZero();
+		MockHttpServletResponse admitted = new MockHttpServletResponse();
+		filter.doFilter(new MockHttpServletRequest("GET", "/api/getall"), admitted, new MockFilterChain());
+		assertThat(admitted.getStatus()).isEqualTo(200);
+	}
+
+	@Test
+	void throttlesClientsBeyondTheirRate() throws Exception {
+		SpringSnakeProperties properties = new SpringSnakeProperties();
+		properties.getAdmission().setClientRate(0.1);
+		properties.getAdmission().setClientBurst(1);
+		properties.getAdmission().setClientHeader("X-Client-Id");
+		AdmissionControl filter = new AdmissionControl(properties, registry);
+
+		MockHttpServletResponse first = send(filter, "a");
+		MockHttpServletResponse second = send(filter, "a");
+		MockHttpServletResponse other = send(filter, "b");
+
+		assertThat(first.getStatus()).isEqualTo(200);
+		assertThat(second.getStatus()).isEqualTo(429);
+		assertThat(second.getHeader("Retry-After")).isEqualTo("10");
+		assertThat(other.getStatus()).isEqualTo(200);
+	}
+
+	private double gauge(String name) {
+		return registry.get("springsnake.admission." + name).tag("class", "bulk").gauge().value();
+	}
+
+	private static void sleep() {
+		try {
+			TimeUnit.MILLISECONDS.sleep(20);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static MockHttpServletResponse send(AdmissionControl filter, String client) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/get");
+		request.addHeader("X-Client-Id", client);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, new MockFilterChain());
+		return response;
+	}
+
+}
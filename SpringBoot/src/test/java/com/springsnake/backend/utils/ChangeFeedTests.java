@@ -0,0 +1,70 @@
+package com.springsnake.backend.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ChangeFeedTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private final SpringSnakeProperties properties = new SpringSnakeProperties();
+
+	private ChangeFeed feed(int historySize) {
+		properties.getFeed().setHistorySize(historySize);
+		return new ChangeFeed(properties, registry);
+	}
+
+	@Test
+	void resumesAfterTheLastEventIdWithinThePrefix() {
+		ChangeFeed feed = feed(10);
+		feed.written("put", "user1", 1L, null);
+		// An id of another process is answered with a reset carrying the current id
+		String current = feed.missedSince("other-0", null).get(0).getId();
+		String epoch = current.substring(0, current.lastIndexOf('-'));
+		feed.written("put", "order1", 1L, null);
+		feed.written("update", "user1", 2L, null);
+		feed.written("clear", null, null, null);
+
+		List<ChangeEventDTO> missed = feed.missedSince(epoch + "-1", "user");
+		assertThat(missed).extracting(ChangeEventDTO::getType).containsExactly("update", "clear");
+		assertThat(missed.get(0).getId()).isEqualTo(epoch + "-3");
+		assertThat(feed.missedSince(epoch + "-4", null)).isEmpty();
+		assertThat(registry.get("springsnake.feed.events").counter().count()).isEqualTo(4);
+	}
+
+	@Test
+	void resetsWhenEventsAreNoLongerInTheHistory() {
+		ChangeFeed feed = feed(2);
+		for (int i = 0; i < 5; i++) {
+			feed.written("put", "key" + i, 1L, null);
+		}
+		String current = feed.missedSince("other-0", null).get(0).getId();
+		String epoch = current.substring(0, current.lastIndexOf('-'));
+
+		assertThat(current).isEqualTo(epoch + "-5");
+		assertThat(feed.missedSince(epoch + "-3", null)).extracting(ChangeEventDTO::getKey).containsExactly("key3", "key4");
+		assertThat(feed.missedSince(epoch + "-2", null)).extracting(ChangeEventDTO::getType).containsExactly("reset");
+		assertThat(feed.missedSince(epoch + "-9", null)).extracting(ChangeEventDTO::getType).containsExactly("reset");
+		assertThatThrownBy(() -> feed.missedSince("garbage", null)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void rejectsSubscribersBeyondTheLimit() {
+		properties.getFeed().setMaxSubscribers(1);
+		ChangeFeed feed = feed(10);
+
+		feed.subscribe("user", null);
+		assertThatThrownBy(() -> feed.subscribe(null, null)).isInstanceOf(TransientDataAccessResourceException.class);
+		assertThat(feed.subscriberCount()).isEqualTo(1);
+		feed.close();
+		assertThat(feed.subscriberCount()).isZero();
+	}
+
+}
@@ -0,0 +1,57 @@
+package com.springsnake.backend.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import com.springsnake.backend.values;
+import com.springsnake.backend.storage.InMemoryStorageEngine;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class KeyFilterTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private final SpringSnakeProperties properties = new SpringSnakeProperties();
+
+	private final InMemoryStorageEngine engine = new InMemoryStorageEngine(properties);
+
+	@Test
+	void passesEverythingUntilBuiltThenRejectsMissingKeys() {
+		engine.insert(new values("stored", 1));
+		KeyFilter filter = new KeyFilter(engine, properties, registry);
+		assertThat(filter.mightContain("missing")).isTrue();
+
+		filter.rebuild();
+		filter.add("added");
+		assertThat(filter.mightContain("stored")).isTrue();
+		assertThat(filter.mightContain("added")).isTrue();
+		assertThat(filter.mightContain("missing")).isFalse();
+		assertThat(registry.get("springsnake.keyfilter.lookups").tag("result", "negative").counter().count()).isEqualTo(1);
+		assertThat(registry.get("springsnake.keyfilter.memory").gauge().value()).isPositive();
+
+		engine.delete("stored");
+		filter.rebuild();
+		assertThat(filter.mightContain("stored")).isFalse();
+	}
+
+	@Test
+	void keepsTheConfiguredFalsePositiveRate() {
+		KeyFilter.BloomFilter filter = new KeyFilter.BloomFilter(100_000, 0.01);
+		for (int i = 0; i < 100_000; i++) {
+			filter.put("key" + i);
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 100_000; i++) {
+			assertThat(filter.mightContain("key" + i)).isTrue();
+			if (filter.mightContain("other" + i)) {
+				falsePositives++;
+			}
+		}
+		assertThat(falsePositives / 100_000.0).isBetween(0.005, 0.015);
+		assertThat(filter.falsePositiveRate()).isBetween(0.005, 0.015);
+		assertThat(filter.isOverloaded()).isFalse();
+	}
+
+}
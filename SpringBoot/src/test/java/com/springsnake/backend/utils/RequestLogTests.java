@@ -0,0 +1,50 @@
+package com.springsnake.backend.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RequestLogTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private final SpringSnakeProperties properties = new SpringSnakeProperties();
+
+	private double dropped(String reason) {
+		return registry.get("springsnake.requestlog.dropped").tag("reason", reason).counter().count();
+	}
+
+	@Test
+	void samplesOnlySuccessPathEvents() {
+		properties.getRequestLog().setSampleRate(0.0);
+		RequestLog log = new RequestLog(properties, registry);
+
+		for (int i = 0; i < 10; i++) {
+			log.info("Request {}", i);
+		}
+		log.warn("Warning {}", 1);
+		log.error("Error {}", 1, new IllegalStateException("test"));
+
+		assertThat(dropped("sampled")).isEqualTo(10);
+		assertThat(dropped("overflow")).isZero();
+		log.close();
+	}
+
+	@Test
+	void asyncModeWritesWithoutDropping() {
+		properties.getRequestLog().setAsync(true);
+		properties.getRequestLog().setBufferSize(1024);
+		RequestLog log = new RequestLog(properties, registry);
+
+		for (int i = 0; i < 100; i++) {
+			log.info("Request {}", i);
+		}
+		log.close();
+
+		assertThat(dropped("sampled")).isZero();
+		assertThat(dropped("overflow")).isZero();
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.springsnake.backend.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ValueCacheTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private final ValueCache cache = new ValueCache(new SpringSnakeProperties(), registry);
+
+	@Test
+	void cachesFoundAndMissingValues() {
+		AtomicInteger loads = new AtomicInteger();
+		ValueDTO stored = new ValueDTO("a", "1", null);
+
+		assertThat(cache.get("a", k -> { loads.incrementAndGet(); return stored; })).isSameAs(stored);
+		assertThat(cache.get("a", k -> { loads.incrementAndGet(); return null; })).isSameAs(stored);
+		assertThat(cache.get("b", k -> { loads.incrementAndGet(); return null; })).isNull();
+		assertThat(cache.get("b", k -> { loads.incrementAndGet(); return stored; })).isNull();
+
+		assertThat(loads).hasValue(2);
+		assertThat(registry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(2);
+	}
+
+	@Test
+	void invalidationForcesReload() {
+		cache.get("a", k -> null);
+		cache.invalidate("a");
+
+		ValueDTO stored = new ValueDTO("a", "1", null);
+		assertThat(cache.get("a", k -> stored)).isSameAs(stored);
+
+		cache.invalidateAll();
+		assertThat(cache.get("a", k -> null)).isNull();
+	}
+
+	@Test
+	void concurrentMissesShareOneFetch() throws Exception {
+		SpringSnakeProperties properties = new SpringSnakeProperties();
+		properties.getCache().setEnabled(false);
+		ValueCache uncached = new ValueCache(properties, registry);
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ValueDTO stored = new ValueDTO("a", "1", null);
+
+		CompletableFuture<ValueDTO> leader = CompletableFuture.supplyAsync(() -> uncached.get("a", k -> {
+			loads.incrementAndGet();
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return stored;
+		}));
+		started.await();
+		CompletableFuture<ValueDTO> single = CompletableFuture.supplyAsync(() -> uncached.get("a", k -> {
+			loads.incrementAndGet();
+			return null;
+		}));
+		CompletableFuture<Map<String, ValueDTO>> batch = CompletableFuture.supplyAsync(() -> uncached.getAll(List.of("a", "b"),
+				missing -> {
+					loads.incrementAndGet();
+					assertThat(missing).containsExactly("b");
+					return Map.of();
+				}));
+		while (registry.get("springsnake.cache.loads").tag("result", "coalesced").counter().count() < 2) {
+			Thread.sleep(1);
+		}
+		release.countDown();
+
+		assertThat(leader.get()).isSameAs(stored);
+		assertThat(single.get()).isSameAs(stored);
+		assertThat(batch.get()).containsOnlyKeys("a");
+		assertThat(loads).hasValue(2);
+	}
+
+	@Test
+	void invalidationDetachesFetch() {
+		ValueDTO stale = new ValueDTO("a", "1", null);
+		ValueDTO fresh = new ValueDTO("a", "2", null);
+
+		assertThat(cache.get("a", k -> {
+			cache.invalidate("a");
+			return stale;
+		})).isSameAs(stale);
+		assertThat(cache.get("a", k -> fresh)).isSameAs(fresh);
+	}
+
+	@Test
+	void invalidationDuringBulkLoadIsNotOverwritten() {
+		for (boolean coalesce : new boolean[] { true, false }) {
+			SpringSnakeProperties properties = new SpringSnakeProperties();
+			properties.getCache().setCoalesce(coalesce);
+			ValueCache bulk = new ValueCache(properties, new SimpleMeterRegistry());
+			ValueDTO stale = new ValueDTO("a", "1", null);
+			ValueDTO fresh = new ValueDTO("a", "2", null);
+
+			assertThat(bulk.getAll(List.of("a", "b"), missing -> {
+				bulk.invalidate("a");
+				return Map.of("a", stale);
+			})).containsExactly(Map.entry("a", stale));
+			assertThat(bulk.getAll(List.of("a"), missing -> Map.of("a", fresh))).containsEntry("a", fresh);
+			assertThat(bulk.getIfPresent("a")).isSameAs(fresh);
+		}
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.springsnake.backend.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.springsnake.backend.values;
+import com.springsnake.backend.storage.InMemoryStorageEngine;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ValueSnapshotTests {
+
+	private final SpringSnakeProperties properties = new SpringSnakeProperties();
+
+	private final InMemoryStorageEngine source = new InMemoryStorageEngine(properties);
+
+	private final InMemoryStorageEngine target = new InMemoryStorageEngine(properties);
+
+	private ValueSnapshot snapshot(InMemoryStorageEngine engine) {
+		properties.getBulk().setChunkSize(3);
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		return new ValueSnapshot(new ValueBulkWriter(engine, properties), new KeyFilter(engine, properties, registry),
+				properties, new Jackson2ObjectMapperBuilder(), registry);
+	}
+
+	private byte[] export() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertThat(snapshot(source).export(source.streamAll(100), out)).isEqualTo(10);
+		return out.toByteArray();
+	}
+
+	@Test
+	void roundTripKeepsMetadataAndSkipsExistingKeys() throws IOException {
+		for (int i = 0; i < 10; i++) {
+			source.insert(new values("key" + i, Map.of("n", i, "tags", List.of("a", "b"))));
+		}
+		long first = source.findByKey("key4").getVersion();
+		source.updateIfVersion("key4", first, "changed", Instant.parse("2024-01-01T00:00:00Z"), null);
+		target.insert(new values("key7", "kept"));
+
+		SnapshotImportDTO result = snapshot(target).load(new ByteArrayInputStream(export()), 0);
+
+		assertThat(result).isEqualTo(new SnapshotImportDTO(10, 9, 1, 0, true));
+		values restored = target.findByKey("key4");
+		assertThat(restored.getValue()).isEqualTo("changed");
+		assertThat(restored.getVersion()).isEqualTo(first + 1);
+		assertThat(restored.getLastchange()).isEqualTo(Instant.parse("2024-01-01T00:00:00Z"));
+		assertThat(target.findByKey("key1").getValue()).isEqualTo(Map.of("n", 1, "tags", List.of("a", "b")));
+		assertThat(target.findByKey("key7").getValue()).isEqualTo("kept");
+	}
+
+	@Test
+	void truncatedSnapshotReportsTheOffsetToResumeFrom() throws IOException {
+		// Random values, so the compressed stream holds several deflate blocks
+		Random random = new Random(42);
+		for (int i = 0; i < 10; i++) {
+			byte[] bytes = new byte[20_000];
+			random.nextBytes(bytes);
+			source.insert(new values("key" + i, HexFormat.of().formatHex(bytes)));
+		}
+		byte[] complete = export();
+		// Cut the compressed stream in the middle of the records
+		byte[] truncated = Arrays.copyOf(complete, complete.length / 2);
+
+		SnapshotImportDTO partial = snapshot(target).load(new ByteArrayInputStream(truncated), 0);
+		assertThat(partial.isComplete()).isFalse();
+		assertThat(partial.getOffset()).isBetween(1L, 9L).isEqualTo(partial.getCreated());
+
+		SnapshotImportDTO resumed = snapshot(target).load(new ByteArrayInputStream(complete), partial.getOffset());
+		assertThat(resumed.isComplete()).isTrue();
+		assertThat(resumed.getCreated()).isEqualTo(10 - partial.getOffset());
+		assertThat(resumed.getConflicted()).isZero();
+		assertThatThrownBy(() -> snapshot(target).load(new ByteArrayInputStream("not a snapshot".getBytes()), 0))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
@@ -0,0 +1,112 @@
+package com.springsnake.backend.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import com.springsnake.backend.values;
+import com.springsnake.backend.storage.InMemoryStorageEngine;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class WriteBehindBufferTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private final SpringSnakeProperties properties = new SpringSnakeProperties();
+
+	private final InMemoryStorageEngine engine = new InMemoryStorageEngine(properties);
+
+	private WriteBehindBuffer buffer(int capacity, Duration flushInterval) {
+		properties.getWriteBehind().setEnabled(true);
+		properties.getWriteBehind().setCapacity(capacity);
+		properties.getWriteBehind().setFlushInterval(flushInterval);
+		properties.getWriteBehind().setOfferTimeout(Duration.ofMillis(50));
+		return new WriteBehindBuffer(engine, new ValueCache(properties, registry), properties, registry);
+	}
+
+	private static values update(String key, Object value) {
+		values update = new values(key, value);
+		update.setLastchange(values.now());
+		return update;
+	}
+
+	@Test
+	void coalescesUpdatesAndDrainsOnClose() {
+		engine.insert(new values("a", 0));
+		WriteBehindBuffer buffer = buffer(100, Duration.ofMinutes(1));
+
+		for (int i = 1; i <= 10; i++) {
+			buffer.offer(update("a", i));
+		}
+		assertThat(buffer.pending("a").getValue()).isEqualTo(10);
+		assertThat(engine.findByKey("a").getValue()).isEqualTo(0);
+
+		buffer.close();
+		assertThat(engine.findByKey("a").getValue()).isEqualTo(10);
+		assertThat(buffer.pending("a")).isNull();
+		assertThat(registry.get("springsnake.writebehind.coalesced").counter().count()).isEqualTo(9);
+		assertThat(registry.get("springsnake.writebehind.flush").timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	void deleteWaitsForTheFlushOfItsKey() throws Exception {
+		CountDownLatch flushing = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		InMemoryStorageEngine slow = new InMemoryStorageEngine(properties) {
+			@Override
+			public long updateAll(List<values> batch) {
+				flushing.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.updateAll(batch);
+			}
+		};
+		slow.insert(new values("a", 0));
+		properties.getWriteBehind().setEnabled(true);
+		properties.getWriteBehind().setBatchSize(1);
+		WriteBehindBuffer buffer = new WriteBehindBuffer(slow, new ValueCache(properties, registry), properties,
+				registry);
+		buffer.offer(update("a", 1));
+		assertThat(flushing.await(5, TimeUnit.SECONDS)).isTrue();
+
+		// Delete then put again while the update of the key is being flushed
+		CompletableFuture<Void> deleteThenPut = CompletableFuture.runAsync(() -> {
+			buffer.discard("a");
+			slow.delete("a");
+			slow.insert(new values("a", 2));
+		});
+		TimeUnit.MILLISECONDS.sleep(50);
+		assertThat(deleteThenPut).isNotDone();
+		release.countDown();
+		deleteThenPut.get(5, TimeUnit.SECONDS);
+
+		assertThat(slow.findByKey("a").getValue()).isEqualTo(2);
+		assertThat(buffer.pending("a")).isNull();
+		buffer.close();
+		assertThat(slow.findByKey("a").getValue()).isEqualTo(2);
+	}
+
+	@Test
+	void rejectsNewKeysWhenFull() {
+		WriteBehindBuffer buffer = buffer(1, Duration.ofMinutes(1));
+
+		buffer.offer(update("a", 1));
+		buffer.offer(update("a", 2));
+		assertThatThrownBy(() -> buffer.offer(update("b", 1))).isInstanceOf(TransientDataAccessResourceException.class);
+		assertThat(registry.get("springsnake.writebehind.rejected").counter().count()).isEqualTo(1);
+		buffer.close();
+	}
+
+}